@@ -0,0 +1,168 @@
+import java.util.Arrays;
+
+/**
+ * goal directed searches over the graph of a set of Landmarks. a point to point query
+ * is an A* search ordered by distance so far plus the landmark lower bound to the
+ * target, so it heads for the target instead of growing evenly in every direction.
+ * only the vertices a query touched are reset for the next one. a search is not
+ * thread safe and each thread should keep its own
+ */
+class AltSearch {
+    private final Landmarks landmarks;
+    private final CsrGraph graph;
+    private final double[] dist;
+    private final double[] estimate;
+    private final double[] toTarget;
+    private final IndexedMinHeap heap;
+    private final int[] touched;
+    private int touchedCount = 0;
+    private final int[] originSlot;
+
+    /**
+     * creates a search with scratch space sized for the graph of landmarks
+     * @param landmarks
+     */
+    AltSearch(Landmarks landmarks) {
+        this.landmarks = landmarks;
+        this.graph = landmarks.getGraph();
+        int vertexCount = graph.getVertexCount();
+        this.dist = new double[vertexCount];
+        this.estimate = new double[vertexCount];
+        this.toTarget = new double[vertexCount];
+        this.heap = new IndexedMinHeap(estimate);
+        this.touched = new int[vertexCount];
+        this.originSlot = new int[vertexCount];
+        Arrays.fill(dist, Double.MAX_VALUE);
+        Arrays.fill(originSlot, -1);
+    }
+
+    private void reset() {
+        for(int i = 0; i < touchedCount; i++) {
+            dist[touched[i]] = Double.MAX_VALUE;
+        }
+        touchedCount = 0;
+        heap.clear();
+    }
+
+    /**
+     * returns the number of vertices the last search reached, a measure of how much work it did
+     * @return
+     */
+    public int getTouchedCount() {
+        return touchedCount;
+    }
+
+    /**
+     * returns the shortest distance between from and to, or Double.MAX_VALUE if there is no path.
+     * vertices that the landmarks show cannot reach to are never queued
+     * @param from
+     * @param to
+     * @return
+     */
+    public double distance(int from, int to) {
+        reset();
+        double bound = landmarks.lowerBound(from, to);
+        if(bound == Double.MAX_VALUE) {
+            return Double.MAX_VALUE;
+        }
+        int[] offsets = graph.offsets;
+        int[] targets = graph.targets;
+        double[] weights = graph.weights;
+
+        touched[touchedCount++] = from;
+        dist[from] = 0;
+        toTarget[from] = bound;
+        heap.insert(from, bound);
+        while(!heap.isEmpty()) {
+            int u = heap.pollMin();
+            if(u == to) {
+                return dist[to];
+            }
+            double cost = dist[u];
+            for(int e = offsets[u], end = offsets[u + 1]; e < end; e++) {
+                int v = targets[e];
+                double newCost = cost + weights[e];
+                if(newCost < dist[v]) {
+                    if(dist[v] == Double.MAX_VALUE) {
+                        touched[touchedCount++] = v;
+                        toTarget[v] = landmarks.lowerBound(v, to);
+                    }
+                    dist[v] = newCost;
+                    if(toTarget[v] != Double.MAX_VALUE) {
+                        heap.insertOrDecrease(v, newCost + toTarget[v]);
+                    }
+                }
+            }
+        }
+        return Double.MAX_VALUE;
+    }
+
+    /**
+     * returns sum of weights[i] * distance(from, origins[i]), added in origin order. the
+     * search from from stops once every origin is settled, or gives up as soon as the
+     * origins settled so far plus the rest at the current radius already exceed bound
+     * @param from
+     * @param origins distinct origin vertices
+     * @param weights number of people at each origin
+     * @param bound
+     * @return the total, or Double.MAX_VALUE if it exceeds bound or an origin is unreachable
+     */
+    public double weightedTotal(int from, int[] origins, int[] weights, double bound) {
+        reset();
+        int[] offsets = graph.offsets;
+        int[] targets = graph.targets;
+        double[] weightsOfEdges = graph.weights;
+
+        double[] found = new double[origins.length];
+        long remainingWeight = 0;
+        for(int i = 0; i < origins.length; i++) {
+            originSlot[origins[i]] = i;
+            remainingWeight += weights[i];
+        }
+        try {
+            int remaining = origins.length;
+            double settledTotal = 0;
+            touched[touchedCount++] = from;
+            dist[from] = 0;
+            heap.insert(from, 0);
+            while(!heap.isEmpty() && remaining > 0) {
+                int u = heap.pollMin();
+                double cost = dist[u];
+                // every origin not settled yet is at least cost away
+                if((settledTotal + remainingWeight * cost) * (1 - Landmarks.SLACK) > bound) {
+                    return Double.MAX_VALUE;
+                }
+                int slot = originSlot[u];
+                if(slot >= 0) {
+                    found[slot] = cost;
+                    settledTotal += weights[slot] * cost;
+                    remainingWeight -= weights[slot];
+                    remaining--;
+                }
+                for(int e = offsets[u], end = offsets[u + 1]; e < end; e++) {
+                    int v = targets[e];
+                    double newCost = cost + weightsOfEdges[e];
+                    if(newCost < dist[v]) {
+                        if(dist[v] == Double.MAX_VALUE) {
+                            touched[touchedCount++] = v;
+                        }
+                        dist[v] = newCost;
+                        heap.insertOrDecrease(v, newCost);
+                    }
+                }
+            }
+            if(remaining > 0) {
+                return Double.MAX_VALUE;
+            }
+            double total = 0;
+            for(int i = 0; i < origins.length; i++) {
+                total += weights[i] * found[i];
+            }
+            return total;
+        } finally {
+            for(int origin : origins) {
+                originSlot[origin] = -1;
+            }
+        }
+    }
+}
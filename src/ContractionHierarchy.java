@@ -0,0 +1,570 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * contraction hierarchy over an undirected CsrGraph. vertices are contracted from least
+ * to most important and a shortcut is added between two neighbors of a contracted vertex
+ * whenever the path through it is the only shortest one. every shortest path then goes up
+ * the hierarchy and down again, so a point to point query only searches upward from both
+ * ends and a one to many query searches upward from the origin and sweeps every vertex
+ * once from the top down. shortcut weights add the original weights in a different order
+ * than DijkstraSearch does, so distances can differ from it in the last bits.
+ *
+ * file layout, little endian, every section starts on an 8 byte boundary:
+ * header: int magic, int version, int vertexCount, int edgeCount, then the edge count and
+ * fingerprint of the graph the hierarchy was contracted from: int, int unused, long
+ * int[vertexCount] vertices from lowest to highest rank, then the upward graph:
+ * int[vertexCount + 1] offsets, int[edgeCount] targets, double[edgeCount] weights
+ */
+class ContractionHierarchy {
+    static final int MAGIC = 0x47454F43;
+    static final int VERSION = 2;
+    private static final int HEADER_BYTES = 32;
+    // vertices a witness search settles before giving up and keeping the shortcut, lower
+    // while only estimating a priority since that runs far more often than a contraction
+    private static final int WITNESS_SETTLE_LIMIT = 500;
+    private static final int ESTIMATE_SETTLE_LIMIT = 50;
+
+    private final int[] order;
+    private final int[] rank;
+    private final CsrGraph upward;
+    // edge count and CsrGraph.fingerprint of the graph that was contracted
+    private final int sourceEdgeCount;
+    private final long sourceFingerprint;
+    private final ThreadLocal<Query> queries;
+
+    /**
+     * creates a hierarchy from the contraction order and the edges leading from every vertex to higher ranked ones
+     * @param order
+     * @param upward
+     * @param sourceEdgeCount the edge count of the contracted graph
+     * @param sourceFingerprint the fingerprint of the contracted graph
+     */
+    private ContractionHierarchy(int[] order, CsrGraph upward, int sourceEdgeCount, long sourceFingerprint) {
+        if(order.length != upward.getVertexCount()) {
+            throw new IllegalArgumentException("order has " + order.length + " vertices for a graph of " + upward.getVertexCount());
+        }
+        this.order = order;
+        this.rank = new int[order.length];
+        Arrays.fill(rank, -1);
+        for(int i = 0; i < order.length; i++) {
+            if(order[i] < 0 || order[i] >= order.length || rank[order[i]] >= 0) {
+                throw new IllegalArgumentException("order is not a permutation of the vertices");
+            }
+            rank[order[i]] = i;
+        }
+        for(int u = 0; u < order.length; u++) {
+            for(int e = upward.offsets[u]; e < upward.offsets[u + 1]; e++) {
+                if(rank[upward.targets[e]] <= rank[u]) {
+                    throw new IllegalArgumentException("edge " + u + " -> " + upward.targets[e] + " does not lead upward");
+                }
+            }
+        }
+        this.upward = upward;
+        this.sourceEdgeCount = sourceEdgeCount;
+        this.sourceFingerprint = sourceFingerprint;
+        this.queries = ThreadLocal.withInitial(() -> new Query());
+    }
+
+    /**
+     * contracts every vertex of graph, the graph must be undirected
+     * @param graph
+     * @return
+     */
+    static ContractionHierarchy build(CsrGraph graph) {
+        return new Contractor(graph).contract();
+    }
+
+    /**
+     * maps the file at path and copies the hierarchy out of it
+     * @param path
+     * @return
+     * @throws IOException
+     */
+    static ContractionHierarchy read(Path path) throws IOException {
+        MappedByteBuffer buffer;
+        try(FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        if(buffer.capacity() < HEADER_BYTES || buffer.getInt(0) != MAGIC) {
+            throw new IOException("not a contraction hierarchy file");
+        }
+        if(buffer.getInt(4) != VERSION) {
+            throw new IOException("unsupported contraction hierarchy version " + buffer.getInt(4));
+        }
+        int vertexCount = buffer.getInt(8);
+        int edgeCount = buffer.getInt(12);
+        int sourceEdgeCount = buffer.getInt(16);
+        long sourceFingerprint = buffer.getLong(24);
+        if(size(vertexCount, edgeCount) > buffer.capacity()) {
+            throw new IOException("contraction hierarchy file is truncated");
+        }
+
+        int[] order = new int[vertexCount];
+        int[] offsets = new int[vertexCount + 1];
+        int[] targets = new int[edgeCount];
+        double[] weights = new double[edgeCount];
+        buffer.position(HEADER_BYTES);
+        buffer.asIntBuffer().get(order).get(offsets).get(targets);
+        buffer.position((int) align(HEADER_BYTES + 4L * (order.length + offsets.length + targets.length)));
+        buffer.asDoubleBuffer().get(weights);
+        try {
+            return new ContractionHierarchy(order, new CsrGraph(offsets, targets, weights), sourceEdgeCount, sourceFingerprint);
+        } catch(IllegalArgumentException e) {
+            throw new IOException("corrupt contraction hierarchy file: " + e.getMessage());
+        }
+    }
+
+    /**
+     * writes the hierarchy to path so it can be loaded with read instead of contracting again
+     * @param path
+     * @throws IOException
+     */
+    void write(Path path) throws IOException {
+        long size = size(order.length, upward.getEdgeCount());
+        if(size > Integer.MAX_VALUE) {
+            throw new IOException("contraction hierarchy file would be larger than 2GB");
+        }
+        ByteBuffer out = ByteBuffer.allocate((int) size).order(ByteOrder.LITTLE_ENDIAN);
+        out.putInt(MAGIC).putInt(VERSION).putInt(order.length).putInt(upward.getEdgeCount());
+        out.putInt(sourceEdgeCount).putInt(0).putLong(sourceFingerprint);
+        out.asIntBuffer().put(order).put(upward.offsets).put(upward.targets);
+        out.position((int) align(HEADER_BYTES + 4L * (order.length + upward.offsets.length + upward.targets.length)));
+        out.asDoubleBuffer().put(upward.weights);
+        out.position(out.limit());
+        out.flip();
+
+        try(FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while(out.hasRemaining()) {
+                channel.write(out);
+            }
+        }
+    }
+
+    private static long size(int vertexCount, int edgeCount) {
+        return align(HEADER_BYTES + 4L * (2L * vertexCount + 1 + edgeCount)) + 8L * edgeCount;
+    }
+
+    private static long align(long position) {
+        return (position + 7) & ~7L;
+    }
+
+    /**
+     * returns the number of vertices in the hierarchy
+     * @return
+     */
+    public int getVertexCount() {
+        return order.length;
+    }
+
+    /**
+     * returns if the hierarchy was contracted from graph, the same vertices and the same
+     * edges in the same order. a hierarchy of other edges gives wrong distances
+     * @param graph
+     * @return
+     */
+    boolean matches(CsrGraph graph) {
+        return graph.getVertexCount() == order.length && graph.getEdgeCount() == sourceEdgeCount
+                && graph.fingerprint() == sourceFingerprint;
+    }
+
+    /**
+     * returns the number of upward edges, original edges and shortcuts together
+     * @return
+     */
+    public int getEdgeCount() {
+        return upward.getEdgeCount();
+    }
+
+    /**
+     * returns the position of vertex in the contraction order, higher is more important
+     * @param vertex
+     * @return
+     */
+    public int getRank(int vertex) {
+        return rank[vertex];
+    }
+
+    /**
+     * returns the shortest distance between from and to, or Double.MAX_VALUE if there is no path.
+     * uses a query kept by the calling thread
+     * @param from
+     * @param to
+     * @return
+     */
+    public double distance(int from, int to) {
+        return queries.get().distance(from, to);
+    }
+
+    /**
+     * returns the distances from origin to every vertex in a new array
+     * @param origin
+     * @return
+     */
+    public double[] distancesFrom(int origin) {
+        return queries.get().run(origin).clone();
+    }
+
+    /**
+     * creates a query with its own scratch space, for callers that keep one per thread
+     * @return
+     */
+    Query newQuery() {
+        return new Query();
+    }
+
+    /**
+     * reusable scratch space for searches on the hierarchy, a query is not thread safe
+     */
+    class Query implements ShortestPathSearch {
+        private final Side forward = new Side();
+        private final Side backward = new Side();
+        private final double[] row = new double[order.length];
+        private final IndexedMinHeap rowHeap = new IndexedMinHeap(row);
+
+        /**
+         * searches upward from both ends until neither side can still improve on the best meeting point.
+         * only the vertices touched by the last query are reset, so a query costs microseconds on any graph size
+         * @param from
+         * @param to
+         * @return the distance, or Double.MAX_VALUE if there is no path
+         */
+        public double distance(int from, int to) {
+            forward.reset();
+            backward.reset();
+            if(from == to) {
+                return 0;
+            }
+            forward.start(from);
+            backward.start(to);
+            double best = Double.MAX_VALUE;
+            while(true) {
+                double forwardMin = forward.minKey();
+                double backwardMin = backward.minKey();
+                if(Math.min(forwardMin, backwardMin) >= best) {
+                    return best;
+                }
+                if(forwardMin <= backwardMin) {
+                    best = forward.settle(backward, best);
+                } else {
+                    best = backward.settle(forward, best);
+                }
+            }
+        }
+
+        /**
+         * fills the distances from origin to every vertex: an upward search from origin, then one
+         * sweep from the highest rank down that pulls every vertex's distance from its upward edges.
+         * the returned array belongs to the query and is overwritten by the next run
+         * @param origin
+         * @return an array of distances indexed by vertex
+         */
+        @Override
+        public double[] run(int origin) {
+            int[] offsets = upward.offsets;
+            int[] targets = upward.targets;
+            double[] weights = upward.weights;
+
+            Arrays.fill(row, Double.MAX_VALUE);
+            rowHeap.clear();
+            rowHeap.insert(origin, 0);
+            while(!rowHeap.isEmpty()) {
+                int u = rowHeap.pollMin();
+                double cost = row[u];
+                for(int e = offsets[u], end = offsets[u + 1]; e < end; e++) {
+                    int v = targets[e];
+                    double newCost = cost + weights[e];
+                    if(newCost < row[v]) {
+                        rowHeap.insertOrDecrease(v, newCost);
+                    }
+                }
+            }
+            for(int i = order.length - 1; i >= 0; i--) {
+                int v = order[i];
+                double cost = row[v];
+                for(int e = offsets[v], end = offsets[v + 1]; e < end; e++) {
+                    double via = row[targets[e]] + weights[e];
+                    if(via < cost) {
+                        cost = via;
+                    }
+                }
+                row[v] = cost;
+            }
+            return row;
+        }
+    }
+
+    /**
+     * one direction of a point to point query, remembers which vertices it touched
+     */
+    private class Side {
+        private final double[] dist = new double[order.length];
+        private final IndexedMinHeap heap = new IndexedMinHeap(dist);
+        private final int[] touched = new int[order.length];
+        private int touchedCount = 0;
+
+        Side() {
+            Arrays.fill(dist, Double.MAX_VALUE);
+        }
+
+        void reset() {
+            for(int i = 0; i < touchedCount; i++) {
+                dist[touched[i]] = Double.MAX_VALUE;
+            }
+            touchedCount = 0;
+            heap.clear();
+        }
+
+        void start(int vertex) {
+            touched[touchedCount++] = vertex;
+            heap.insert(vertex, 0);
+        }
+
+        double minKey() {
+            return heap.isEmpty() ? Double.MAX_VALUE : dist[heap.peekMin()];
+        }
+
+        /**
+         * settles the closest vertex of this side and relaxes its upward edges. the vertex is
+         * stalled instead when a higher ranked neighbor already reaches it on a shorter path,
+         * its upward search can then not be part of a shortest path
+         * @param other the opposite side
+         * @param best shortest path found so far
+         * @return the shortest path found after meeting other at the settled vertex
+         */
+        double settle(Side other, double best) {
+            int u = heap.pollMin();
+            double cost = dist[u];
+            if(other.dist[u] < Double.MAX_VALUE) {
+                best = Math.min(best, cost + other.dist[u]);
+            }
+            int start = upward.offsets[u];
+            int end = upward.offsets[u + 1];
+            for(int e = start; e < end; e++) {
+                if(dist[upward.targets[e]] + upward.weights[e] < cost) {
+                    return best;
+                }
+            }
+            for(int e = start; e < end; e++) {
+                int v = upward.targets[e];
+                double newCost = cost + upward.weights[e];
+                if(newCost < dist[v]) {
+                    if(dist[v] == Double.MAX_VALUE) {
+                        touched[touchedCount++] = v;
+                    }
+                    heap.insertOrDecrease(v, newCost);
+                }
+            }
+            return best;
+        }
+    }
+
+    /**
+     * the working state of a contraction: adjacency lists of the vertices not contracted
+     * yet, their priorities and the scratch space of the witness search
+     */
+    private static class Contractor {
+        private final int vertexCount;
+        private final int sourceEdgeCount;
+        private final long sourceFingerprint;
+        private final int[][] adjacent;
+        private final double[][] adjacentWeights;
+        private final int[] degree;
+        private final int[] contractedNeighbors;
+        private final int[] level;
+        private final double[] priority;
+        private final IndexedMinHeap queue;
+        private final double[] witness;
+        private final IndexedMinHeap witnessHeap;
+        private final int[] touched;
+        private int touchedCount = 0;
+
+        Contractor(CsrGraph graph) {
+            vertexCount = graph.getVertexCount();
+            sourceEdgeCount = graph.getEdgeCount();
+            sourceFingerprint = graph.fingerprint();
+            adjacent = new int[vertexCount][];
+            adjacentWeights = new double[vertexCount][];
+            degree = new int[vertexCount];
+            for(int u = 0; u < vertexCount; u++) {
+                int capacity = Math.max(4, graph.offsets[u + 1] - graph.offsets[u]);
+                adjacent[u] = new int[capacity];
+                adjacentWeights[u] = new double[capacity];
+            }
+            for(int u = 0; u < vertexCount; u++) {
+                for(int e = graph.offsets[u]; e < graph.offsets[u + 1]; e++) {
+                    int v = graph.targets[e];
+                    if(v != u) {
+                        link(u, v, graph.weights[e]);
+                        link(v, u, graph.weights[e]);
+                    }
+                }
+            }
+            contractedNeighbors = new int[vertexCount];
+            level = new int[vertexCount];
+            priority = new double[vertexCount];
+            queue = new IndexedMinHeap(priority);
+            witness = new double[vertexCount];
+            Arrays.fill(witness, Double.MAX_VALUE);
+            witnessHeap = new IndexedMinHeap(witness);
+            touched = new int[vertexCount];
+        }
+
+        /**
+         * contracts the vertex with the lowest priority until none are left. priorities go
+         * stale as the graph changes, so a popped vertex is re-evaluated and put back if it
+         * is no longer the lowest
+         * @return
+         */
+        ContractionHierarchy contract() {
+            for(int v = 0; v < vertexCount; v++) {
+                queue.insert(v, priority(v));
+            }
+            CsrGraph.Builder up = new CsrGraph.Builder(vertexCount);
+            int[] order = new int[vertexCount];
+            int contracted = 0;
+            while(!queue.isEmpty()) {
+                int v = queue.pollMin();
+                double current = priority(v);
+                if(!queue.isEmpty() && current > priority[queue.peekMin()]) {
+                    queue.insert(v, current);
+                    continue;
+                }
+                shortcuts(v, true);
+                for(int i = 0; i < degree[v]; i++) {
+                    int u = adjacent[v][i];
+                    up.addEdge(v, u, adjacentWeights[v][i]);
+                    unlink(u, v);
+                    contractedNeighbors[u]++;
+                    level[u] = Math.max(level[u], level[v] + 1);
+                }
+                for(int i = 0; i < degree[v]; i++) {
+                    queue.changeKey(adjacent[v][i], priority(adjacent[v][i]));
+                }
+                order[contracted++] = v;
+            }
+            return new ContractionHierarchy(order, up.build(), sourceEdgeCount, sourceFingerprint);
+        }
+
+        /**
+         * edge difference plus contracted neighbors: cheap vertices that keep the graph
+         * sparse go first, and the contraction spreads evenly over the graph
+         * @param v
+         * @return
+         */
+        private double priority(int v) {
+            return 2 * (shortcuts(v, false) - degree[v]) + contractedNeighbors[v] + level[v];
+        }
+
+        /**
+         * counts the shortcuts contracting v needs, adding them when apply is set
+         * @param v
+         * @param apply
+         * @return
+         */
+        private int shortcuts(int v, boolean apply) {
+            int count = 0;
+            int[] around = adjacent[v];
+            double[] aroundWeights = adjacentWeights[v];
+            int n = degree[v];
+            for(int i = 0; i < n - 1; i++) {
+                double limit = 0;
+                for(int j = i + 1; j < n; j++) {
+                    limit = Math.max(limit, aroundWeights[i] + aroundWeights[j]);
+                }
+                witnessSearch(around[i], v, limit, apply ? WITNESS_SETTLE_LIMIT : ESTIMATE_SETTLE_LIMIT);
+                for(int j = i + 1; j < n; j++) {
+                    double via = aroundWeights[i] + aroundWeights[j];
+                    if(witness[around[j]] > via) {
+                        count++;
+                        if(apply) {
+                            link(around[i], around[j], via);
+                            link(around[j], around[i], via);
+                        }
+                    }
+                }
+            }
+            return count;
+        }
+
+        /**
+         * searches from source without passing through skip, stopping past limit or after
+         * settleLimit vertices. a vertex left above the path through skip needs a shortcut
+         * @param source
+         * @param skip
+         * @param limit
+         * @param settleLimit
+         */
+        private void witnessSearch(int source, int skip, double limit, int settleLimit) {
+            for(int i = 0; i < touchedCount; i++) {
+                witness[touched[i]] = Double.MAX_VALUE;
+            }
+            touchedCount = 0;
+            witnessHeap.clear();
+            touched[touchedCount++] = source;
+            witnessHeap.insert(source, 0);
+            for(int settled = 0; settled < settleLimit && !witnessHeap.isEmpty(); settled++) {
+                int u = witnessHeap.pollMin();
+                double cost = witness[u];
+                if(cost > limit) {
+                    return;
+                }
+                for(int i = 0; i < degree[u]; i++) {
+                    int v = adjacent[u][i];
+                    double newCost = cost + adjacentWeights[u][i];
+                    if(v != skip && newCost < witness[v]) {
+                        if(witness[v] == Double.MAX_VALUE) {
+                            touched[touchedCount++] = v;
+                        }
+                        witnessHeap.insertOrDecrease(v, newCost);
+                    }
+                }
+            }
+        }
+
+        /**
+         * adds the edge u -> v, or lowers its weight if it is already there
+         * @param u
+         * @param v
+         * @param weight
+         */
+        private void link(int u, int v, double weight) {
+            for(int i = 0; i < degree[u]; i++) {
+                if(adjacent[u][i] == v) {
+                    adjacentWeights[u][i] = Math.min(adjacentWeights[u][i], weight);
+                    return;
+                }
+            }
+            if(degree[u] == adjacent[u].length) {
+                adjacent[u] = Arrays.copyOf(adjacent[u], degree[u] * 2);
+                adjacentWeights[u] = Arrays.copyOf(adjacentWeights[u], degree[u] * 2);
+            }
+            adjacent[u][degree[u]] = v;
+            adjacentWeights[u][degree[u]] = weight;
+            degree[u]++;
+        }
+
+        /**
+         * removes the edge u -> v
+         * @param u
+         * @param v
+         */
+        private void unlink(int u, int v) {
+            for(int i = 0; i < degree[u]; i++) {
+                if(adjacent[u][i] == v) {
+                    degree[u]--;
+                    adjacent[u][i] = adjacent[u][degree[u]];
+                    adjacentWeights[u][i] = adjacentWeights[u][degree[u]];
+                    return;
+                }
+            }
+        }
+    }
+}
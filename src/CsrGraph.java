@@ -0,0 +1,216 @@
+import java.util.Arrays;
+
+/**
+ * immutable compressed-sparse-row graph. the edges leaving vertex v are stored
+ * in targets/weights between offsets[v] (inclusive) and offsets[v+1] (exclusive)
+ */
+class CsrGraph {
+    final int[] offsets;
+    final int[] targets;
+    final double[] weights;
+
+    /**
+     * creates a graph directly from its csr arrays, the arrays are not copied
+     * @param offsets
+     * @param targets
+     * @param weights
+     */
+    CsrGraph(int[] offsets, int[] targets, double[] weights) {
+        if(offsets.length == 0 || targets.length != weights.length || offsets[offsets.length - 1] != targets.length) {
+            throw new IllegalArgumentException("malformed csr arrays");
+        }
+        this.offsets = offsets;
+        this.targets = targets;
+        this.weights = weights;
+    }
+
+    /**
+     * returns the number of vertices in the graph
+     * @return
+     */
+    public int getVertexCount() {
+        return offsets.length - 1;
+    }
+
+    /**
+     * returns the number of directed edges in the graph
+     * @return
+     */
+    public int getEdgeCount() {
+        return targets.length;
+    }
+
+    /**
+     * returns a 64 bit hash of the offsets, targets and weights. the same edges added in
+     * the same order give the same fingerprint, anything else almost surely does not
+     * @return
+     */
+    long fingerprint() {
+        long hash = offsets.length;
+        for(int offset : offsets) {
+            hash = mix(hash, offset);
+        }
+        for(int target : targets) {
+            hash = mix(hash, target);
+        }
+        for(double weight : weights) {
+            hash = mix(hash, Double.doubleToLongBits(weight));
+        }
+        return hash;
+    }
+
+    private static long mix(long hash, long value) {
+        hash = (hash ^ value) * 0x9E3779B97F4A7C15L;
+        return hash ^ (hash >>> 29);
+    }
+
+    /**
+     * returns the number of edges leaving vertex
+     * @param vertex
+     * @return
+     */
+    public int degree(int vertex) {
+        return offsets[vertex + 1] - offsets[vertex];
+    }
+
+    /**
+     * Calculates the minimum distances from origin to every vertex,
+     * unreachable vertices are left at Double.MAX_VALUE
+     * @param origin
+     * @return an array of distances indexed by vertex
+     */
+    public double[] distancesFrom(int origin) {
+        return new DijkstraSearch(this).run(origin);
+    }
+
+    /**
+     * collects edges in primitive arrays and packs them into a CsrGraph,
+     * edges leaving the same vertex keep the order they were added in
+     */
+    static class Builder {
+        private final int vertexCount;
+        private int[] sources = new int[16];
+        private int[] targets = new int[16];
+        private double[] weights = new double[16];
+        private int size = 0;
+
+        /**
+         * creates an empty builder for a graph with vertexCount vertices
+         * @param vertexCount
+         */
+        Builder(int vertexCount) {
+            this.vertexCount = vertexCount;
+        }
+
+        /**
+         * creates a builder that already contains every edge of base
+         * @param base
+         */
+        Builder(CsrGraph base) {
+            this(base.getVertexCount());
+            ensureCapacity(base.getEdgeCount());
+            for(int u = 0; u < vertexCount; u++) {
+                for(int e = base.offsets[u]; e < base.offsets[u + 1]; e++) {
+                    addEdge(u, base.targets[e], base.weights[e]);
+                }
+            }
+        }
+
+        /**
+         * adds a directed edge from -> to
+         * @param from
+         * @param to
+         * @param weight
+         */
+        void addEdge(int from, int to, double weight) {
+            if(from < 0 || from >= vertexCount || to < 0 || to >= vertexCount) {
+                throw new IndexOutOfBoundsException("edge " + from + " -> " + to + " outside of " + vertexCount + " vertices");
+            }
+            ensureCapacity(size + 1);
+            sources[size] = from;
+            targets[size] = to;
+            weights[size] = weight;
+            size++;
+        }
+
+        /**
+         * adds the edge in both directions
+         * @param v1
+         * @param v2
+         * @param weight
+         */
+        void addUndirectedEdge(int v1, int v2, double weight) {
+            addEdge(v1, v2, weight);
+            addEdge(v2, v1, weight);
+        }
+
+        private void ensureCapacity(int capacity) {
+            if(capacity > sources.length) {
+                int newLength = Math.max(capacity, sources.length * 2);
+                sources = Arrays.copyOf(sources, newLength);
+                targets = Arrays.copyOf(targets, newLength);
+                weights = Arrays.copyOf(weights, newLength);
+            }
+        }
+
+        /**
+         * packs the collected edges with a stable counting sort on the source vertex
+         * @return
+         */
+        CsrGraph build() {
+            int[] offsets = new int[vertexCount + 1];
+            for(int i = 0; i < size; i++) {
+                offsets[sources[i] + 1]++;
+            }
+            for(int v = 0; v < vertexCount; v++) {
+                offsets[v + 1] += offsets[v];
+            }
+            int[] next = Arrays.copyOf(offsets, vertexCount);
+            int[] packedTargets = new int[size];
+            double[] packedWeights = new double[size];
+            for(int i = 0; i < size; i++) {
+                int slot = next[sources[i]]++;
+                packedTargets[slot] = targets[i];
+                packedWeights[slot] = weights[i];
+            }
+            return new CsrGraph(offsets, packedTargets, packedWeights);
+        }
+
+        /**
+         * packs the collected edges like build, but parallel edges leaving a vertex for the
+         * same target are collapsed into one edge at the place of the first. its weight is
+         * folded from the parallel weights in the order they were added with policy
+         * @param policy
+         * @return
+         */
+        CsrGraph build(EdgeMergePolicy policy) {
+            CsrGraph packed = build();
+            int[] offsets = new int[vertexCount + 1];
+            int[] mergedTargets = new int[packed.targets.length];
+            double[] mergedWeights = new double[packed.weights.length];
+            // slotOf[t] is where the edge to t sits in the merged arrays while its source is being merged
+            int[] slotOf = new int[vertexCount];
+            Arrays.fill(slotOf, -1);
+            int size = 0;
+            for(int u = 0; u < vertexCount; u++) {
+                int start = size;
+                for(int e = packed.offsets[u]; e < packed.offsets[u + 1]; e++) {
+                    int t = packed.targets[e];
+                    if(slotOf[t] >= start) {
+                        mergedWeights[slotOf[t]] = policy.merge(mergedWeights[slotOf[t]], packed.weights[e]);
+                    } else {
+                        slotOf[t] = size;
+                        mergedTargets[size] = t;
+                        mergedWeights[size] = packed.weights[e];
+                        size++;
+                    }
+                }
+                offsets[u + 1] = size;
+            }
+            if(size == packed.targets.length) {
+                return packed;
+            }
+            return new CsrGraph(offsets, Arrays.copyOf(mergedTargets, size), Arrays.copyOf(mergedWeights, size));
+        }
+    }
+}
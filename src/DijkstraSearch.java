@@ -0,0 +1,187 @@
+import java.util.Arrays;
+
+/**
+ * reusable single source shortest path search over a CsrGraph. the distance
+ * array and heap are allocated once and reused by every run, and only the
+ * vertices the last run touched are reset, so a search that stops early costs
+ * no more than the part of the graph it reached. a search is not thread safe
+ * and each thread should keep its own
+ */
+class DijkstraSearch implements ShortestPathSearch {
+    private final CsrGraph graph;
+    private final double[] dist;
+    private final IndexedMinHeap heap;
+    private final int[] touched;
+    private int touchedCount = 0;
+    private final int[] settled;
+    private int settledCount = 0;
+    private final boolean[] isTarget;
+
+    /**
+     * creates a search with scratch space sized for graph
+     * @param graph
+     */
+    DijkstraSearch(CsrGraph graph) {
+        this.graph = graph;
+        int vertexCount = graph.getVertexCount();
+        this.dist = new double[vertexCount];
+        this.heap = new IndexedMinHeap(dist);
+        this.touched = new int[vertexCount];
+        this.settled = new int[vertexCount];
+        this.isTarget = new boolean[vertexCount];
+        Arrays.fill(dist, Double.MAX_VALUE);
+    }
+
+    /**
+     * runs the search from origin, unreachable vertices are left at Double.MAX_VALUE.
+     * the returned array belongs to the search and is overwritten by the next run
+     * @param origin
+     * @return an array of distances indexed by vertex
+     */
+    @Override
+    public double[] run(int origin) {
+        search(origin, Double.MAX_VALUE, 0);
+        return dist;
+    }
+
+    /**
+     * runs the search from origin until the next vertex is farther than radius, every
+     * vertex farther away is left at Double.MAX_VALUE. getSettled lists the vertices within
+     * radius closest first. the returned array belongs to the search and is overwritten by the next run
+     * @param origin
+     * @param radius
+     * @return an array of distances indexed by vertex
+     */
+    public double[] runWithin(int origin, double radius) {
+        search(origin, radius, 0);
+        // vertices still queued were reached but are beyond the radius
+        for(int i = 0; i < touchedCount; i++) {
+            if(dist[touched[i]] > radius) {
+                dist[touched[i]] = Double.MAX_VALUE;
+            }
+        }
+        return dist;
+    }
+
+    /**
+     * runs the search from origin until every target is settled
+     * @param origin
+     * @param targets
+     * @return the distance to each target in the order given, Double.MAX_VALUE for unreachable ones
+     */
+    public double[] runTo(int origin, int... targets) {
+        int remaining = 0;
+        for(int target : targets) {
+            if(!isTarget[target]) {
+                isTarget[target] = true;
+                remaining++;
+            }
+        }
+        try {
+            search(origin, Double.MAX_VALUE, remaining);
+        } finally {
+            for(int target : targets) {
+                isTarget[target] = false;
+            }
+        }
+        double[] found = new double[targets.length];
+        for(int i = 0; i < targets.length; i++) {
+            found[i] = dist[targets[i]];
+        }
+        return found;
+    }
+
+    /**
+     * settles vertices from origin closest first until the next one is farther than radius,
+     * or until remainingTargets targets are settled when it is above 0
+     */
+    private void search(int origin, double radius, int remainingTargets) {
+        int[] offsets = graph.offsets;
+        int[] targets = graph.targets;
+        double[] weights = graph.weights;
+
+        long start = Metrics.ENABLED ? System.nanoTime() : 0;
+        int heapUpdates = 1;
+        for(int i = 0; i < touchedCount; i++) {
+            dist[touched[i]] = Double.MAX_VALUE;
+        }
+        heap.clear();
+        touchedCount = 0;
+        settledCount = 0;
+        touched[touchedCount++] = origin;
+        heap.insert(origin, 0);
+        while(!heap.isEmpty()) {
+            int u = heap.pollMin();
+            double cost = dist[u];
+            if(cost > radius) {
+                break;
+            }
+            settled[settledCount++] = u;
+            for(int e = offsets[u], end = offsets[u + 1]; e < end; e++) {
+                int v = targets[e];
+                double newCost = cost + weights[e];
+                if(newCost < dist[v]) {
+                    if(dist[v] == Double.MAX_VALUE) {
+                        touched[touchedCount++] = v;
+                    }
+                    heap.insertOrDecrease(v, newCost);
+                    heapUpdates++;
+                }
+            }
+            if(remainingTargets > 0 && isTarget[u] && --remainingTargets == 0) {
+                break;
+            }
+        }
+        if(Metrics.ENABLED) {
+            // every settled vertex relaxes all of its edges
+            int relaxed = 0;
+            for(int i = 0; i < settledCount; i++) {
+                relaxed += offsets[settled[i] + 1] - offsets[settled[i]];
+            }
+            Metrics.recordSearch(start, settledCount, relaxed, heapUpdates);
+        }
+    }
+
+    /**
+     * returns the vertices the last run settled, closest first. only the first
+     * getSettledCount entries are valid and the array is overwritten by the next run
+     * @return
+     */
+    int[] getSettled() {
+        return settled;
+    }
+
+    /**
+     * returns the distance the last run found to vertex, Double.MAX_VALUE if it did not settle it
+     * within the radius. after runTo only the targets and getSettled are exact
+     * @param vertex
+     * @return
+     */
+    public double getDistance(int vertex) {
+        return dist[vertex];
+    }
+
+    /**
+     * returns the number of vertices the last run settled
+     * @return
+     */
+    public int getSettledCount() {
+        return settledCount;
+    }
+
+    /**
+     * returns the number of vertices the last run reached, settled or not
+     * @return
+     */
+    public int getTouchedCount() {
+        return touchedCount;
+    }
+
+    /**
+     * returns the graph the search runs on
+     * @return
+     */
+    CsrGraph getGraph() {
+        return graph;
+    }
+}
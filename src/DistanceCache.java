@@ -0,0 +1,153 @@
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * caches the shortest path rows of a CsrGraph by origin vertex. rows are filled
+ * the first time they are asked for and the least recently used rows are dropped
+ * once the cache would grow past its memory budget. the cached arrays are shared,
+ * callers must not write to them
+ */
+class DistanceCache {
+    private static final long ROW_OVERHEAD = 16;
+
+    private final CsrGraph graph;
+    private final long budgetBytes;
+    private final int maxRows;
+    private final LinkedHashMap<Integer, double[]> rows;
+    private long hits;
+    private long misses;
+
+    /**
+     * creates an empty cache for graph that holds at most budgetBytes of rows
+     * @param graph
+     * @param budgetBytes
+     */
+    DistanceCache(CsrGraph graph, long budgetBytes) {
+        if(budgetBytes < 0) {
+            throw new IllegalArgumentException("budget must not be negative");
+        }
+        this.graph = graph;
+        this.budgetBytes = budgetBytes;
+        this.maxRows = (int) Math.min(Integer.MAX_VALUE, budgetBytes / rowBytes(graph.getVertexCount()));
+        this.rows = new LinkedHashMap<Integer, double[]>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, double[]> eldest) {
+                return size() > maxRows;
+            }
+        };
+    }
+
+    /**
+     * returns the number of bytes one cached row takes for a graph with vertexCount vertices
+     * @param vertexCount
+     * @return
+     */
+    static long rowBytes(int vertexCount) {
+        return 8L * vertexCount + ROW_OVERHEAD;
+    }
+
+    /**
+     * returns the graph the rows belong to
+     * @return
+     */
+    CsrGraph getGraph() {
+        return graph;
+    }
+
+    /**
+     * returns the memory budget of the cache
+     * @return
+     */
+    public long getBudgetBytes() {
+        return budgetBytes;
+    }
+
+    /**
+     * returns the distances from origin to every vertex, running the search if the row is not cached.
+     * the search runs outside the lock so several threads can fill different rows at once
+     * @param origin
+     * @return
+     */
+    public double[] get(int origin) {
+        synchronized(this) {
+            double[] row = rows.get(origin);
+            if(row != null) {
+                hits++;
+                return row;
+            }
+            misses++;
+        }
+        double[] row = graph.distancesFrom(origin);
+        synchronized(this) {
+            double[] raced = rows.get(origin);
+            if(raced != null) {
+                return raced;
+            }
+            rows.put(origin, row);
+        }
+        return row;
+    }
+
+    /**
+     * returns the distance between two vertices, reusing the row of either end since the graph is undirected
+     * @param from
+     * @param to
+     * @return
+     */
+    public double distance(int from, int to) {
+        synchronized(this) {
+            double[] row = rows.get(to);
+            if(row != null) {
+                hits++;
+                return row[from];
+            }
+        }
+        return get(from)[to];
+    }
+
+    /**
+     * fills the full distance matrix with one search per vertex if it fits in the budget
+     * @return false if the matrix is larger than the budget, nothing is computed then
+     */
+    public boolean precomputeAll() {
+        int vertexCount = graph.getVertexCount();
+        if(maxRows < vertexCount) {
+            return false;
+        }
+        for(int v = 0; v < vertexCount; v++) {
+            get(v);
+        }
+        return true;
+    }
+
+    /**
+     * drops every cached row
+     */
+    public synchronized void invalidate() {
+        rows.clear();
+    }
+
+    /**
+     * returns the number of rows currently cached
+     * @return
+     */
+    public synchronized int size() {
+        return rows.size();
+    }
+
+    /**
+     * returns how many lookups were answered from the cache
+     * @return
+     */
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    /**
+     * returns how many lookups had to run a search
+     * @return
+     */
+    public synchronized long getMisses() {
+        return misses;
+    }
+}
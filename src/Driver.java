@@ -10,10 +10,12 @@
  */
 import com.sun.tools.javac.util.Pair;
 
+import javax.management.JMException;
 import java.io.IOException;
-import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.nio.file.Paths;
 import java.text.DecimalFormat;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Created by ezalenski on 8/30/16.
@@ -22,6 +24,13 @@ class Driver {
 
     public static void main(String[] args) {
         displayAuthorInfo();
+        if(Metrics.ENABLED) {
+            try {
+                Metrics.register();
+            } catch (JMException e) {
+                e.printStackTrace();
+            }
+        }
 
         GeoMap map = new GeoMap();
 
@@ -35,20 +44,24 @@ class Driver {
         System.out.println();
 
         Pair<String, Double> minAvgDistance = map.findMinAvgDistance();
-        System.out.println(minAvgDistance.fst + " has the minimum average distance with " + minAvgDistance.snd + " units traveled.");
+        if(minAvgDistance == null) {
+            System.out.println("There is no city everybody can reach.");
+        } else {
+            System.out.println(minAvgDistance.fst + " has the minimum average distance with " + minAvgDistance.snd + " units traveled.");
+        }
         System.out.println();
 
         GeoMap costMap = new GeoMap();
         SkyScannerAPI skyScannerAPI = new SkyScannerAPI();
 
         costMap.citiesFromStream(new InputStreamReader(Driver.class.getResourceAsStream("Resources/CityNames.txt")));
+        costMap.setEdgeMergePolicy(new KeepMinimum());
         costMap.neighborsFromStream(new InputStreamReader(Driver.class.getResourceAsStream("Resources/CityDistances.txt")), new CalculateCostFromDistance());
 
         try {
-            InputStream input = skyScannerAPI.getQuotes(costMap.getMapCityNamesToVertex());
-            if(input != null) {
-                costMap.neighborsFromStream(new InputStreamReader(input), new NoWeight());
-            }
+            skyScannerAPI.setQuoteCache(new QuoteCache(Paths.get(System.getProperty("java.io.tmpdir"), "mid-meeting-quotes"),
+                    TimeUnit.HOURS.toMillis(6), TimeUnit.DAYS.toMillis(2), 16 * 1024 * 1024));
+            costMap.neighborsFromQuotes(skyScannerAPI, new NoWeight());
         } catch (IOException e) {
             e.printStackTrace();
         }
@@ -56,9 +69,16 @@ class Driver {
         costMap.populateFromStream(new InputStreamReader(Driver.class.getResourceAsStream("Resources/Participants.txt")));
         minAvgDistance = costMap.findMinAvgDistance();
         DecimalFormat df = new DecimalFormat("#.00");
-        System.out.println(minAvgDistance.fst + " has the minimum average cost of $" + df.format(minAvgDistance.snd) + ".");
+        if(minAvgDistance == null) {
+            System.out.println("There is no city everybody can reach.");
+        } else {
+            System.out.println(minAvgDistance.fst + " has the minimum average cost of $" + df.format(minAvgDistance.snd) + ".");
+        }
 
         costMap.getMapCityNamesToVertex();
+        if(Metrics.ENABLED) {
+            System.err.print(Metrics.report());
+        }
     }
 
     private static void displayAuthorInfo() {
@@ -85,4 +105,24 @@ class CalculateCostFromDistance implements CostFunction {
     public double calculate(double originalWeight) {
         return (.6 * originalWeight);
     }
+}
+
+/**
+ * EdgeMergePolicy that keeps the cheapest of the parallel edges
+ */
+class KeepMinimum implements EdgeMergePolicy {
+    @Override
+    public double merge(double existingWeight, double addedWeight) {
+        return Math.min(existingWeight, addedWeight);
+    }
+}
+
+/**
+ * EdgeMergePolicy that keeps the edge added last, so a newer source replaces an older one
+ */
+class KeepLatest implements EdgeMergePolicy {
+    @Override
+    public double merge(double existingWeight, double addedWeight) {
+        return addedWeight;
+    }
 }
\ No newline at end of file
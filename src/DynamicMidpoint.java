@@ -0,0 +1,486 @@
+import java.util.Arrays;
+
+/**
+ * keeps the midpoint of a set of origins up to date while edge weights change. it holds
+ * its own copy of the undirected edges and the shortest path distances from every origin,
+ * and an edge update repairs only the distances it changes instead of searching again,
+ * in the style of Ramalingam and Reps. a cheaper edge spreads out from its ends like
+ * Dijkstra for as long as it improves something. a dearer or removed edge first collects
+ * the vertices that lost every shortest path, those are then searched again from the
+ * unaffected vertices around them. only the totals of vertices whose distance changed are
+ * summed again, in origin order, so they stay the same bit for bit as a fresh
+ * weightedTotals over the same edges. a DynamicMidpoint is not thread safe
+ */
+class DynamicMidpoint {
+    // states of a vertex during a repair
+    private static final byte UNTOUCHED = 0;
+    private static final byte PENDING = 1;
+    private static final byte AFFECTED = 2;
+
+    private final int vertexCount;
+    // adjacency[u][0..degree[u]) are the neighbors of u, at most one edge per pair
+    private final int[][] adjacency;
+    private final double[][] adjacencyWeights;
+    private final int[] degree;
+
+    // slots hold the origins in the order they were added
+    private int[] origins = new int[4];
+    private int[] counts = new int[4];
+    private double[][] distances = new double[4][];
+    private int originCount = 0;
+    private final int[] slotOf;
+
+    private final double[] totals;
+    private int totalSize = 0;
+    private int minVertex = -1;
+
+    // scratch shared by every repair
+    private final double[] key;
+    private final IndexedMinHeap heap;
+    private final byte[] state;
+    private final int[] affected;
+    private final boolean[] changed;
+    private final int[] changedList;
+    private int changedCount = 0;
+    private long repairedCount = 0;
+
+    /**
+     * copies the edges of graph, parallel edges are collapsed into the cheapest one
+     * @param graph
+     */
+    DynamicMidpoint(CsrGraph graph) {
+        this.vertexCount = graph.getVertexCount();
+        this.adjacency = new int[vertexCount][];
+        this.adjacencyWeights = new double[vertexCount][];
+        this.degree = new int[vertexCount];
+        for(int u = 0; u < vertexCount; u++) {
+            adjacency[u] = new int[Math.max(2, graph.degree(u))];
+            adjacencyWeights[u] = new double[adjacency[u].length];
+            for(int e = graph.offsets[u]; e < graph.offsets[u + 1]; e++) {
+                int v = graph.targets[e];
+                int index = indexOf(u, v);
+                if(index < 0) {
+                    adjacency[u][degree[u]] = v;
+                    adjacencyWeights[u][degree[u]] = graph.weights[e];
+                    degree[u]++;
+                } else {
+                    adjacencyWeights[u][index] = Math.min(adjacencyWeights[u][index], graph.weights[e]);
+                }
+            }
+        }
+        this.slotOf = new int[vertexCount];
+        Arrays.fill(slotOf, -1);
+        this.totals = new double[vertexCount];
+        this.key = new double[vertexCount];
+        this.heap = new IndexedMinHeap(key);
+        this.state = new byte[vertexCount];
+        this.affected = new int[vertexCount];
+        this.changed = new boolean[vertexCount];
+        this.changedList = new int[vertexCount];
+    }
+
+    private int indexOf(int u, int v) {
+        int[] neighbors = adjacency[u];
+        for(int i = 0; i < degree[u]; i++) {
+            if(neighbors[i] == v) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * returns the weight of the edge between v1 and v2, or Double.MAX_VALUE if there is none
+     * @param v1
+     * @param v2
+     * @return
+     */
+    public double getWeight(int v1, int v2) {
+        int index = indexOf(v1, v2);
+        return index < 0 ? Double.MAX_VALUE : adjacencyWeights[v1][index];
+    }
+
+    /**
+     * sets the weight of the undirected edge between v1 and v2, adding the edge if there
+     * is none, and repairs the distances from every origin
+     * @param v1
+     * @param v2
+     * @param weight must not be negative
+     */
+    public void setEdge(int v1, int v2, double weight) {
+        if(!(weight >= 0) || weight == Double.MAX_VALUE || Double.isInfinite(weight)) {
+            throw new IllegalArgumentException("edge weight must be finite and not negative: " + weight);
+        }
+        double old = getWeight(v1, v2);
+        if(old == weight) {
+            return;
+        }
+        putDirected(v1, v2, weight);
+        putDirected(v2, v1, weight);
+        repairAll(v1, v2, old, weight);
+    }
+
+    /**
+     * removes the edge between v1 and v2 and repairs the distances from every origin
+     * @param v1
+     * @param v2
+     * @return false if there was no edge
+     */
+    public boolean removeEdge(int v1, int v2) {
+        double old = getWeight(v1, v2);
+        if(old == Double.MAX_VALUE) {
+            return false;
+        }
+        removeDirected(v1, v2);
+        if(v1 != v2) {
+            removeDirected(v2, v1);
+        }
+        repairAll(v1, v2, old, Double.MAX_VALUE);
+        return true;
+    }
+
+    private void putDirected(int u, int v, double weight) {
+        int index = indexOf(u, v);
+        if(index >= 0) {
+            adjacencyWeights[u][index] = weight;
+            return;
+        }
+        if(degree[u] == adjacency[u].length) {
+            adjacency[u] = Arrays.copyOf(adjacency[u], degree[u] * 2);
+            adjacencyWeights[u] = Arrays.copyOf(adjacencyWeights[u], degree[u] * 2);
+        }
+        adjacency[u][degree[u]] = v;
+        adjacencyWeights[u][degree[u]] = weight;
+        degree[u]++;
+    }
+
+    private void removeDirected(int u, int v) {
+        int index = indexOf(u, v);
+        int last = --degree[u];
+        adjacency[u][index] = adjacency[u][last];
+        adjacencyWeights[u][index] = adjacencyWeights[u][last];
+    }
+
+    /**
+     * adds count people at origin, a negative count removes them. an origin seen for the
+     * first time costs one full search, one left with nobody is forgotten
+     * @param origin
+     * @param count
+     */
+    public void update(int origin, int count) {
+        if(count == 0) {
+            return;
+        }
+        int slot = slotOf[origin];
+        if(slot < 0) {
+            if(count < 0) {
+                throw new IllegalArgumentException("nobody to remove at " + origin);
+            }
+            if(originCount == origins.length) {
+                origins = Arrays.copyOf(origins, originCount * 2);
+                counts = Arrays.copyOf(counts, originCount * 2);
+                distances = Arrays.copyOf(distances, originCount * 2);
+            }
+            slot = originCount++;
+            slotOf[origin] = slot;
+            origins[slot] = origin;
+            counts[slot] = 0;
+            distances[slot] = search(origin);
+        }
+        if(counts[slot] + count < 0) {
+            throw new IllegalArgumentException("only " + counts[slot] + " people to remove at " + origin);
+        }
+        counts[slot] += count;
+        if(counts[slot] == 0) {
+            // later origins move up a slot so the totals are still added in the order the origins came
+            slotOf[origin] = -1;
+            originCount--;
+            System.arraycopy(origins, slot + 1, origins, slot, originCount - slot);
+            System.arraycopy(counts, slot + 1, counts, slot, originCount - slot);
+            System.arraycopy(distances, slot + 1, distances, slot, originCount - slot);
+            distances[originCount] = null;
+            for(int i = slot; i < originCount; i++) {
+                slotOf[origins[i]] = i;
+            }
+        }
+        totalSize += count;
+        for(int v = 0; v < vertexCount; v++) {
+            totals[v] = total(v);
+        }
+        minVertex = findMinVertex();
+    }
+
+    /**
+     * runs a full search from origin over the current edges
+     * @param origin
+     * @return
+     */
+    private double[] search(int origin) {
+        double[] dist = new double[vertexCount];
+        Arrays.fill(dist, Double.MAX_VALUE);
+        heap.clear();
+        heap.insert(origin, 0);
+        while(!heap.isEmpty()) {
+            int u = heap.pollMin();
+            dist[u] = key[u];
+            relax(dist, u);
+        }
+        return dist;
+    }
+
+    /**
+     * queues every neighbor of the settled vertex u that gets closer through u
+     */
+    private void relax(double[] dist, int u) {
+        double cost = dist[u];
+        int[] neighbors = adjacency[u];
+        double[] weights = adjacencyWeights[u];
+        for(int i = 0; i < degree[u]; i++) {
+            int v = neighbors[i];
+            double newCost = cost + weights[i];
+            if(newCost < dist[v] && (!heap.contains(v) || newCost < key[v])) {
+                heap.insertOrDecrease(v, newCost);
+            }
+        }
+    }
+
+    private void repairAll(int v1, int v2, double oldWeight, double newWeight) {
+        if(v1 == v2) {
+            // a loop is never on a shortest path
+            return;
+        }
+        for(int slot = 0; slot < originCount; slot++) {
+            if(newWeight < oldWeight) {
+                repairDecrease(distances[slot], v1, v2, newWeight);
+            } else {
+                repairIncrease(distances[slot], origins[slot], v1, v2, oldWeight);
+            }
+        }
+        double min = minVertex < 0 ? Double.MAX_VALUE : totals[minVertex];
+        boolean minWorse = false;
+        for(int i = 0; i < changedCount; i++) {
+            int v = changedList[i];
+            changed[v] = false;
+            totals[v] = total(v);
+            minWorse |= v == minVertex && totals[v] > min;
+        }
+        if(minWorse) {
+            minVertex = findMinVertex();
+        } else {
+            // only the changed vertices can have overtaken the old minimum
+            for(int i = 0; i < changedCount; i++) {
+                int v = changedList[i];
+                if(totals[v] < Double.MAX_VALUE && (minVertex < 0 || totals[v] < totals[minVertex]
+                        || (totals[v] == totals[minVertex] && v < minVertex))) {
+                    minVertex = v;
+                }
+            }
+        }
+        changedCount = 0;
+    }
+
+    private void markChanged(int v) {
+        if(!changed[v]) {
+            changed[v] = true;
+            changedList[changedCount++] = v;
+        }
+    }
+
+    /**
+     * spreads a cheaper edge between v1 and v2 through dist
+     */
+    private void repairDecrease(double[] dist, int v1, int v2, double weight) {
+        heap.clear();
+        if(dist[v1] != Double.MAX_VALUE && dist[v1] + weight < dist[v2]) {
+            heap.insert(v2, dist[v1] + weight);
+        }
+        if(dist[v2] != Double.MAX_VALUE && dist[v2] + weight < dist[v1]) {
+            heap.insert(v1, dist[v2] + weight);
+        }
+        while(!heap.isEmpty()) {
+            int u = heap.pollMin();
+            dist[u] = key[u];
+            markChanged(u);
+            repairedCount++;
+            relax(dist, u);
+        }
+    }
+
+    /**
+     * repairs dist after the edge between v1 and v2 got dearer or was removed, the edges
+     * already carry the new weight
+     */
+    private void repairIncrease(double[] dist, int origin, int v1, int v2, double oldWeight) {
+        heap.clear();
+        // only an end reached through the old edge can lose its shortest path
+        if(dist[v1] != Double.MAX_VALUE && dist[v1] + oldWeight == dist[v2] && v2 != origin) {
+            state[v2] = PENDING;
+            heap.insert(v2, dist[v2]);
+        }
+        if(dist[v2] != Double.MAX_VALUE && dist[v2] + oldWeight == dist[v1] && v1 != origin) {
+            state[v1] = PENDING;
+            heap.insert(v1, dist[v1]);
+        }
+        if(heap.isEmpty()) {
+            return;
+        }
+
+        // candidates are decided closest first, a candidate is affected when no closer neighbor
+        // outside the affected set still gives it the same distance. neighbors at the same
+        // distance through zero weight edges are not trusted since they may hang off the
+        // candidate itself, which can only add extra work
+        int affectedCount = 0;
+        while(!heap.isEmpty()) {
+            int y = heap.pollMin();
+            state[y] = UNTOUCHED;
+            if(supported(dist, y)) {
+                continue;
+            }
+            state[y] = AFFECTED;
+            affected[affectedCount++] = y;
+            double cost = dist[y];
+            int[] neighbors = adjacency[y];
+            double[] weights = adjacencyWeights[y];
+            for(int i = 0; i < degree[y]; i++) {
+                int z = neighbors[i];
+                if(state[z] == UNTOUCHED && z != origin && cost + weights[i] == dist[z]) {
+                    state[z] = PENDING;
+                    heap.insert(z, dist[z]);
+                }
+            }
+        }
+
+        repairedCount += affectedCount;
+        // the affected vertices start from their best unaffected neighbor and are searched again among themselves
+        for(int i = 0; i < affectedCount; i++) {
+            int x = affected[i];
+            markChanged(x);
+            double best = Double.MAX_VALUE;
+            int[] neighbors = adjacency[x];
+            double[] weights = adjacencyWeights[x];
+            for(int j = 0; j < degree[x]; j++) {
+                int z = neighbors[j];
+                if(state[z] != AFFECTED && dist[z] != Double.MAX_VALUE) {
+                    best = Math.min(best, dist[z] + weights[j]);
+                }
+            }
+            dist[x] = Double.MAX_VALUE;
+            if(best != Double.MAX_VALUE) {
+                heap.insert(x, best);
+            }
+        }
+        while(!heap.isEmpty()) {
+            int x = heap.pollMin();
+            dist[x] = key[x];
+            state[x] = UNTOUCHED;
+            double cost = dist[x];
+            int[] neighbors = adjacency[x];
+            double[] weights = adjacencyWeights[x];
+            for(int j = 0; j < degree[x]; j++) {
+                int y = neighbors[j];
+                double newCost = cost + weights[j];
+                if(state[y] == AFFECTED && (!heap.contains(y) || newCost < key[y])) {
+                    heap.insertOrDecrease(y, newCost);
+                }
+            }
+        }
+        for(int i = 0; i < affectedCount; i++) {
+            state[affected[i]] = UNTOUCHED;
+        }
+    }
+
+    /**
+     * returns if a closer neighbor of y that is not affected or pending still gives y its distance
+     */
+    private boolean supported(double[] dist, int y) {
+        double target = dist[y];
+        int[] neighbors = adjacency[y];
+        double[] weights = adjacencyWeights[y];
+        for(int i = 0; i < degree[y]; i++) {
+            int z = neighbors[i];
+            if(state[z] == UNTOUCHED && dist[z] < target && dist[z] + weights[i] == target) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * sums the weighted distances of every origin to v in origin order, Double.MAX_VALUE if an origin cannot reach v
+     */
+    private double total(int v) {
+        double total = 0;
+        for(int slot = 0; slot < originCount; slot++) {
+            double d = distances[slot][v];
+            if(d == Double.MAX_VALUE) {
+                return Double.MAX_VALUE;
+            }
+            total += counts[slot] * d;
+        }
+        return total;
+    }
+
+    private int findMinVertex() {
+        return originCount == 0 ? -1 : MidpointSolver.argmin(totals);
+    }
+
+    /**
+     * returns the distance from a tracked origin to v
+     * @param origin
+     * @param v
+     * @return
+     */
+    public double distance(int origin, int v) {
+        int slot = slotOf[origin];
+        if(slot < 0) {
+            throw new IllegalArgumentException(origin + " is not an origin");
+        }
+        return distances[slot][v];
+    }
+
+    /**
+     * returns the vertex with the smallest weighted total, or -1 if no vertex reaches everybody
+     * @return
+     */
+    public int getMinVertex() {
+        return minVertex;
+    }
+
+    /**
+     * returns the average distance travelled to the best midpoint
+     * @return
+     */
+    public double getMinAverage() {
+        return totals[minVertex] / totalSize;
+    }
+
+    /**
+     * returns the number of people being tracked
+     * @return
+     */
+    public int getTotalSize() {
+        return totalSize;
+    }
+
+    /**
+     * returns how many distances the edge updates so far have searched again, summed over the origins
+     * @return
+     */
+    public long getRepairedCount() {
+        return repairedCount;
+    }
+
+    /**
+     * packs the current edges into a CsrGraph
+     * @return
+     */
+    CsrGraph toGraph() {
+        CsrGraph.Builder builder = new CsrGraph.Builder(vertexCount);
+        for(int u = 0; u < vertexCount; u++) {
+            for(int i = 0; i < degree[u]; i++) {
+                builder.addEdge(u, adjacency[u][i], adjacencyWeights[u][i]);
+            }
+        }
+        return builder.build();
+    }
+}
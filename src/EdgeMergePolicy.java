@@ -0,0 +1,6 @@
+/**
+ * interface to choose the weight kept when the same pair of cities is joined by more than one edge
+ */
+interface EdgeMergePolicy {
+    double merge(double existingWeight, double addedWeight);
+}
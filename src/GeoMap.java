@@ -3,7 +3,10 @@ import com.sun.tools.javac.util.Pair;
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * interface to allow different costfunctions to be passed to the neighbor function
@@ -16,8 +19,28 @@ interface CostFunction {
  * Created by ezalenski on 8/30/16.
  */
 class GeoMap {
+    // cities near the middle of the people searched before the landmark bounds are applied
+    private static final int SPATIAL_SEEDS = 8;
+
     private final ArrayList<City> cities;
     private final ArrayList<City> populatedCities;
+    private CsrGraph graph;
+    private boolean compact;
+    private ForkJoinPool searchPool;
+    private MidpointSolver solver;
+    private long cacheBudgetBytes;
+    private DistanceCache distanceCache;
+    private ContractionHierarchy hierarchy;
+    private CsrGraph hierarchyGraph;
+    private Landmarks landmarks;
+    private AltSearch landmarkSearch;
+    private MidpointTracker tracker;
+    private EdgeMergePolicy edgeMergePolicy;
+    private DynamicMidpoint live;
+    private double[] latitudes;
+    private double[] longitudes;
+    private SpatialIndex spatialIndex;
+    private ParticipantStore participants;
 
     /**
      * Default GeoMap with empty cities and populated cities
@@ -25,6 +48,8 @@ class GeoMap {
     public GeoMap() {
         cities = new ArrayList<>();
         populatedCities = new ArrayList<>();
+        participants = new ParticipantStore(true);
+        compact = false;
     }
 
     /**
@@ -32,8 +57,122 @@ class GeoMap {
      * @param other
      */
     public GeoMap( GeoMap other ) {
-        this.cities = new ArrayList<>( other.cities );
-        this.populatedCities = new ArrayList<>( other.populatedCities );
+        // the cities, their edges and their people are copied so edits to either map stay in that map
+        this.cities = new ArrayList<>( other.cities.size() );
+        for(City city : other.cities) {
+            this.cities.add(new City(city.vertex, city.name));
+        }
+        for(City city : other.cities) {
+            City copy = this.cities.get(city.vertex);
+            for(Neighbor neighbor : city.getNeighbors()) {
+                copy.addNeighbor(this.cities.get(neighbor.adj.vertex), neighbor.weight);
+            }
+            for(Person person : city.getPopulation()) {
+                copy.addPerson(new Person(person));
+            }
+        }
+        this.populatedCities = new ArrayList<>( other.populatedCities.size() );
+        for(City city : other.populatedCities) {
+            this.populatedCities.add(this.cities.get(city.vertex));
+        }
+        // a compact map with live edge edits keeps its edges only in live, which is not shared
+        this.graph = other.compact ? other.getGraph() : other.graph;
+        this.compact = other.compact;
+        this.searchPool = other.searchPool;
+        this.cacheBudgetBytes = other.cacheBudgetBytes;
+        this.edgeMergePolicy = other.edgeMergePolicy;
+        this.latitudes = other.latitudes;
+        this.longitudes = other.longitudes;
+        this.spatialIndex = other.spatialIndex;
+        this.participants = new ParticipantStore(other.participants);
+    }
+
+    /**
+     * creates a compact map from the cities and the graph at index of a mapped GraphFile
+     * @param file
+     * @param index
+     * @return
+     * @throws IOException if the graph is corrupt
+     */
+    public static GeoMap fromSnapshot(GraphFile file, int index) throws IOException {
+        GeoMap map = new GeoMap();
+        for(int v = 0; v < file.getCityCount(); v++) {
+            map.cities.add(new City(v, file.getCityName(v)));
+        }
+        map.graph = file.getGraph(index);
+        map.compact = true;
+        return map;
+    }
+
+    /**
+     * writes the cities of this map followed by the edges of this map and of every
+     * other map to path, the other maps must have the same cities as this one.
+     * graph 0 of the file is this map, graph i is others[i-1]
+     * @param path
+     * @param others
+     * @throws IOException
+     */
+    public void writeSnapshot(Path path, GeoMap... others) throws IOException {
+        String[] names = new String[cities.size()];
+        for(City city : cities) {
+            names[city.vertex] = city.name;
+        }
+        CsrGraph[] graphs = new CsrGraph[others.length + 1];
+        graphs[0] = getGraph();
+        for(int i = 0; i < others.length; i++) {
+            for(City city : others[i].cities) {
+                if(city.vertex >= names.length || !city.name.equals(names[city.vertex])) {
+                    throw new IllegalArgumentException("maps do not share the same cities");
+                }
+            }
+            graphs[i + 1] = others[i].getGraph();
+        }
+        GraphFile.write(path, names, graphs);
+    }
+
+    /**
+     * switches the map to compact mode: the edges are packed into an immutable
+     * CsrGraph and the per city neighbor lists are released, every query after
+     * this runs on the packed graph
+     */
+    public void compact() {
+        if(compact) {
+            return;
+        }
+        graph = getGraph();
+        for(City city : cities) {
+            city.clearNeighbors();
+        }
+        compact = true;
+    }
+
+    /**
+     * returns if the map is in compact mode
+     * @return
+     */
+    public boolean isCompact() {
+        return compact;
+    }
+
+    /**
+     * returns the edges of the map as a CsrGraph, outside of compact mode the
+     * graph is built from the neighbor lists on first use and kept until the edges change
+     * @return
+     */
+    CsrGraph getGraph() {
+        if(graph == null && compact) {
+            // compact edges only go missing after live updates, which keep the current edges
+            graph = live.toGraph();
+        } else if(graph == null) {
+            CsrGraph.Builder builder = new CsrGraph.Builder(cities.size());
+            for(City city : cities) {
+                for(Neighbor neighbor : city.getNeighbors()) {
+                    builder.addEdge(city.vertex, neighbor.adj.vertex, neighbor.weight);
+                }
+            }
+            graph = builder.build();
+        }
+        return graph;
     }
 
     public HashMap<String, Integer> getMapCityNamesToVertex() {
@@ -44,6 +183,182 @@ class GeoMap {
         return ret;
     }
 
+    /**
+     * sets the pool that findMinAvgDistance fans its shortest path searches out over,
+     * null runs them on the calling thread
+     * @param pool
+     */
+    public void setSearchPool(ForkJoinPool pool) {
+        this.searchPool = pool;
+        this.solver = null;
+    }
+
+    /**
+     * keeps up to budgetBytes of shortest path rows between queries, rows are
+     * dropped least recently used first and the whole cache is cleared when the edges change
+     * @param budgetBytes
+     */
+    public void enableDistanceCache(long budgetBytes) {
+        if(budgetBytes <= 0) {
+            throw new IllegalArgumentException("budget must be positive");
+        }
+        this.cacheBudgetBytes = budgetBytes;
+        this.distanceCache = null;
+        this.solver = null;
+    }
+
+    /**
+     * stops caching shortest path rows
+     */
+    public void disableDistanceCache() {
+        this.cacheBudgetBytes = 0;
+        this.distanceCache = null;
+        this.solver = null;
+    }
+
+    /**
+     * fills the distance cache with the full distance matrix, only done if the matrix fits in the budget
+     * @return true if every row is now cached
+     */
+    public boolean precomputeDistances() {
+        DistanceCache cache = getDistanceCache();
+        return cache != null && cache.precomputeAll();
+    }
+
+    /**
+     * returns the distance cache for the current edges, or null if caching is off
+     * @return
+     */
+    DistanceCache getDistanceCache() {
+        if(cacheBudgetBytes == 0) {
+            return null;
+        }
+        CsrGraph current = getGraph();
+        if(distanceCache == null || distanceCache.getGraph() != current) {
+            distanceCache = new DistanceCache(current, cacheBudgetBytes);
+        }
+        return distanceCache;
+    }
+
+    /**
+     * contracts the current edges into a hierarchy that distanceBetween, printMinDistances
+     * and the midpoint searches use until the edges change
+     * @return the hierarchy, so it can be written to disk
+     */
+    public ContractionHierarchy buildContractionHierarchy() {
+        useContractionHierarchy(ContractionHierarchy.build(getGraph()));
+        return hierarchy;
+    }
+
+    /**
+     * uses a hierarchy built earlier from the current edges, e.g. one loaded with ContractionHierarchy.read
+     * @param hierarchy
+     */
+    public void useContractionHierarchy(ContractionHierarchy hierarchy) {
+        if(hierarchy.getVertexCount() != cities.size()) {
+            throw new IllegalArgumentException("hierarchy has " + hierarchy.getVertexCount() + " vertices for " + cities.size() + " cities");
+        }
+        CsrGraph graph = getGraph();
+        if(!hierarchy.matches(graph)) {
+            throw new IllegalArgumentException("hierarchy was built from different edges");
+        }
+        this.hierarchy = hierarchy;
+        this.hierarchyGraph = graph;
+        this.solver = null;
+    }
+
+    /**
+     * goes back to plain shortest path searches
+     */
+    public void disableContractionHierarchy() {
+        this.hierarchy = null;
+        this.hierarchyGraph = null;
+        this.solver = null;
+    }
+
+    /**
+     * returns the contraction hierarchy for the current edges, or null if there is none
+     * or the edges changed since it was built
+     * @return
+     */
+    ContractionHierarchy getContractionHierarchy() {
+        if(hierarchy != null && hierarchyGraph != getGraph()) {
+            hierarchy = null;
+            hierarchyGraph = null;
+        }
+        return hierarchy;
+    }
+
+    /**
+     * picks count landmarks on the current edges and computes their distance tables, used by
+     * distanceBetween to steer its search and by findMinAvgDistance to skip hopeless candidates
+     * until the edges change
+     * @param count
+     */
+    public void selectLandmarks(int count) {
+        this.landmarks = Landmarks.select(getGraph(), count);
+        this.landmarkSearch = null;
+    }
+
+    /**
+     * drops the landmark tables
+     */
+    public void disableLandmarks() {
+        this.landmarks = null;
+        this.landmarkSearch = null;
+    }
+
+    /**
+     * returns the landmarks for the current edges, or null if there are none or the edges changed since they were picked
+     * @return
+     */
+    Landmarks getLandmarks() {
+        if(landmarks != null && landmarks.getGraph() != getGraph()) {
+            landmarks = null;
+            landmarkSearch = null;
+        }
+        return landmarks;
+    }
+
+    /**
+     * returns a midpoint solver for the current edges, a new one is made whenever the graph changes
+     * @return
+     */
+    MidpointSolver getSolver() {
+        CsrGraph current = getGraph();
+        DistanceCache cache = getDistanceCache();
+        ContractionHierarchy ch = getContractionHierarchy();
+        if(solver == null || solver.getGraph() != current || solver.getDistanceCache() != cache
+                || solver.getContractionHierarchy() != ch) {
+            if(searchPool == null) {
+                solver = new MidpointSolver(current, null, 1, cache, ch);
+            } else {
+                solver = new MidpointSolver(current, searchPool, searchPool.getParallelism(), cache, ch);
+            }
+        }
+        return solver;
+    }
+
+    /**
+     * collapses the parallel edges between two cities with policy every time edges are
+     * added from here on, so loading several sources onto the same cities keeps one edge
+     * per pair. null keeps every edge as it was added
+     * @param policy
+     */
+    public void setEdgeMergePolicy(EdgeMergePolicy policy) {
+        this.edgeMergePolicy = policy;
+    }
+
+    /**
+     * collapses the parallel edges already on the map into one edge per pair of cities,
+     * folding their weights with policy in the order they were added
+     * @param policy
+     */
+    public void mergeParallelEdges(EdgeMergePolicy policy) {
+        CsrGraph.Builder builder = startEdges();
+        mergeEdges(builder, policy);
+    }
+
     /**
      * populates map with cities from inputStreamReader
      * @param inputStreamReader
@@ -66,11 +381,79 @@ class GeoMap {
         }
     }
 
+    /**
+     * reads the coordinates of cities from inputStreamReader, laid out like the distances:
+     * a count line, then a vertex numbered from 1, a latitude and a longitude per line.
+     * cities left out have no coordinates and are never suggested by the spatial index,
+     * they are still found through the landmark bounds like before. read after the cities
+     * @param inputStreamReader
+     */
+    public void coordinatesFromStream(InputStreamReader inputStreamReader) {
+        double[] latitudes = new double[cities.size()];
+        double[] longitudes = new double[cities.size()];
+        Arrays.fill(latitudes, Double.NaN);
+        Arrays.fill(longitudes, Double.NaN);
+        try {
+            BufferedReader br = new BufferedReader(inputStreamReader);
+            br.readLine();
+            String input;
+            while((input = br.readLine()) != null) {
+                if(!input.isEmpty()) {
+                    StringTokenizer results = new StringTokenizer(input, " ");
+
+                    int vertex = Integer.parseInt(results.nextToken()) - 1;
+                    latitudes[vertex] = Double.parseDouble(results.nextToken());
+                    longitudes[vertex] = Double.parseDouble(results.nextToken());
+                }
+            }
+        } catch(IOException e) {
+            System.err.println( e.getMessage());
+        }
+        this.latitudes = latitudes;
+        this.longitudes = longitudes;
+        this.spatialIndex = null;
+    }
+
+    /**
+     * returns a k-d tree over the cities with coordinates, or null if no coordinates were read
+     * @return
+     */
+    SpatialIndex getSpatialIndex() {
+        if(spatialIndex == null && latitudes != null) {
+            spatialIndex = SpatialIndex.build(latitudes, longitudes);
+        }
+        return spatialIndex;
+    }
+
+    /**
+     * returns up to k cities nearest to the weighted geometric median of the origins,
+     * nearest first, or none when there are no coordinates for the origins
+     * @param origins
+     * @param sizes
+     * @param k
+     * @return
+     */
+    int[] spatialCandidates(int[] origins, int[] sizes, int k) {
+        SpatialIndex index = getSpatialIndex();
+        if(index == null) {
+            return new int[0];
+        }
+        double[] originLatitudes = new double[origins.length];
+        double[] originLongitudes = new double[origins.length];
+        for(int i = 0; i < origins.length; i++) {
+            originLatitudes[i] = origins[i] < latitudes.length ? latitudes[origins[i]] : Double.NaN;
+            originLongitudes[i] = origins[i] < longitudes.length ? longitudes[origins[i]] : Double.NaN;
+        }
+        double[] median = index.geometricMedian(originLatitudes, originLongitudes, sizes);
+        return median == null ? new int[0] : index.nearest(median[0], median[1], k);
+    }
+
     /**
      * populates neighbors/edges of cities from inputStreamReader
      * @param inputStreamReader
      */
     public void neighborsFromStream(InputStreamReader inputStreamReader, CostFunction cost) {
+        CsrGraph.Builder builder = startEdges();
         try {
             BufferedReader br = new BufferedReader(inputStreamReader);
             br.readLine();
@@ -82,19 +465,96 @@ class GeoMap {
                     int v1 = Integer.parseInt(results.nextToken());
                     int v2 = Integer.parseInt(results.nextToken());
                     double weight = Double.parseDouble(results.nextToken());
-                    City c1 = cities.get(v1 - 1);
-                    City c2 = cities.get(v2 - 1);
-                    c1.addNeighbor(c2, cost.calculate(weight));
-                    c2.addNeighbor(c1, cost.calculate(weight));
+                    addUndirectedEdge(builder, v1 - 1, v2 - 1, cost.calculate(weight));
                 }
             }
         }catch(IOException e) {
             System.err.println( e.getMessage());
         }
+        finishEdges(builder);
+    }
+
+    /**
+     * adds an edge for every fare the source streams, each fare goes straight onto
+     * the map as it is parsed
+     * @param source
+     * @param cost
+     * @return false if the source could not be read
+     * @throws IOException
+     */
+    public boolean neighborsFromQuotes(QuoteSource source, CostFunction cost) throws IOException {
+        CsrGraph.Builder builder = startEdges();
+        try {
+            return source.streamQuotes(getMapCityNamesToVertex(),
+                    (v1, v2, price) -> addUndirectedEdge(builder, v1, v2, cost.calculate(price)));
+        } finally {
+            finishEdges(builder);
+        }
+    }
+
+    /**
+     * returns a builder seeded with the current edges in compact mode, null otherwise
+     * @return
+     */
+    private CsrGraph.Builder startEdges() {
+        return compact ? new CsrGraph.Builder(getGraph()) : null;
+    }
+
+    /**
+     * adds an edge in both directions, into builder in compact mode or onto the neighbor lists otherwise
+     * @param builder
+     * @param v1
+     * @param v2
+     * @param weight
+     */
+    private void addUndirectedEdge(CsrGraph.Builder builder, int v1, int v2, double weight) {
+        if(compact) {
+            builder.addUndirectedEdge(v1, v2, weight);
+        } else {
+            City c1 = cities.get(v1);
+            City c2 = cities.get(v2);
+            c1.addNeighbor(c2, weight);
+            c2.addNeighbor(c1, weight);
+        }
     }
 
     /**
-     * populates cities with people from inputStreamReader
+     * publishes the new edges and drops everything computed from the old ones
+     * @param builder
+     */
+    private void finishEdges(CsrGraph.Builder builder) {
+        if(edgeMergePolicy != null) {
+            mergeEdges(builder, edgeMergePolicy);
+            return;
+        }
+        graph = compact ? builder.build() : null;
+        distanceCache = null;
+        live = null;
+    }
+
+    /**
+     * publishes the edges with every parallel edge collapsed by policy
+     * @param builder
+     * @param policy
+     */
+    private void mergeEdges(CsrGraph.Builder builder, EdgeMergePolicy policy) {
+        if(compact) {
+            graph = builder.build(policy);
+        } else {
+            int[] slotOf = new int[cities.size()];
+            Arrays.fill(slotOf, -1);
+            for(City city : cities) {
+                city.mergeNeighbors(policy, slotOf);
+            }
+            graph = null;
+        }
+        distanceCache = null;
+        live = null;
+    }
+
+    /**
+     * populates cities with people from inputStreamReader. the people go into the columnar
+     * ParticipantStore rather than a Person each, getPopulation still finds them
      * @param inputStreamReader
      */
     public void populateFromStream(InputStreamReader inputStreamReader) {
@@ -104,14 +564,18 @@ class GeoMap {
             String input;
             while((input = br.readLine()) != null) {
                 if(!input.isEmpty()) {
-                    StringTokenizer results = new StringTokenizer(input, " ");
-                    String name = results.nextToken();
-                    int id = Integer.parseInt(results.nextToken());
-                    City city = cities.get(id - 1);
-                    city.addPerson(name);
-                    if (!populatedCities.contains(city)) {
-                        populatedCities.add(city);
+                    // the name and the city id are cut out of the line without a String or a Person for either
+                    int nameStart = skipSpaces(input, 0);
+                    int nameEnd = input.indexOf(' ', nameStart);
+                    if(nameEnd < 0) {
+                        throw new NoSuchElementException("no city for " + input);
                     }
+                    int idStart = skipSpaces(input, nameEnd);
+                    int idEnd = input.indexOf(' ', idStart);
+                    int id = parseId(input, idStart, idEnd < 0 ? input.length() : idEnd);
+                    City city = cities.get(id - 1);
+                    participants.add(city.vertex, input, nameStart, nameEnd);
+                    participantAdded(city);
                 }
             }
         }catch(IOException e) {
@@ -119,16 +583,359 @@ class GeoMap {
         }
     }
 
+    private static int skipSpaces(String line, int from) {
+        while(from < line.length() && line.charAt(from) == ' ') {
+            from++;
+        }
+        return from;
+    }
+
+    private static int parseId(String line, int from, int to) {
+        if(from == to) {
+            throw new NoSuchElementException("no city for " + line);
+        }
+        int id = 0;
+        for(int i = from; i < to; i++) {
+            int digit = line.charAt(i) - '0';
+            if(digit < 0 || digit > 9 || id > (Integer.MAX_VALUE - digit) / 10) {
+                throw new NumberFormatException("not a city id: " + line.substring(from, to));
+            }
+            id = id * 10 + digit;
+        }
+        return id;
+    }
+
+    /**
+     * counts the person just put in the participant store at city and updates the tracked midpoint
+     * @param city
+     */
+    private void participantAdded(City city) {
+        if(populationOf(city) == 1) {
+            populatedCities.add(city);
+        }
+        if(tracker != null) {
+            tracker.update(city.vertex, 1);
+        }
+        if(live != null) {
+            live.update(city.vertex, 1);
+        }
+    }
+
+    /**
+     * returns the number of people at city, Person objects and participant store rows together
+     * @param city
+     * @return
+     */
+    private int populationOf(City city) {
+        return city.getSize() + participants.getCount(city.vertex);
+    }
+
+    /**
+     * chooses whether participants read by populateFromStream and populateFromBuffer keep
+     * their names. without names only a count per city is kept, which is all the midpoint
+     * needs, and getPopulation returns people with null names for them
+     * @param keep
+     * @throws IllegalStateException if participants were loaded already
+     */
+    public void setKeepParticipantNames(boolean keep) {
+        if(participants.size() > 0) {
+            throw new IllegalStateException("participants are loaded already");
+        }
+        participants = new ParticipantStore(keep);
+    }
+
+    /**
+     * adds person to the city at person's origin and updates the tracked midpoint
+     * @param person
+     */
+    public void addPerson(Person person) {
+        City city = cities.get(person.getOrigin());
+        city.addPerson(person);
+        if(populationOf(city) == 1) {
+            populatedCities.add(city);
+        }
+        if(tracker != null) {
+            tracker.update(city.vertex, 1);
+        }
+        if(live != null) {
+            live.update(city.vertex, 1);
+        }
+    }
+
+    /**
+     * removes person from the city at person's origin and updates the tracked midpoint.
+     * a person getPopulation made up for a participant store row removes that row
+     * @param person
+     * @return false if person was not in that city
+     */
+    public boolean removePerson(Person person) {
+        City city = cities.get(person.getOrigin());
+        if(!city.removePerson(person) && !participants.remove(person.getName(), city.vertex)) {
+            return false;
+        }
+        if(populationOf(city) == 0) {
+            populatedCities.remove(city);
+        }
+        if(tracker != null) {
+            tracker.update(city.vertex, -1);
+        }
+        if(live != null) {
+            live.update(city.vertex, -1);
+        }
+        return true;
+    }
+
+    /**
+     * moves person to the city at vertex newOrigin, changing their origin, and updates the tracked midpoint.
+     * a person getPopulation made up for a participant store row moves that row,
+     * moving someone to the city they are in changes nothing
+     * @param person
+     * @param newOrigin
+     * @return false if person was not in the city at their origin
+     */
+    public boolean movePerson(Person person, int newOrigin) {
+        int oldOrigin = person.getOrigin();
+        City from = cities.get(oldOrigin);
+        City to = cities.get(newOrigin);
+        if(oldOrigin == newOrigin) {
+            // nothing moves, and the city must not be counted as newly populated
+            return from.getPopulation().contains(person) || participants.contains(person.getName(), oldOrigin);
+        }
+        if(from.removePerson(person)) {
+            to.addPerson(person);
+        } else if(!participants.move(person.getName(), oldOrigin, newOrigin)) {
+            return false;
+        }
+        if(populationOf(from) == 0) {
+            populatedCities.remove(from);
+        }
+        person.setOrigin(newOrigin);
+        if(populationOf(to) == 1) {
+            populatedCities.add(to);
+        }
+        if(tracker != null) {
+            tracker.move(oldOrigin, newOrigin);
+        }
+        if(live != null) {
+            live.update(oldOrigin, -1);
+            live.update(newOrigin, 1);
+        }
+        return true;
+    }
+
+    /**
+     * returns the people living in the city at vertex. people from the participant store
+     * are made into new Person objects on every call, passing them to removePerson or
+     * movePerson changes the store
+     * @param vertex
+     * @return
+     */
+    public List<Person> getPopulation(int vertex) {
+        City city = cities.get(vertex);
+        if(participants.getCount(vertex) == 0) {
+            return city.getPopulation();
+        }
+        List<Person> population = new ArrayList<>(city.getPopulation());
+        for(String name : participants.namesAt(vertex)) {
+            population.add(new Person(name, vertex));
+        }
+        return Collections.unmodifiableList(population);
+    }
+
+    /**
+     * returns the current midpoint and its average distance like findMinAvgDistance,
+     * but kept up to date by addPerson, removePerson and movePerson. the first call
+     * after the edges change does one search per populated city, later calls are O(1)
+     * @return the midpoint, or null if nobody is on the map or no city is reachable by everybody
+     */
+    public Midpoint getTrackedMidpoint() {
+        MidpointSolver current = getSolver();
+        if(tracker == null || tracker.getSolver() != current) {
+            tracker = new MidpointTracker(current);
+            for(City populated : populatedCities) {
+                tracker.update(populated.vertex, populationOf(populated));
+            }
+        }
+        int minVertex = tracker.getMinVertex();
+        if(minVertex < 0 || tracker.getTotalSize() == 0) {
+            return null;
+        }
+        return new Midpoint(minVertex, cities.get(minVertex).name, tracker.getMinAverage());
+    }
+
+    /**
+     * sets the weight of the edge between the cities at v1 and v2 in place, adding the edge
+     * if there is none and replacing any parallel edges between them. once getLiveMidpoint
+     * has been called the shortest paths from the populated cities are repaired instead of
+     * searched again, without it a compact map repacks its edges
+     * @param v1
+     * @param v2
+     * @param weight
+     */
+    public void setEdgeWeight(int v1, int v2, double weight) {
+        if(!(weight >= 0) || Double.isInfinite(weight) || weight == Double.MAX_VALUE) {
+            throw new IllegalArgumentException("edge weight must be finite and not negative: " + weight);
+        }
+        replaceEdge(v1, v2, weight);
+        if(live != null) {
+            live.setEdge(v1, v2, weight);
+        }
+    }
+
+    /**
+     * removes every edge between the cities at v1 and v2, repairing the live midpoint like setEdgeWeight
+     * @param v1
+     * @param v2
+     * @return false if there was no edge
+     */
+    public boolean removeEdge(int v1, int v2) {
+        if(!replaceEdge(v1, v2, Double.MAX_VALUE)) {
+            return false;
+        }
+        if(live != null) {
+            live.removeEdge(v1, v2);
+        }
+        return true;
+    }
+
+    /**
+     * replaces the edges between v1 and v2 with one of weight, or with none when weight
+     * is Double.MAX_VALUE, and drops everything computed from the old edges except the live midpoint
+     * @param v1
+     * @param v2
+     * @param weight
+     * @return false if there was no edge before
+     */
+    private boolean replaceEdge(int v1, int v2, double weight) {
+        boolean existed;
+        if(!compact) {
+            City c1 = cities.get(v1);
+            City c2 = cities.get(v2);
+            existed = c1.replaceNeighbor(c2, weight);
+            if(v1 != v2) {
+                c2.replaceNeighbor(c1, weight);
+            }
+            graph = null;
+        } else if(live != null) {
+            existed = live.getWeight(v1, v2) != Double.MAX_VALUE;
+            graph = null;
+        } else {
+            CsrGraph current = getGraph();
+            CsrGraph.Builder builder = new CsrGraph.Builder(current.getVertexCount());
+            existed = false;
+            for(int u = 0; u < current.getVertexCount(); u++) {
+                for(int e = current.offsets[u]; e < current.offsets[u + 1]; e++) {
+                    int t = current.targets[e];
+                    if((u == v1 && t == v2) || (u == v2 && t == v1)) {
+                        existed = true;
+                    } else {
+                        builder.addEdge(u, t, current.weights[e]);
+                    }
+                }
+            }
+            if(weight != Double.MAX_VALUE) {
+                builder.addUndirectedEdge(v1, v2, weight);
+            }
+            graph = builder.build();
+        }
+        distanceCache = null;
+        return existed;
+    }
+
+    /**
+     * returns the current midpoint like findMinAvgDistance, kept up to date by setEdgeWeight
+     * and removeEdge as well as addPerson, removePerson and movePerson. the first call does
+     * one search per populated city, after that an edge update only searches the vertices
+     * whose distances it changes
+     * @return the midpoint, or null if nobody is on the map or no city is reachable by everybody
+     */
+    public Midpoint getLiveMidpoint() {
+        if(live == null) {
+            live = new DynamicMidpoint(getGraph());
+            for(City populated : populatedCities) {
+                live.update(populated.vertex, populationOf(populated));
+            }
+        }
+        int minVertex = live.getMinVertex();
+        if(minVertex < 0 || live.getTotalSize() == 0) {
+            return null;
+        }
+        return new Midpoint(minVertex, cities.get(minVertex).name, live.getMinAverage());
+    }
+
+    /**
+     * returns the live midpoint structure, or null if getLiveMidpoint has not been called since the edges were last replaced
+     * @return
+     */
+    DynamicMidpoint getDynamicMidpoint() {
+        return live;
+    }
+
+    /**
+     * populates map with cities from a buffer in the same format as citiesFromStream,
+     * the bytes are read in place instead of through a Reader
+     * @param buffer
+     */
+    public void citiesFromBuffer(ByteBuffer buffer) {
+        RecordParser parser = new RecordParser(buffer);
+        parser.skipLine();
+        while(parser.hasNext()) {
+            cities.add(new City(cities.size(), parser.nextLine()));
+        }
+    }
+
+    /**
+     * populates neighbors/edges of cities from a buffer in the same format as
+     * neighborsFromStream, rows are parsed in place without a String per line
+     * @param buffer
+     * @param cost
+     */
+    public void neighborsFromBuffer(ByteBuffer buffer, CostFunction cost) {
+        RecordParser parser = new RecordParser(buffer);
+        parser.skipLine();
+        CsrGraph.Builder builder = startEdges();
+        while(parser.hasNext()) {
+            int v1 = parser.nextInt();
+            int v2 = parser.nextInt();
+            double weight = parser.nextDouble();
+            addUndirectedEdge(builder, v1 - 1, v2 - 1, cost.calculate(weight));
+        }
+        finishEdges(builder);
+    }
+
+    /**
+     * populates cities with people from a buffer in the same format as populateFromStream
+     * @param buffer
+     */
+    public void populateFromBuffer(ByteBuffer buffer) {
+        RecordParser parser = new RecordParser(buffer);
+        parser.skipLine();
+        while(parser.hasNext()) {
+            int nameStart = parser.skipToken();
+            int nameEnd = parser.getPosition();
+            City city = cities.get(parser.nextInt() - 1);
+            participants.add(city.vertex, buffer, nameStart, nameEnd);
+            participantAdded(city);
+        }
+    }
+
     /**
      * Displays all the information in the format of
      * "{city id}: {city name} - {city population} -> {neighbors name} Weight: {neighbor weight} -> ..."
      */
     public void displayMap() {
         for (City city : cities ) {
-            System.out.print(city.vertex + ": " + city.name + " - " + city.getSize());
-            ArrayList<Neighbor> neighbors = city.getNeighbors();
-            for(Neighbor neighbor : neighbors) {
-                System.out.print(" -> " + neighbor.adj.name + " Weight: " + neighbor.weight);
+            System.out.print(city.vertex + ": " + city.name + " - " + populationOf(city));
+            if(compact) {
+                CsrGraph packed = getGraph();
+                for(int e = packed.offsets[city.vertex]; e < packed.offsets[city.vertex + 1]; e++) {
+                    System.out.print(" -> " + getCityName(packed.targets[e]) + " Weight: " + packed.weights[e]);
+                }
+            } else {
+                ArrayList<Neighbor> neighbors = city.getNeighbors();
+                for(Neighbor neighbor : neighbors) {
+                    System.out.print(" -> " + neighbor.adj.name + " Weight: " + neighbor.weight);
+                }
             }
             System.out.print('\n');
         }
@@ -136,49 +943,113 @@ class GeoMap {
 
     /**
      * Calculates the minimum distances from a city specified by the origin(vertex/id)
+     * over the neighbor lists, unreachable cities are left at Double.MAX_VALUE. a compact
+     * map has no neighbor lists, only origin is reached on one
      * @param origin
-     * @return an arraylist of costs where the index of each cost is the corresponding
+     * @return an array of costs where the index of each cost is the corresponding
      * city's vertex
      */
-    private ArrayList<Cost> calculateMinDistances(int origin) {
-        PriorityQueue<Cost> costQueue = new PriorityQueue<>();
-        ArrayList<Cost> costList = new ArrayList<>();
-        for(City city : cities) {
-            Cost cityCost = new Cost(city, Double.MAX_VALUE);
-            costList.add(city.vertex, cityCost);
-        }
+    double[] calculateMinDistances(int origin) {
+        long start = Metrics.ENABLED ? System.nanoTime() : 0;
+        int settled = 0;
+        int relaxed = 0;
+        int heapUpdates = 1;
+        double[] dist = new double[cities.size()];
+        Arrays.fill(dist, Double.MAX_VALUE);
 
-        City start = cities.get(origin);
-        Cost startCost = costList.get(origin);
-        startCost.setDone();
-        startCost.cost = 0;
+        IndexedMinHeap costQueue = new IndexedMinHeap(dist);
+        costQueue.insert(origin, 0);
+        while(!costQueue.isEmpty()) {
+            City dest = cities.get(costQueue.pollMin());
+            settled++;
+            double cost = dist[dest.vertex];
+            for(Neighbor neighbor : dest.getNeighbors()) {
+                relaxed++;
+                double newCost = cost + neighbor.weight;
+                if(newCost < dist[neighbor.adj.vertex]) {
+                    costQueue.insertOrDecrease(neighbor.adj.vertex, newCost);
+                    heapUpdates++;
+                }
+            }
+        }
+        if(Metrics.ENABLED) {
+            Metrics.recordSearch(start, settled, relaxed, heapUpdates);
+        }
+        return dist;
+    }
 
-        ArrayList<Neighbor> neighbors = start.getNeighbors();
-        for(Neighbor neighbor : neighbors) {
-            Cost neighborCost = costList.get(neighbor.adj.vertex);
-            neighborCost.cost = neighbor.weight;
-            costQueue.add(neighborCost);
+    /**
+     * returns the minimum distances from origin indexed by vertex, using the
+     * packed graph in compact mode
+     * @param origin
+     * @return
+     */
+    private double[] minDistances(int origin) {
+        DistanceCache cache = getDistanceCache();
+        if(cache != null) {
+            return cache.get(origin);
+        }
+        ContractionHierarchy ch = getContractionHierarchy();
+        if(ch != null) {
+            return ch.distancesFrom(origin);
         }
+        if(compact) {
+            return getGraph().distancesFrom(origin);
+        }
+        return calculateMinDistances(origin);
+    }
 
-        while(!costQueue.isEmpty()) {
-            Cost smallestCost = costQueue.poll();
-            smallestCost.setDone();
-            City dest = smallestCost.getDest();
-            neighbors = dest.getNeighbors();
-
-            for(Neighbor neighbor : neighbors) {
-                double newCost = smallestCost.cost + neighbor.weight;
-                Cost neighborCost = costList.get(neighbor.adj.vertex);
-                if(!neighborCost.isDone() && (Double.compare(newCost, costList.get(neighbor.adj.vertex).cost) == -1)) {
-                    if (costQueue.contains(neighborCost)) {
-                        costQueue.remove(neighborCost);
-                    }
-                    neighborCost.cost = newCost;
-                    costQueue.add(neighborCost);
-                }
+    /**
+     * returns the shortest distance between the cities at from and to, a bidirectional
+     * query when a contraction hierarchy is built, a landmark guided one when landmarks
+     * are picked and otherwise a search that stops as soon as it reaches to
+     * @param from
+     * @param to
+     * @return the distance, or Double.MAX_VALUE if there is no path
+     */
+    public double distanceBetween(int from, int to) {
+        ContractionHierarchy ch = getContractionHierarchy();
+        if(ch != null) {
+            return ch.distance(from, to);
+        }
+        Landmarks current = getLandmarks();
+        if(current != null) {
+            if(landmarkSearch == null) {
+                landmarkSearch = new AltSearch(current);
             }
+            return landmarkSearch.distance(from, to);
         }
-        return costList;
+        return getSolver().distance(from, to);
+    }
+
+    /**
+     * returns the cities at most radius away from the city at vertex, closest first. the
+     * search stops at radius so only the cities inside it are visited
+     * @param vertex
+     * @param radius
+     * @return a Midpoint per city whose average is its distance from vertex, one person travelling
+     */
+    public List<Midpoint> citiesWithin(int vertex, double radius) {
+        DijkstraSearch search = getSolver().searchWithin(vertex, radius);
+        int[] settled = search.getSettled();
+        List<Midpoint> within = new ArrayList<>(search.getSettledCount());
+        for(int i = 0; i < search.getSettledCount(); i++) {
+            within.add(new Midpoint(settled[i], cities.get(settled[i]).name, search.getDistance(settled[i])));
+        }
+        return within;
+    }
+
+    /**
+     * returns the names of the cities every participant can reach within radius, in vertex order
+     * @param radius
+     * @return
+     */
+    public List<String> citiesWithinReachOfAll(double radius) {
+        List<String> names = new ArrayList<>();
+        for(int vertex : getSolver().withinAll(populatedOrigins(), radius)) {
+            names.add(cities.get(vertex).name);
+        }
+        return names;
     }
 
     /**
@@ -193,98 +1064,208 @@ class GeoMap {
     /**
      * finds the midpoint and the minimum average distance of the current map given the cities and population
      * returns a pair which contains the name of the midpoint and the total distance travelled.
-     * @return
+     * only one shortest path pass is run per populated city, with landmarks picked cities
+     * the landmark bounds rule out are skipped. when coordinates were read the cities
+     * nearest the geometric middle of the people are tried first, which usually sets a
+     * cap low enough for the bounds to rule out all but a handful of the rest
+     * @return the midpoint, or null if nobody is on the map or no city is reachable by everybody
      */
     public Pair<String, Double> findMinAvgDistance() {
-        double minTotal = Double.MAX_VALUE;
-        int minVertex = -1;
-        for(City city : cities) {
-            double avgTotal = 0.0;
-            int totalSize = 0;
-            ArrayList<Cost> results = calculateMinDistances(city.vertex);
-            for(City populated : populatedCities) {
-                avgTotal += (populated.getSize() * results.get(populated.vertex).cost);
-                totalSize += populated.getSize();
-            }
-            avgTotal = avgTotal / totalSize;
-            if(Double.compare(avgTotal, minTotal) == -1) {
-                minTotal = avgTotal;
-                minVertex = city.vertex;
+        if(!Metrics.ENABLED) {
+            return minAvgDistance();
+        }
+        long start = System.nanoTime();
+        try {
+            return minAvgDistance();
+        } finally {
+            Metrics.MIDPOINT_NANOS.record(System.nanoTime() - start);
+        }
+    }
+
+    private Pair<String, Double> minAvgDistance() {
+        int[] origins = populatedOrigins();
+        int[] sizes = populatedSizes();
+        int totalSize = 0;
+        for(int size : sizes) {
+            totalSize += size;
+        }
+        if(totalSize == 0) {
+            return null;
+        }
+        Landmarks current = getLandmarks();
+        if(current != null) {
+            int[] seeds = spatialCandidates(origins, sizes, SPATIAL_SEEDS);
+            Midpoint midpoint = getSolver().prunedMin(origins, sizes, current, seeds, this::getCityName);
+            if(midpoint != null) {
+                return new Pair<>(midpoint.getName(), midpoint.getAverage());
             }
         }
-        return new Pair<>(cities.get(minVertex).name, minTotal);
+        double[] averages = getSolver().weightedTotals(origins, sizes);
+        for(int v = 0; v < averages.length; v++) {
+            // a city somebody cannot reach has a total of Double.MAX_VALUE or more, dividing would hide that
+            averages[v] = averages[v] >= Double.MAX_VALUE ? Double.MAX_VALUE : averages[v] / totalSize;
+        }
+        int minVertex = MidpointSolver.argmin(averages);
+        if(minVertex < 0) {
+            return null;
+        }
+        return new Pair<>(cities.get(minVertex).name, averages[minVertex]);
     }
 
     /**
-     * prints all the minimum distances from target in alphabetic order
-     * @param target
+     * finds the midpoint of many meetings against this map at once, searching from each
+     * distinct origin city once however many meetings have people there. the people of
+     * the map itself are not used
+     * @param origins the origin vertices of each meeting
+     * @param sizes the number of people at each origin of each meeting
+     * @return the midpoint of each meeting in order, null for a meeting nobody can reach
      */
-    public void printMinDistances(int target) {
-        ArrayList<Cost> results = calculateMinDistances(target-1);
-        Collections.sort(results, (Cost c1, Cost c2) -> c1.getDest().name.compareToIgnoreCase(c2.getDest().name));
-        for(Cost c : results) {
-            System.out.println(c.getDest().name + " is " + c.cost + " units from " + getCityName(target-1));
+    public List<Midpoint> findBatchMidpoints(int[][] origins, int[][] sizes) {
+        return getSolver().batchMins(origins, sizes, this::getCityName);
+    }
+
+    /**
+     * finds the midpoint of every participant list, each in the format populateFromStream
+     * reads, like populating a copy of the map with each list and calling findMinAvgDistance
+     * but with one shortest path search per distinct city over all lists
+     * @param participantLists
+     * @return the midpoint of each list in order, null for a list nobody can reach
+     * @throws IOException
+     */
+    public List<Midpoint> findMinAvgDistances(List<InputStreamReader> participantLists) throws IOException {
+        int[][] origins = new int[participantLists.size()][];
+        int[][] sizes = new int[participantLists.size()][];
+        for(int m = 0; m < origins.length; m++) {
+            // cities in order of their first participant, the same order populatedCities would have
+            Map<Integer, Integer> people = new LinkedHashMap<>();
+            BufferedReader br = new BufferedReader(participantLists.get(m));
+            br.readLine();
+            String input;
+            while((input = br.readLine()) != null) {
+                if(!input.isEmpty()) {
+                    StringTokenizer results = new StringTokenizer(input, " ");
+                    results.nextToken();
+                    people.merge(Integer.parseInt(results.nextToken()) - 1, 1, Integer::sum);
+                }
+            }
+            origins[m] = new int[people.size()];
+            sizes[m] = new int[people.size()];
+            int i = 0;
+            for(Map.Entry<Integer, Integer> entry : people.entrySet()) {
+                origins[m][i] = entry.getKey();
+                sizes[m][i] = entry.getValue();
+                i++;
+            }
         }
+        return findBatchMidpoints(origins, sizes);
     }
 
-    private class Cost implements Comparator<Cost>, Comparable<Cost>{
-        private final City dest;
-        double cost;
-        private boolean done;
+    /**
+     * finds the k cities with the lowest average distance travelled, best first.
+     * the first entry is the same city findMinAvgDistance returns
+     * @param k
+     * @return
+     */
+    public List<Midpoint> findTopMidpoints(int k) {
+        return getSolver().topK(populatedOrigins(), populatedSizes(), k, this::getCityName);
+    }
 
-        /**
-         * creates a Cost with the cost for going to the dest city
-         * @param dest
-         * @param cost
-         */
-        Cost(City dest, double cost) {
-            this.dest = dest;
-            this.cost = cost;
-            done = false;
+    /**
+     * builds one graph over the cities of this map that carries the edges of this map
+     * as channel 0 and the edges of others[i] as channel i+1, the other maps must have
+     * the same cities. the other maps are no longer needed afterwards
+     * @param others
+     * @return
+     */
+    public MultiWeightGraph layerWith(GeoMap... others) {
+        CsrGraph[] channels = new CsrGraph[others.length + 1];
+        channels[0] = getGraph();
+        for(int i = 0; i < others.length; i++) {
+            if(others[i].cities.size() != cities.size()) {
+                throw new IllegalArgumentException("maps do not share the same cities");
+            }
+            channels[i + 1] = others[i].getGraph();
         }
+        return MultiWeightGraph.union(channels);
+    }
 
-        /**
-         * Set the Cost as done/visited
-         */
-        public void setDone() {
-            this.done = true;
+    /**
+     * finds the cities where no other city has a lower average in every channel of layered,
+     * using the people of this map. sorted by the average of channel 0
+     * @param layered
+     * @return
+     */
+    public List<MultiMidpoint> findParetoMidpoints(MultiWeightGraph layered) {
+        double[][] averages = new MultiObjectiveSolver(layered).averages(populatedOrigins(), populatedSizes());
+        return MultiObjectiveSolver.paretoFront(averages, this::getCityName);
+    }
+
+    /**
+     * finds the city with the lowest sum of lambdas[c] times its average in channel c of layered,
+     * using the people of this map. the Midpoint's average is that weighted sum
+     * @param layered
+     * @param lambdas
+     * @return
+     */
+    public Midpoint findWeightedMidpoint(MultiWeightGraph layered, double... lambdas) {
+        double[][] averages = new MultiObjectiveSolver(layered).averages(populatedOrigins(), populatedSizes());
+        int vertex = MultiObjectiveSolver.scalarizedArgmin(averages, lambdas);
+        if(vertex < 0) {
+            return null;
         }
+        return new Midpoint(vertex, getCityName(vertex), MultiObjectiveSolver.scalarized(averages, lambdas, vertex));
+    }
 
-        /**
-         * returns if the Cost is done/visited
-         * @return
-         */
-        public boolean isDone() {
-            return done;
+    /**
+     * returns an immutable copy of the cities, edges and people of the map for answering
+     * queries from many threads. the snapshot runs each query on the calling thread and
+     * shares the distance cache and contraction hierarchy of the current edges if there
+     * are any. later changes to the map do not show up in the snapshot
+     * @return
+     */
+    public MapSnapshot freeze() {
+        String[] names = new String[cities.size()];
+        for(City city : cities) {
+            names[city.vertex] = city.name;
         }
+        MidpointSolver shared = new MidpointSolver(getGraph(), null, 1, getDistanceCache(), getContractionHierarchy());
+        return new MapSnapshot(names, shared, populatedOrigins(), populatedSizes());
+    }
 
-        /**
-         * returns the City that is the destination of the Cost
-         * @return
-         */
-        public City getDest() {
-            return dest;
+    /**
+     * returns the vertex of every populated city
+     * @return
+     */
+    private int[] populatedOrigins() {
+        int[] origins = new int[populatedCities.size()];
+        for(int i = 0; i < origins.length; i++) {
+            origins[i] = populatedCities.get(i).vertex;
         }
+        return origins;
+    }
 
-        /**
-         * Compares based doubles
-         * @param other
-         * @return
-         */
-        @Override
-        public int compareTo(Cost other) {
-            return Double.compare(this.cost, other.cost);
+    /**
+     * returns the population of every populated city, in the same order as populatedOrigins
+     * @return
+     */
+    private int[] populatedSizes() {
+        int[] sizes = new int[populatedCities.size()];
+        for(int i = 0; i < sizes.length; i++) {
+            sizes[i] = populationOf(populatedCities.get(i));
         }
+        return sizes;
+    }
 
-        /**
-         * compares based on double value
-         * @param lhs
-         * @param rhs
-         * @return
-         */
-        @Override
-        public int compare(Cost lhs, Cost rhs) {
-            return Double.compare(lhs.cost, rhs.cost);
+    /**
+     * prints all the minimum distances from target in alphabetic order
+     * @param target
+     */
+    public void printMinDistances(int target) {
+        double[] results = minDistances(target-1);
+        ArrayList<City> sorted = new ArrayList<>(cities);
+        Collections.sort(sorted, (City c1, City c2) -> c1.name.compareToIgnoreCase(c2.name));
+        for(City c : sorted) {
+            System.out.println(c.name + " is " + results[c.vertex] + " units from " + getCityName(target-1));
         }
     }
 }
@@ -338,7 +1319,34 @@ class City {
     }
 
     /**
-     * returns the population of the city
+     * adds an existing person to the cities population
+     * @param person
+     * @return
+     */
+    public boolean addPerson(Person person) {
+        return population.add(person);
+    }
+
+    /**
+     * removes person from the cities population
+     * @param person
+     * @return false if person did not live here
+     */
+    public boolean removePerson(Person person) {
+        return population.remove(person);
+    }
+
+    /**
+     * returns a read only view of the people living in the city
+     * @return
+     */
+    List<Person> getPopulation() {
+        return Collections.unmodifiableList(population);
+    }
+
+    /**
+     * returns the number of Person objects living in the city, people in the map's
+     * ParticipantStore are counted by the map
      * @return
      */
     public int getSize() {
@@ -352,6 +1360,62 @@ class City {
     ArrayList<Neighbor> getNeighbors() {
         return neighbors;
     }
+
+    /**
+     * removes every neighbor, used once the edges have been moved into a CsrGraph
+     */
+    void clearNeighbors() {
+        neighbors = new ArrayList<>(0);
+    }
+
+    /**
+     * replaces every neighbor that is other with one of weight at the place of the first,
+     * or removes them all when weight is Double.MAX_VALUE
+     * @param other
+     * @param weight
+     * @return false if other was not a neighbor
+     */
+    boolean replaceNeighbor(City other, double weight) {
+        int first = -1;
+        for(int i = neighbors.size() - 1; i >= 0; i--) {
+            if(neighbors.get(i).adj == other) {
+                neighbors.remove(i);
+                first = i;
+            }
+        }
+        if(weight != Double.MAX_VALUE) {
+            neighbors.add(first < 0 ? neighbors.size() : first, new Neighbor(other, weight));
+        }
+        return first >= 0;
+    }
+
+    /**
+     * collapses the neighbors that are the same city into one at the place of the first,
+     * its weight folded from theirs in order with policy
+     * @param policy
+     * @param slotOf scratch indexed by vertex, all -1, and left all -1 afterwards
+     * @return the number of neighbors removed
+     */
+    int mergeNeighbors(EdgeMergePolicy policy, int[] slotOf) {
+        ArrayList<Neighbor> merged = new ArrayList<>(neighbors.size());
+        for(Neighbor neighbor : neighbors) {
+            int slot = slotOf[neighbor.adj.vertex];
+            if(slot < 0) {
+                slotOf[neighbor.adj.vertex] = merged.size();
+                merged.add(neighbor);
+            } else {
+                merged.set(slot, new Neighbor(neighbor.adj, policy.merge(merged.get(slot).weight, neighbor.weight)));
+            }
+        }
+        for(Neighbor neighbor : merged) {
+            slotOf[neighbor.adj.vertex] = -1;
+        }
+        int removed = neighbors.size() - merged.size();
+        if(removed > 0) {
+            neighbors = merged;
+        }
+        return removed;
+    }
 }
 
 class Neighbor {
@@ -0,0 +1,354 @@
+import com.sun.tools.javac.util.Pair;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * micro benchmarks for the GeoMap hot paths: shortest path search, contraction hierarchy
+ * queries, midpoint search, edge and participant loading and SkyScanner json parsing. each case runs on the bundled Resources
+ * data and on synthetic graphs and reports throughput, latency percentiles and the
+ * bytes allocated per operation.
+ *
+ * usage: GeoMapBenchmark [--sizes 10000,100000,1000000] [--degree 4] [--participants 50]
+ *        [--distribution uniform|clustered] [--warmup 5] [--iterations 20] [--only name]
+ */
+class GeoMapBenchmark {
+    private static volatile double sink;
+
+    private int[] sizes = {10000, 100000};
+    private int degree = 4;
+    private int participants = 50;
+    private boolean clustered = false;
+    private int warmup = 5;
+    private int iterations = 20;
+    private String only = null;
+
+    public static void main(String[] args) throws IOException {
+        GeoMapBenchmark benchmark = new GeoMapBenchmark();
+        benchmark.parseArgs(args);
+        benchmark.runResources();
+        for(int size : benchmark.sizes) {
+            benchmark.runSynthetic(size);
+        }
+    }
+
+    private void parseArgs(String[] args) {
+        for(int i = 0; i + 1 < args.length; i += 2) {
+            String value = args[i + 1];
+            switch(args[i]) {
+                case "--sizes":
+                    sizes = Arrays.stream(value.split(",")).mapToInt(Integer::parseInt).toArray();
+                    break;
+                case "--degree":
+                    degree = Integer.parseInt(value);
+                    break;
+                case "--participants":
+                    participants = Integer.parseInt(value);
+                    break;
+                case "--distribution":
+                    clustered = "clustered".equals(value);
+                    break;
+                case "--warmup":
+                    warmup = Integer.parseInt(value);
+                    break;
+                case "--iterations":
+                    iterations = Integer.parseInt(value);
+                    break;
+                case "--only":
+                    only = value;
+                    break;
+                default:
+                    throw new IllegalArgumentException("unknown option " + args[i]);
+            }
+        }
+    }
+
+    /**
+     * benchmarks the bundled 248 city map
+     * @throws IOException
+     */
+    private void runResources() throws IOException {
+        byte[] names = readResource("Resources/CityNames.txt");
+        byte[] distances = readResource("Resources/CityDistances.txt");
+        byte[] people = readResource("Resources/Participants.txt");
+        run("resources", names, distances, people);
+    }
+
+    /**
+     * benchmarks a synthetic map with size vertices
+     * @param size
+     */
+    private void runSynthetic(int size) {
+        Random random = new Random(size);
+        run("synthetic-" + size, syntheticCities(size), syntheticEdges(size, degree, random),
+                syntheticParticipants(size, participants, clustered, random));
+    }
+
+    private void run(String label, byte[] names, byte[] distances, byte[] people) {
+        GeoMap map = new GeoMap();
+        map.citiesFromBuffer(ByteBuffer.wrap(names));
+        map.neighborsFromBuffer(ByteBuffer.wrap(distances), distance -> distance);
+        map.populateFromBuffer(ByteBuffer.wrap(people));
+        // the same map before compacting, searched over its per city neighbor lists
+        GeoMap lists = new GeoMap(map);
+        map.compact();
+        CsrGraph graph = map.getGraph();
+        System.out.println("== " + label + ": " + graph.getVertexCount() + " vertices, " + graph.getEdgeCount() + " edges");
+
+        DijkstraSearch search = new DijkstraSearch(graph);
+        Random random = new Random(42);
+        measure(label, "csrFullSearch", () -> sink = search.run(random.nextInt(graph.getVertexCount()))[0]);
+        measure(label, "calculateMinDistances", () -> sink = lists.calculateMinDistances(random.nextInt(graph.getVertexCount()))[0]);
+        measure(label, "earlyExitPointQuery", () -> sink = search.runTo(
+                random.nextInt(graph.getVertexCount()), random.nextInt(graph.getVertexCount()))[0]);
+        measure(label, "findMinAvgDistance", () -> sink = averageOf(map.findMinAvgDistance()));
+        // 100 meetings of 8 cities each drawn from 32 shared cities, so the batch runs 32 searches instead of 800
+        int[][] meetingOrigins = new int[100][8];
+        int[][] meetingSizes = new int[100][8];
+        int[] shared = new int[32];
+        for(int i = 0; i < shared.length; i++) {
+            shared[i] = random.nextInt(graph.getVertexCount());
+        }
+        for(int m = 0; m < meetingOrigins.length; m++) {
+            for(int i = 0; i < meetingOrigins[m].length; i++) {
+                meetingOrigins[m][i] = shared[random.nextInt(shared.length)];
+                meetingSizes[m][i] = 1 + random.nextInt(4);
+            }
+        }
+        measure(label, "batchMidpoints", () -> sink = map.findBatchMidpoints(meetingOrigins, meetingSizes).size());
+        if(only == null || only.startsWith("alt")) {
+            map.selectLandmarks(16);
+            AltSearch altSearch = new AltSearch(map.getLandmarks());
+            measure(label, "altPointQuery", () -> sink = altSearch.distance(
+                    random.nextInt(graph.getVertexCount()), random.nextInt(graph.getVertexCount())));
+            measure(label, "altFindMinAvgDistance", () -> sink = averageOf(map.findMinAvgDistance()));
+            map.disableLandmarks();
+        }
+        // random synthetic edges have no hierarchy to exploit and take long to contract,
+        // so the hierarchy cases only run on them when asked for
+        if(only == null ? label.equals("resources") : only.startsWith("ch")) {
+            ContractionHierarchy hierarchy = ContractionHierarchy.build(graph);
+            measure(label, "chPointQuery", () -> sink = hierarchy.distance(
+                    random.nextInt(graph.getVertexCount()), random.nextInt(graph.getVertexCount())));
+            ContractionHierarchy.Query query = hierarchy.newQuery();
+            measure(label, "chOneToMany", () -> sink = query.run(random.nextInt(graph.getVertexCount()))[0]);
+        }
+        if(only == null || only.equals("liveEdgeUpdate")) {
+            // reprices a random edge to between half and one and a half times its original weight
+            map.getLiveMidpoint();
+            measure(label, "liveEdgeUpdate", () -> {
+                int e = random.nextInt(graph.getEdgeCount());
+                int u = 0;
+                while(graph.offsets[u + 1] <= e) {
+                    u++;
+                }
+                map.setEdgeWeight(u, graph.targets[e], graph.weights[e] * (0.5 + random.nextDouble()));
+                sink = map.getLiveMidpoint().getAverage();
+            });
+        }
+        measure(label, "neighborsFromStream", () -> {
+            GeoMap loaded = new GeoMap();
+            loaded.citiesFromBuffer(ByteBuffer.wrap(names));
+            loaded.neighborsFromStream(new InputStreamReader(new ByteArrayInputStream(distances), StandardCharsets.UTF_8), distance -> distance);
+            sink = loaded.getGraph().getEdgeCount();
+        });
+        measure(label, "neighborsFromBuffer", () -> {
+            GeoMap loaded = new GeoMap();
+            loaded.citiesFromBuffer(ByteBuffer.wrap(names));
+            loaded.compact();
+            loaded.neighborsFromBuffer(ByteBuffer.wrap(distances), distance -> distance);
+            sink = loaded.getGraph().getEdgeCount();
+        });
+        measure(label, "populateFromStream", () -> {
+            GeoMap loaded = new GeoMap();
+            loaded.citiesFromBuffer(ByteBuffer.wrap(names));
+            loaded.populateFromStream(new InputStreamReader(new ByteArrayInputStream(people), StandardCharsets.UTF_8));
+            sink = loaded.getPopulation(0).size();
+        });
+        measure(label, "populateFromBuffer", () -> {
+            GeoMap loaded = new GeoMap();
+            loaded.citiesFromBuffer(ByteBuffer.wrap(names));
+            loaded.populateFromBuffer(ByteBuffer.wrap(people));
+            sink = loaded.getPopulation(0).size();
+        });
+        byte[] json = syntheticQuotes(graph.getVertexCount(), random);
+        HashMap<String, Integer> cityToVertex = map.getMapCityNamesToVertex();
+        measure(label, "parseJsonBody", () -> {
+            try {
+                sink = new SkyScannerAPI().parseJsonBody(() -> new ByteArrayInputStream(json), cityToVertex, (v1, v2, price) -> { });
+            } catch(IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    private static double averageOf(Pair<String, Double> midpoint) {
+        return midpoint == null ? Double.NaN : midpoint.snd;
+    }
+
+    /**
+     * runs op warmup times, then times it iterations times and prints the results
+     * @param label
+     * @param name
+     * @param op
+     */
+    private void measure(String label, String name, Runnable op) {
+        if(only != null && !only.equals(name)) {
+            return;
+        }
+        for(int i = 0; i < warmup; i++) {
+            op.run();
+        }
+        long[] times = new long[iterations];
+        long allocatedBefore = allocatedBytes();
+        long start = System.nanoTime();
+        for(int i = 0; i < iterations; i++) {
+            long t0 = System.nanoTime();
+            op.run();
+            times[i] = System.nanoTime() - t0;
+        }
+        long elapsed = System.nanoTime() - start;
+        long allocated = allocatedBytes() - allocatedBefore;
+        Arrays.sort(times);
+
+        double seconds = elapsed / 1e9;
+        System.out.printf("%-14s %-22s %10.2f ops/s  p50 %9.3f ms  p90 %9.3f ms  p99 %9.3f ms  max %9.3f ms  %12s B/op  %8.1f MB/s%n",
+                label, name, iterations / seconds,
+                percentile(times, 0.50) / 1e6, percentile(times, 0.90) / 1e6,
+                percentile(times, 0.99) / 1e6, times[times.length - 1] / 1e6,
+                allocated < 0 ? "n/a" : Long.toString(allocated / iterations),
+                allocated < 0 ? 0 : allocated / seconds / (1024 * 1024));
+    }
+
+    private static long percentile(long[] sorted, double p) {
+        int index = (int) Math.ceil(p * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(sorted.length - 1, index))];
+    }
+
+    /**
+     * returns the bytes allocated by the current thread so far, or -1 if the jvm does not track it
+     * @return
+     */
+    private static long allocatedBytes() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if(threads instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) threads).getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return -1;
+    }
+
+    private static byte[] readResource(String name) throws IOException {
+        try(InputStream in = GeoMapBenchmark.class.getResourceAsStream(name)) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] chunk = new byte[8192];
+            int read;
+            while((read = in.read(chunk)) != -1) {
+                out.write(chunk, 0, read);
+            }
+            return out.toByteArray();
+        }
+    }
+
+    /**
+     * generates a CityNames file with size cities
+     * @param size
+     * @return
+     */
+    static byte[] syntheticCities(int size) {
+        StringBuilder out = new StringBuilder(size * 16).append(size).append('\n');
+        for(int v = 0; v < size; v++) {
+            out.append("City").append(v).append(", ST\n");
+        }
+        return out.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * generates a connected CityDistances file: a random spanning tree plus random
+     * extra edges until every city has about degree neighbors
+     * @param size
+     * @param degree
+     * @param random
+     * @return
+     */
+    static byte[] syntheticEdges(int size, int degree, Random random) {
+        int edges = Math.max(size - 1, size * degree / 2);
+        StringBuilder out = new StringBuilder(edges * 20).append(edges).append('\n');
+        for(int v = 1; v < size; v++) {
+            out.append(v + 1).append(' ').append(random.nextInt(v) + 1).append(' ').append(1 + random.nextInt(1000)).append('\n');
+        }
+        for(int e = size - 1; e < edges; e++) {
+            out.append(random.nextInt(size) + 1).append(' ').append(random.nextInt(size) + 1).append(' ').append(1 + random.nextInt(1000)).append('\n');
+        }
+        return out.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * generates a Participants file. uniform spreads people over every city,
+     * clustered puts them in a handful of cities with a skewed share each
+     * @param size
+     * @param count
+     * @param clustered
+     * @param random
+     * @return
+     */
+    static byte[] syntheticParticipants(int size, int count, boolean clustered, Random random) {
+        int[] hubs = new int[Math.max(1, Math.min(size, count / 8))];
+        for(int i = 0; i < hubs.length; i++) {
+            hubs[i] = random.nextInt(size);
+        }
+        StringBuilder out = new StringBuilder(count * 16).append(count).append('\n');
+        for(int i = 0; i < count; i++) {
+            int city;
+            if(clustered) {
+                // square of a uniform value favours the first hubs
+                double u = random.nextDouble();
+                city = hubs[(int) (u * u * hubs.length)];
+            } else {
+                city = random.nextInt(size);
+            }
+            out.append("Person").append(i).append(' ').append(city + 1).append('\n');
+        }
+        return out.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * generates a browsequotes response with one quote per city
+     * @param size
+     * @param random
+     * @return
+     */
+    static byte[] syntheticQuotes(int size, Random random) {
+        StringBuilder out = new StringBuilder(size * 160).append("{\"Quotes\":[");
+        for(int i = 0; i < size; i++) {
+            if(i > 0) {
+                out.append(',');
+            }
+            out.append("{\"QuoteId\":").append(i + 1)
+                    .append(",\"MinPrice\":").append(50 + random.nextInt(500))
+                    .append(",\"Direct\":true,\"OutboundLeg\":{\"CarrierIds\":[").append(random.nextInt(100))
+                    .append("],\"OriginId\":").append(random.nextInt(size) + 1)
+                    .append(",\"DestinationId\":").append(random.nextInt(size) + 1)
+                    .append(",\"DepartureDate\":\"2016-09-01T00:00:00\"}}");
+        }
+        out.append("],\"Places\":[");
+        List<String> places = new ArrayList<>(size);
+        for(int i = 0; i < size; i++) {
+            places.add("{\"PlaceId\":" + (i + 1) + ",\"Name\":\"City" + i + "\",\"Type\":\"Station\",\"CityName\":\"City" + i + "\"}");
+        }
+        out.append(String.join(",", places)).append("]}");
+        return out.toString().getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,29 @@
+import java.util.Map;
+
+/**
+ * the JMX view of Metrics, registered as geomap:type=Metrics
+ */
+public interface GeoMapMetricsMXBean {
+    /**
+     * returns if the geomap.metrics system property turned metrics on at startup
+     * @return
+     */
+    boolean isEnabled();
+
+    /**
+     * returns every counter by name, including how many times each timer ran as timer.count
+     * @return
+     */
+    Map<String, Long> getCounters();
+
+    /**
+     * returns the mean, p50, p90, p99 and max of every timer in microseconds, keyed timer.statistic
+     * @return
+     */
+    Map<String, Double> getLatencyMicros();
+
+    /**
+     * zeroes every counter and timer
+     */
+    void reset();
+}
@@ -0,0 +1,217 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * binary snapshot of one set of cities and one or more graphs over them, so a
+ * distance map and a cost map can share a single file and city name table.
+ * the file is opened through FileChannel.map and the arrays are read with bulk
+ * copies, nothing is parsed.
+ *
+ * layout, little endian, every section starts on an 8 byte boundary:
+ * header: int magic, int version, int cityCount, int graphCount
+ * names: int[cityCount + 1] byte offsets, then the utf-8 bytes of every name
+ * per graph: int edgeCount, int padding, int[cityCount + 1] offsets, int[edgeCount] targets, double[edgeCount] weights
+ */
+class GraphFile {
+    static final int MAGIC = 0x47454F4D;
+    static final int VERSION = 1;
+    private static final int HEADER_BYTES = 16;
+
+    private final MappedByteBuffer buffer;
+    private final int cityCount;
+    private final int graphCount;
+    private final int nameOffsetsStart;
+    private final int nameBytesStart;
+    private final int[] graphStarts;
+
+    private GraphFile(MappedByteBuffer buffer) throws IOException {
+        this.buffer = buffer;
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        if(buffer.capacity() < HEADER_BYTES || buffer.getInt(0) != MAGIC) {
+            throw new IOException("not a graph file");
+        }
+        if(buffer.getInt(4) != VERSION) {
+            throw new IOException("unsupported graph file version " + buffer.getInt(4));
+        }
+        cityCount = buffer.getInt(8);
+        graphCount = buffer.getInt(12);
+        if(cityCount < 0 || graphCount < 0) {
+            throw new IOException("corrupt graph file: " + cityCount + " cities and " + graphCount + " graphs");
+        }
+        nameOffsetsStart = HEADER_BYTES;
+        long position = nameOffsetsStart + 4L * (cityCount + 1);
+        if(position > buffer.capacity()) {
+            throw new IOException("graph file is truncated");
+        }
+        nameBytesStart = (int) position;
+
+        graphStarts = new int[graphCount];
+        position = align(position + buffer.getInt(nameOffsetsStart + 4 * cityCount));
+        for(int g = 0; g < graphCount; g++) {
+            if(position + 8 > buffer.capacity()) {
+                throw new IOException("graph file is truncated");
+            }
+            graphStarts[g] = (int) position;
+            int edgeCount = buffer.getInt((int) position);
+            if(edgeCount < 0) {
+                throw new IOException("corrupt graph file: graph " + g + " has " + edgeCount + " edges");
+            }
+            position = align(position + 8 + 4L * (cityCount + 1) + 4L * edgeCount);
+            position += 8L * edgeCount;
+        }
+        if(position > buffer.capacity()) {
+            throw new IOException("graph file is truncated");
+        }
+    }
+
+    /**
+     * maps the file at path read only
+     * @param path
+     * @return
+     * @throws IOException
+     */
+    public static GraphFile open(Path path) throws IOException {
+        try(FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return new GraphFile(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /**
+     * writes the city names and every graph to path, all graphs must have one vertex per name
+     * @param path
+     * @param names
+     * @param graphs
+     * @throws IOException
+     */
+    public static void write(Path path, String[] names, CsrGraph... graphs) throws IOException {
+        byte[][] encoded = new byte[names.length][];
+        int nameBytes = 0;
+        for(int i = 0; i < names.length; i++) {
+            encoded[i] = names[i].getBytes(StandardCharsets.UTF_8);
+            nameBytes += encoded[i].length;
+        }
+        long size = align(HEADER_BYTES + 4L * (names.length + 1) + nameBytes);
+        for(CsrGraph graph : graphs) {
+            if(graph.getVertexCount() != names.length) {
+                throw new IllegalArgumentException("graph has " + graph.getVertexCount() + " vertices for " + names.length + " names");
+            }
+            size = align(size + 8 + 4L * (names.length + 1) + 4L * graph.getEdgeCount()) + 8L * graph.getEdgeCount();
+        }
+        if(size > Integer.MAX_VALUE) {
+            throw new IOException("graph file would be larger than 2GB");
+        }
+
+        ByteBuffer out = ByteBuffer.allocate((int) size).order(ByteOrder.LITTLE_ENDIAN);
+        out.putInt(MAGIC).putInt(VERSION).putInt(names.length).putInt(graphs.length);
+        int offset = 0;
+        for(byte[] name : encoded) {
+            out.putInt(offset);
+            offset += name.length;
+        }
+        out.putInt(offset);
+        for(byte[] name : encoded) {
+            out.put(name);
+        }
+        for(CsrGraph graph : graphs) {
+            out.position(align(out.position()));
+            out.putInt(graph.getEdgeCount()).putInt(0);
+            out.asIntBuffer().put(graph.offsets).put(graph.targets);
+            out.position(align(out.position() + 4 * (graph.offsets.length + graph.targets.length)));
+            out.asDoubleBuffer().put(graph.weights);
+            out.position(out.position() + 8 * graph.weights.length);
+        }
+        out.flip();
+
+        try(FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while(out.hasRemaining()) {
+                channel.write(out);
+            }
+        }
+    }
+
+    private static int align(int position) {
+        return (position + 7) & ~7;
+    }
+
+    private static long align(long position) {
+        return (position + 7) & ~7L;
+    }
+
+    /**
+     * returns the number of cities in the file
+     * @return
+     */
+    public int getCityCount() {
+        return cityCount;
+    }
+
+    /**
+     * returns the number of graphs in the file
+     * @return
+     */
+    public int getGraphCount() {
+        return graphCount;
+    }
+
+    /**
+     * decodes the name of the city at vertex
+     * @param vertex
+     * @return
+     */
+    public String getCityName(int vertex) {
+        int start = buffer.getInt(nameOffsetsStart + 4 * vertex);
+        int end = buffer.getInt(nameOffsetsStart + 4 * (vertex + 1));
+        byte[] bytes = new byte[end - start];
+        ByteBuffer view = buffer.duplicate();
+        view.position(nameBytesStart + start);
+        view.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * copies the graph at index out of the mapped file and checks that it is a graph over
+     * the cities of the file: offsets from 0 that never go down and end at the edge count,
+     * targets that are cities, weights that are finite and not negative
+     * @param index
+     * @return
+     * @throws IOException if the graph is corrupt
+     */
+    public CsrGraph getGraph(int index) throws IOException {
+        int start = graphStarts[index];
+        int edgeCount = buffer.getInt(start);
+        int[] offsets = new int[cityCount + 1];
+        int[] targets = new int[edgeCount];
+        double[] weights = new double[edgeCount];
+
+        ByteBuffer view = buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        view.position(start + 8);
+        view.asIntBuffer().get(offsets).get(targets);
+        view.position(align(start + 8 + 4 * (offsets.length + targets.length)));
+        view.asDoubleBuffer().get(weights);
+
+        if(offsets[0] != 0 || offsets[cityCount] != edgeCount) {
+            throw new IOException("corrupt graph file: graph " + index + " offsets run from " + offsets[0] + " to " + offsets[cityCount] + " for " + edgeCount + " edges");
+        }
+        for(int v = 0; v < cityCount; v++) {
+            if(offsets[v + 1] < offsets[v]) {
+                throw new IOException("corrupt graph file: graph " + index + " offsets go down at vertex " + v);
+            }
+        }
+        for(int e = 0; e < edgeCount; e++) {
+            if(targets[e] < 0 || targets[e] >= cityCount) {
+                throw new IOException("corrupt graph file: graph " + index + " has an edge to " + targets[e] + " of " + cityCount + " cities");
+            }
+            // also false for NaN
+            if(!(weights[e] >= 0 && weights[e] < Double.POSITIVE_INFINITY)) {
+                throw new IOException("corrupt graph file: graph " + index + " has an edge of weight " + weights[e]);
+            }
+        }
+        return new CsrGraph(offsets, targets, weights);
+    }
+}
@@ -0,0 +1,223 @@
+import java.util.Arrays;
+
+/**
+ * d-ary min heap of vertex ids ordered by a shared double[] of keys.
+ * every vertex knows its position in the heap so decreaseKey is O(log n)
+ * instead of the linear remove/add that java.util.PriorityQueue needs
+ */
+class IndexedMinHeap {
+    private static final int DEFAULT_ARITY = 4;
+
+    private final int arity;
+    private final double[] keys;
+    private final int[] heap;
+    private final int[] position;
+    private int size;
+
+    /**
+     * creates a 4-ary heap over keys, keys[v] is the priority of vertex v
+     * @param keys
+     */
+    IndexedMinHeap(double[] keys) {
+        this(keys, DEFAULT_ARITY);
+    }
+
+    /**
+     * creates a heap with the given arity (2 for a binary heap) over keys
+     * @param keys
+     * @param arity
+     */
+    IndexedMinHeap(double[] keys, int arity) {
+        if(arity < 2) {
+            throw new IllegalArgumentException("arity must be at least 2");
+        }
+        this.arity = arity;
+        this.keys = keys;
+        this.heap = new int[keys.length];
+        this.position = new int[keys.length];
+        Arrays.fill(position, -1);
+        size = 0;
+    }
+
+    /**
+     * returns if there are no vertices left in the heap
+     * @return
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * returns the number of vertices in the heap
+     * @return
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * returns if vertex is currently in the heap
+     * @param vertex
+     * @return
+     */
+    public boolean contains(int vertex) {
+        return position[vertex] >= 0;
+    }
+
+    /**
+     * sets the key of vertex and adds it to the heap
+     * @param vertex
+     * @param key
+     */
+    public void insert(int vertex, double key) {
+        if(contains(vertex)) {
+            throw new IllegalStateException("vertex " + vertex + " is already in the heap");
+        }
+        keys[vertex] = key;
+        heap[size] = vertex;
+        position[vertex] = size;
+        size++;
+        siftUp(size - 1);
+    }
+
+    /**
+     * lowers the key of a vertex that is already in the heap
+     * @param vertex
+     * @param key
+     */
+    public void decreaseKey(int vertex, double key) {
+        keys[vertex] = key;
+        siftUp(position[vertex]);
+    }
+
+    /**
+     * inserts vertex, or lowers its key if it is already in the heap
+     * @param vertex
+     * @param key
+     */
+    public void insertOrDecrease(int vertex, double key) {
+        if(contains(vertex)) {
+            decreaseKey(vertex, key);
+        } else {
+            insert(vertex, key);
+        }
+    }
+
+    /**
+     * sets the key of a vertex that is already in the heap, the key may go up or down
+     * @param vertex
+     * @param key
+     */
+    public void changeKey(int vertex, double key) {
+        double old = keys[vertex];
+        keys[vertex] = key;
+        if(key < old) {
+            siftUp(position[vertex]);
+        } else {
+            siftDown(position[vertex]);
+        }
+    }
+
+    /**
+     * returns the vertex with the smallest key without removing it
+     * @return
+     */
+    public int peekMin() {
+        if(size == 0) {
+            throw new IllegalStateException("heap is empty");
+        }
+        return heap[0];
+    }
+
+    /**
+     * removes and returns the vertex with the smallest key
+     * @return
+     */
+    public int pollMin() {
+        int min = peekMin();
+        removeAt(0);
+        return min;
+    }
+
+    /**
+     * removes vertex from the heap if it is in it
+     * @param vertex
+     */
+    public void remove(int vertex) {
+        if(contains(vertex)) {
+            removeAt(position[vertex]);
+        }
+    }
+
+    /**
+     * empties the heap, only touching the vertices that are still in it
+     */
+    public void clear() {
+        for(int i = 0; i < size; i++) {
+            position[heap[i]] = -1;
+        }
+        size = 0;
+    }
+
+    private void removeAt(int index) {
+        int removed = heap[index];
+        position[removed] = -1;
+        size--;
+        if(index == size) {
+            return;
+        }
+        int last = heap[size];
+        heap[index] = last;
+        position[last] = index;
+        if(index > 0 && keys[last] < keys[heap[(index - 1) / arity]]) {
+            siftUp(index);
+        } else {
+            siftDown(index);
+        }
+    }
+
+    private void siftUp(int index) {
+        int vertex = heap[index];
+        double key = keys[vertex];
+        while(index > 0) {
+            int parent = (index - 1) / arity;
+            int parentVertex = heap[parent];
+            if(keys[parentVertex] <= key) {
+                break;
+            }
+            heap[index] = parentVertex;
+            position[parentVertex] = index;
+            index = parent;
+        }
+        heap[index] = vertex;
+        position[vertex] = index;
+    }
+
+    private void siftDown(int index) {
+        int vertex = heap[index];
+        double key = keys[vertex];
+        while(true) {
+            int first = index * arity + 1;
+            if(first >= size) {
+                break;
+            }
+            int best = first;
+            double bestKey = keys[heap[first]];
+            for(int child = first + 1, end = Math.min(first + arity, size); child < end; child++) {
+                double childKey = keys[heap[child]];
+                if(childKey < bestKey) {
+                    best = child;
+                    bestKey = childKey;
+                }
+            }
+            if(key <= bestKey) {
+                break;
+            }
+            heap[index] = heap[best];
+            position[heap[index]] = index;
+            index = best;
+        }
+        heap[index] = vertex;
+        position[vertex] = index;
+    }
+}
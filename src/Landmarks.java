@@ -0,0 +1,141 @@
+import java.util.Arrays;
+
+/**
+ * shortest path distances from a few landmark vertices to every vertex of an
+ * undirected CsrGraph. by the triangle inequality |d(l, u) - d(l, v)| never exceeds
+ * d(u, v), so the tables give a lower bound on any distance without a search.
+ * landmarks are picked farthest first, each one as far as possible from the ones
+ * before it, which spreads them around the edge of the graph where the bounds are tightest
+ */
+class Landmarks {
+    // lower bounds are shrunk by this much so rounding never lifts one above the distance it bounds
+    static final double SLACK = 1e-9;
+
+    private final CsrGraph graph;
+    final int[] vertices;
+    // distances[l * vertexCount + v] is the distance from landmark l to v
+    final double[] distances;
+
+    private Landmarks(CsrGraph graph, int[] vertices, double[] distances) {
+        this.graph = graph;
+        this.vertices = vertices;
+        this.distances = distances;
+    }
+
+    /**
+     * picks up to count landmarks farthest first and fills their distance tables. the first
+     * landmark is the vertex farthest from vertex 0, vertices another landmark cannot reach
+     * count as farthest so every component gets one before any gets a second
+     * @param graph
+     * @param count
+     * @return
+     */
+    static Landmarks select(CsrGraph graph, int count) {
+        if(count < 1) {
+            throw new IllegalArgumentException("need at least one landmark");
+        }
+        int vertexCount = graph.getVertexCount();
+        if(vertexCount == 0) {
+            throw new IllegalArgumentException("graph has no vertices");
+        }
+        count = Math.min(count, vertexCount);
+        int[] vertices = new int[count];
+        double[] distances = new double[count * vertexCount];
+        double[] nearest = new double[vertexCount];
+        Arrays.fill(nearest, Double.MAX_VALUE);
+
+        DijkstraSearch search = new DijkstraSearch(graph);
+        int next = farthest(search.run(0));
+        for(int l = 0; l < count; l++) {
+            vertices[l] = next;
+            double[] row = search.run(next);
+            System.arraycopy(row, 0, distances, l * vertexCount, vertexCount);
+            for(int v = 0; v < vertexCount; v++) {
+                nearest[v] = Math.min(nearest[v], row[v]);
+            }
+            next = farthest(nearest);
+            if(nearest[next] == 0) {
+                return new Landmarks(graph, Arrays.copyOf(vertices, l + 1), Arrays.copyOf(distances, (l + 1) * vertexCount));
+            }
+        }
+        return new Landmarks(graph, vertices, distances);
+    }
+
+    /**
+     * returns the first vertex with the largest value
+     * @param row
+     * @return
+     */
+    private static int farthest(double[] row) {
+        int farthest = 0;
+        for(int v = 1; v < row.length; v++) {
+            if(row[v] > row[farthest]) {
+                farthest = v;
+            }
+        }
+        return farthest;
+    }
+
+    /**
+     * returns the graph the tables were computed on
+     * @return
+     */
+    CsrGraph getGraph() {
+        return graph;
+    }
+
+    /**
+     * returns the number of landmarks
+     * @return
+     */
+    public int getCount() {
+        return vertices.length;
+    }
+
+    /**
+     * returns a distance that d(u, v) is never below, Double.MAX_VALUE if a landmark
+     * reaches one of them and not the other since they are then not connected
+     * @param u
+     * @param v
+     * @return
+     */
+    public double lowerBound(int u, int v) {
+        int vertexCount = graph.getVertexCount();
+        double bound = 0;
+        for(int row = 0; row < distances.length; row += vertexCount) {
+            double du = distances[row + u];
+            double dv = distances[row + v];
+            if(du == Double.MAX_VALUE || dv == Double.MAX_VALUE) {
+                if(du != dv) {
+                    return Double.MAX_VALUE;
+                }
+            } else {
+                bound = Math.max(bound, Math.abs(du - dv));
+            }
+        }
+        return bound * (1 - SLACK);
+    }
+
+    /**
+     * adds weight * lowerBound(origin, v) onto lower[v] for every vertex v, one pass over
+     * each landmark's table at a time
+     * @param origin
+     * @param weight
+     * @param lower
+     * @param scratch vertexCount doubles the bounds are gathered in
+     */
+    void accumulateLowerBounds(int origin, int weight, double[] lower, double[] scratch) {
+        int vertexCount = graph.getVertexCount();
+        Arrays.fill(scratch, 0);
+        for(int row = 0; row < distances.length; row += vertexCount) {
+            double dOrigin = distances[row + origin];
+            for(int v = 0; v < vertexCount; v++) {
+                // a vertex unreached by a landmark that reaches the origin ends up far above any real total
+                scratch[v] = Math.max(scratch[v], Math.abs(dOrigin - distances[row + v]));
+            }
+        }
+        for(int v = 0; v < vertexCount; v++) {
+            lower[v] += weight * (scratch[v] * (1 - SLACK));
+        }
+    }
+}
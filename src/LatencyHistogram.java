@@ -0,0 +1,116 @@
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * lock free histogram of non negative values in the style of HdrHistogram. a value is
+ * bucketed by its highest set bit and the SUB_BUCKET_BITS bits below it, so a bucket is
+ * never wider than 1 / 2^SUB_BUCKET_BITS of the values in it (about 3%) at any magnitude,
+ * and recording is one array increment with no allocation
+ */
+class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    private final AtomicLongArray counts = new AtomicLongArray((64 - SUB_BUCKET_BITS) * SUB_BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * adds one value, negative values count as 0
+     * @param value
+     */
+    public void record(long value) {
+        value = Math.max(0, value);
+        counts.incrementAndGet(index(value));
+        count.increment();
+        sum.add(value);
+        long seen = max.get();
+        while(value > seen && !max.compareAndSet(seen, value)) {
+            seen = max.get();
+        }
+    }
+
+    private static int index(long value) {
+        if(value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return (shift + 1) * SUB_BUCKETS + (int) (value >>> shift) - SUB_BUCKETS;
+    }
+
+    /**
+     * returns the largest value that falls in the bucket at index
+     * @param index
+     * @return
+     */
+    private static long highestInBucket(int index) {
+        int group = index / SUB_BUCKETS;
+        int sub = index % SUB_BUCKETS;
+        if(group == 0) {
+            return sub;
+        }
+        int shift = group - 1;
+        return ((long) (sub + SUB_BUCKETS + 1) << shift) - 1;
+    }
+
+    /**
+     * returns the number of values recorded
+     * @return
+     */
+    public long getCount() {
+        return count.sum();
+    }
+
+    /**
+     * returns the exact mean of the values recorded, 0 if there are none
+     * @return
+     */
+    public double getMean() {
+        long values = count.sum();
+        return values == 0 ? 0 : (double) sum.sum() / values;
+    }
+
+    /**
+     * returns the exact largest value recorded
+     * @return
+     */
+    public long getMax() {
+        return max.get();
+    }
+
+    /**
+     * returns a value that percentile percent of the recorded values are at or below,
+     * rounded up to the top of its bucket and never above getMax
+     * @param percentile between 0 and 100
+     * @return
+     */
+    public long getValueAtPercentile(double percentile) {
+        long values = count.sum();
+        if(values == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * values));
+        long seen = 0;
+        for(int i = 0; i < counts.length(); i++) {
+            seen += counts.get(i);
+            if(seen >= rank) {
+                return Math.min(highestInBucket(i), getMax());
+            }
+        }
+        return getMax();
+    }
+
+    /**
+     * forgets every recorded value, values recorded while resetting may be partly kept
+     */
+    public void reset() {
+        for(int i = 0; i < counts.length(); i++) {
+            counts.set(i, 0);
+        }
+        count.reset();
+        sum.reset();
+        max.set(0);
+    }
+}
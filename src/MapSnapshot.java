@@ -0,0 +1,116 @@
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * an immutable copy of everything a GeoMap needs to answer queries: the city names,
+ * the packed edges, the people and a solver over them. nothing in a snapshot changes
+ * after it is made, so any number of threads can query one at once and a new snapshot
+ * can replace it while queries on the old one finish. the best midpoints of the
+ * snapshot's own people are worked out up front
+ */
+class MapSnapshot {
+    // midpoints of the snapshot's people kept ready, larger top lists are searched per query
+    static final int PRECOMPUTED_TOP = 10;
+
+    private final String[] names;
+    private final Map<String, Integer> vertices;
+    private final MidpointSolver solver;
+    private final int[] origins;
+    private final int[] sizes;
+    private final List<Midpoint> top;
+
+    /**
+     * creates a snapshot, the arrays are owned by the snapshot afterwards
+     * @param names the name of every city indexed by vertex
+     * @param solver a solver over the edges, shared by every query
+     * @param origins the vertex of every populated city
+     * @param sizes the population of every populated city
+     */
+    MapSnapshot(String[] names, MidpointSolver solver, int[] origins, int[] sizes) {
+        if(names.length != solver.getGraph().getVertexCount()) {
+            throw new IllegalArgumentException("there are " + names.length + " names for " + solver.getGraph().getVertexCount() + " vertices");
+        }
+        if(origins.length != sizes.length) {
+            throw new IllegalArgumentException("origins and sizes differ in length");
+        }
+        this.names = names;
+        Map<String, Integer> vertices = new HashMap<>();
+        for(int v = 0; v < names.length; v++) {
+            vertices.put(names[v], v);
+        }
+        this.vertices = Collections.unmodifiableMap(vertices);
+        this.solver = solver;
+        this.origins = origins;
+        this.sizes = sizes;
+        this.top = origins.length == 0 || names.length == 0 ? Collections.<Midpoint>emptyList()
+                : Collections.unmodifiableList(solver.topK(origins, sizes, PRECOMPUTED_TOP, this::getCityName));
+    }
+
+    /**
+     * returns the number of cities
+     * @return
+     */
+    public int getCityCount() {
+        return names.length;
+    }
+
+    /**
+     * returns the name of the city at vertex
+     * @param vertex
+     * @return
+     */
+    public String getCityName(int vertex) {
+        return names[vertex];
+    }
+
+    /**
+     * returns the vertex of the city called name, or -1 if there is none
+     * @param name
+     * @return
+     */
+    public int getVertex(String name) {
+        Integer vertex = vertices.get(name);
+        return vertex == null ? -1 : vertex;
+    }
+
+    /**
+     * returns the k best midpoints of the people in the snapshot, best first
+     * @param k
+     * @return
+     */
+    public List<Midpoint> topMidpoints(int k) {
+        if(k < 1) {
+            throw new IllegalArgumentException("k must be at least 1");
+        }
+        if(k <= PRECOMPUTED_TOP || top.size() < PRECOMPUTED_TOP) {
+            return top.subList(0, Math.min(k, top.size()));
+        }
+        return topMidpoints(origins, sizes, k);
+    }
+
+    /**
+     * returns the k best midpoints for sizes[i] people at each of origins, best first
+     * @param origins distinct origin vertices
+     * @param sizes number of people at each origin
+     * @param k
+     * @return
+     */
+    public List<Midpoint> topMidpoints(int[] origins, int[] sizes, int k) {
+        if(origins.length == 0) {
+            throw new IllegalArgumentException("no people to meet");
+        }
+        return solver.topK(origins, sizes, k, this::getCityName);
+    }
+
+    /**
+     * returns the shortest distance between the cities at from and to
+     * @param from
+     * @param to
+     * @return the distance, or Double.MAX_VALUE if there is no path
+     */
+    public double distance(int from, int to) {
+        return solver.distance(from, to);
+    }
+}
@@ -0,0 +1,152 @@
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * counters and timers for the hot paths: shortest path searches, midpoint searches and
+ * fetching quotes. everything is gated on ENABLED, a static final read once from the
+ * geomap.metrics system property, so with metrics off the JIT folds every check away
+ * and the hot paths run exactly as before. register publishes the values over JMX
+ */
+final class Metrics {
+    static final boolean ENABLED = Boolean.getBoolean("geomap.metrics");
+    static final String OBJECT_NAME = "geomap:type=Metrics";
+
+    // shortest path searches, from DijkstraSearch and GeoMap.calculateMinDistances
+    static final LongAdder SEARCHES = new LongAdder();
+    static final LongAdder SETTLED = new LongAdder();
+    static final LongAdder RELAXED = new LongAdder();
+    static final LongAdder HEAP_UPDATES = new LongAdder();
+    static final LatencyHistogram SEARCH_NANOS = new LatencyHistogram();
+    // GeoMap.findMinAvgDistance from start to finish
+    static final LatencyHistogram MIDPOINT_NANOS = new LatencyHistogram();
+    // quotes: time to the response headers or the whole body, json parsing, and what happened to each quote
+    static final LatencyHistogram HTTP_NANOS = new LatencyHistogram();
+    static final LatencyHistogram PARSE_NANOS = new LatencyHistogram();
+    static final LongAdder QUOTES_DELIVERED = new LongAdder();
+    static final LongAdder QUOTES_DROPPED = new LongAdder();
+    static final LongAdder FETCH_RETRIES = new LongAdder();
+
+    private static boolean registered = false;
+
+    private Metrics() {
+    }
+
+    /**
+     * records one finished shortest path search
+     * @param startNanos System.nanoTime() when the search started
+     * @param settled vertices taken off the heap
+     * @param relaxed edges looked at
+     * @param heapUpdates inserts and decrease keys
+     */
+    static void recordSearch(long startNanos, int settled, int relaxed, int heapUpdates) {
+        SEARCH_NANOS.record(System.nanoTime() - startNanos);
+        SEARCHES.increment();
+        SETTLED.add(settled);
+        RELAXED.add(relaxed);
+        HEAP_UPDATES.add(heapUpdates);
+    }
+
+    /**
+     * registers the metrics with the platform MBean server, does nothing when called again
+     * @throws JMException
+     */
+    static synchronized void register() throws JMException {
+        if(!registered) {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(new Bean(), new ObjectName(OBJECT_NAME));
+            registered = true;
+        }
+    }
+
+    /**
+     * returns every counter by name
+     * @return
+     */
+    static Map<String, Long> counters() {
+        Map<String, Long> counters = new TreeMap<>();
+        counters.put("search.count", SEARCHES.sum());
+        counters.put("search.settled", SETTLED.sum());
+        counters.put("search.relaxed", RELAXED.sum());
+        counters.put("search.heapUpdates", HEAP_UPDATES.sum());
+        counters.put("midpoint.count", MIDPOINT_NANOS.getCount());
+        counters.put("http.count", HTTP_NANOS.getCount());
+        counters.put("parse.count", PARSE_NANOS.getCount());
+        counters.put("quotes.delivered", QUOTES_DELIVERED.sum());
+        counters.put("quotes.dropped", QUOTES_DROPPED.sum());
+        counters.put("quotes.retries", FETCH_RETRIES.sum());
+        return counters;
+    }
+
+    /**
+     * returns the mean, p50, p90, p99 and max of every timer in microseconds
+     * @return
+     */
+    static Map<String, Double> latencyMicros() {
+        Map<String, Double> latencies = new TreeMap<>();
+        putLatencies(latencies, "search", SEARCH_NANOS);
+        putLatencies(latencies, "midpoint", MIDPOINT_NANOS);
+        putLatencies(latencies, "http", HTTP_NANOS);
+        putLatencies(latencies, "parse", PARSE_NANOS);
+        return latencies;
+    }
+
+    private static void putLatencies(Map<String, Double> latencies, String name, LatencyHistogram histogram) {
+        latencies.put(name + ".mean", histogram.getMean() / 1e3);
+        latencies.put(name + ".p50", histogram.getValueAtPercentile(50) / 1e3);
+        latencies.put(name + ".p90", histogram.getValueAtPercentile(90) / 1e3);
+        latencies.put(name + ".p99", histogram.getValueAtPercentile(99) / 1e3);
+        latencies.put(name + ".max", histogram.getMax() / 1e3);
+    }
+
+    /**
+     * zeroes every counter and timer
+     */
+    static void reset() {
+        for(LongAdder counter : new LongAdder[] {SEARCHES, SETTLED, RELAXED, HEAP_UPDATES, QUOTES_DELIVERED, QUOTES_DROPPED, FETCH_RETRIES}) {
+            counter.reset();
+        }
+        for(LatencyHistogram histogram : new LatencyHistogram[] {SEARCH_NANOS, MIDPOINT_NANOS, HTTP_NANOS, PARSE_NANOS}) {
+            histogram.reset();
+        }
+    }
+
+    /**
+     * returns every counter and timer, one per line
+     * @return
+     */
+    static String report() {
+        StringBuilder out = new StringBuilder();
+        for(Map.Entry<String, Long> counter : counters().entrySet()) {
+            out.append(counter.getKey()).append(' ').append(counter.getValue()).append('\n');
+        }
+        for(Map.Entry<String, Double> latency : latencyMicros().entrySet()) {
+            out.append(latency.getKey()).append(' ').append(String.format("%.1f", latency.getValue())).append(" us\n");
+        }
+        return out.toString();
+    }
+
+    private static class Bean implements GeoMapMetricsMXBean {
+        @Override
+        public boolean isEnabled() {
+            return ENABLED;
+        }
+
+        @Override
+        public Map<String, Long> getCounters() {
+            return counters();
+        }
+
+        @Override
+        public Map<String, Double> getLatencyMicros() {
+            return latencyMicros();
+        }
+
+        @Override
+        public void reset() {
+            Metrics.reset();
+        }
+    }
+}
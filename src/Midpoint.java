@@ -0,0 +1,49 @@
+/**
+ * a candidate meeting city and the average distance (or cost) travelled to it
+ */
+public class Midpoint {
+    private final int vertex;
+    private final String name;
+    private final double average;
+
+    /**
+     * creates a Midpoint for the city at vertex
+     * @param vertex
+     * @param name
+     * @param average
+     */
+    public Midpoint(int vertex, String name, double average) {
+        this.vertex = vertex;
+        this.name = name;
+        this.average = average;
+    }
+
+    /**
+     * returns the vertex of the city
+     * @return
+     */
+    public int getVertex() {
+        return vertex;
+    }
+
+    /**
+     * returns the name of the city
+     * @return
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * returns the average distance travelled to the city
+     * @return
+     */
+    public double getAverage() {
+        return average;
+    }
+
+    @Override
+    public String toString() {
+        return name + " (" + average + ")";
+    }
+}
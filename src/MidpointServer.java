@@ -0,0 +1,344 @@
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * answers midpoint, top k and distance queries over local HTTP with JSON bodies, so
+ * the map is loaded and the JIT warmed up once for every query instead of once per run.
+ * requests run concurrently on a fixed pool of threads and each one reads the current
+ * MapSnapshot once, reload swaps in a new snapshot atomically while queries already
+ * running finish on the old one.
+ *
+ * GET /midpoint              the best midpoint of the snapshot's people
+ * GET /top?k=5               the k best midpoints, best first
+ * GET /distance?from=A&to=B  the shortest distance between two cities
+ * POST /reload               loads a new snapshot and swaps it in
+ *
+ * /midpoint and /top take the people from repeated from=City parameters instead when
+ * there are any, from=City:3 counts as three people in the same city. an unknown city
+ * answers 404, any other bad parameter or a map without people 400, and a query that
+ * fails for any other reason 500
+ */
+class MidpointServer {
+    private static final JsonFactory JSON = new JsonFactory();
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final Callable<MapSnapshot> loader;
+    private final AtomicReference<MapSnapshot> snapshot;
+
+    /**
+     * creates a server on address that answers from the snapshot loader returns and
+     * calls loader again on every reload
+     * @param address a port of 0 picks a free one
+     * @param threads number of requests handled at once
+     * @param loader
+     * @throws Exception if the first load fails
+     */
+    MidpointServer(InetSocketAddress address, int threads, Callable<MapSnapshot> loader) throws Exception {
+        if(threads < 1) {
+            throw new IllegalArgumentException("threads must be at least 1");
+        }
+        this.loader = loader;
+        this.snapshot = new AtomicReference<>(loader.call());
+        this.server = HttpServer.create(address, 0);
+        this.executor = Executors.newFixedThreadPool(threads);
+        server.setExecutor(executor);
+        server.createContext("/midpoint", exchange -> handle(exchange, this::midpoint));
+        server.createContext("/top", exchange -> handle(exchange, this::top));
+        server.createContext("/distance", exchange -> handle(exchange, this::distance));
+        server.createContext("/reload", this::reload);
+    }
+
+    /**
+     * returns the snapshot queries are answered from right now
+     * @return
+     */
+    MapSnapshot getSnapshot() {
+        return snapshot.get();
+    }
+
+    /**
+     * answers every query after this from next
+     * @param next
+     * @return the snapshot that was replaced
+     */
+    MapSnapshot swap(MapSnapshot next) {
+        if(next == null) {
+            throw new IllegalArgumentException("snapshot is null");
+        }
+        return snapshot.getAndSet(next);
+    }
+
+    /**
+     * loads a new snapshot and swaps it in, queries keep using the old one until it is ready
+     * @throws Exception if loading fails, the old snapshot is kept then
+     */
+    void reload() throws Exception {
+        swap(loader.call());
+    }
+
+    /**
+     * returns the port the server listens on
+     * @return
+     */
+    int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    void start() {
+        server.start();
+    }
+
+    /**
+     * stops taking requests and waits up to delaySeconds for the ones running to finish
+     * @param delaySeconds
+     */
+    void stop(int delaySeconds) {
+        server.stop(delaySeconds);
+        executor.shutdown();
+    }
+
+    /**
+     * a query that writes its answer given the snapshot and the request parameters
+     */
+    private interface Query {
+        void answer(MapSnapshot current, Map<String, List<String>> params, JsonGenerator json) throws IOException;
+    }
+
+    /**
+     * a query the client got wrong, answered with responseCode instead of 500
+     */
+    private static class BadRequest extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+        final int responseCode;
+
+        BadRequest(int responseCode, String message) {
+            super(message);
+            this.responseCode = responseCode;
+        }
+    }
+
+    private void handle(HttpExchange exchange, Query query) throws IOException {
+        if(!"GET".equals(exchange.getRequestMethod())) {
+            respondError(exchange, 405, "use GET");
+            return;
+        }
+        MapSnapshot current = snapshot.get();
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        try(JsonGenerator json = JSON.createGenerator(body)) {
+            query.answer(current, parseQuery(exchange.getRequestURI().getRawQuery()), json);
+        } catch(BadRequest e) {
+            respondError(exchange, e.responseCode, e.getMessage());
+            return;
+        } catch(RuntimeException e) {
+            respondError(exchange, 500, "query failed: " + e);
+            return;
+        }
+        respond(exchange, 200, body.toByteArray());
+    }
+
+    private void midpoint(MapSnapshot current, Map<String, List<String>> params, JsonGenerator json) throws IOException {
+        List<Midpoint> best = midpoints(current, params, 1);
+        if(best.isEmpty()) {
+            throw new BadRequest(400, "no people to meet");
+        }
+        writeMidpoint(json, best.get(0));
+    }
+
+    private void top(MapSnapshot current, Map<String, List<String>> params, JsonGenerator json) throws IOException {
+        int k = intParam(params, "k", 5);
+        if(k < 1) {
+            throw new BadRequest(400, "k must be at least 1");
+        }
+        json.writeStartArray();
+        for(Midpoint midpoint : midpoints(current, params, k)) {
+            writeMidpoint(json, midpoint);
+        }
+        json.writeEndArray();
+    }
+
+    private void distance(MapSnapshot current, Map<String, List<String>> params, JsonGenerator json) throws IOException {
+        int from = vertexParam(current, params, "from");
+        int to = vertexParam(current, params, "to");
+        double distance = current.distance(from, to);
+        json.writeStartObject();
+        json.writeStringField("from", current.getCityName(from));
+        json.writeStringField("to", current.getCityName(to));
+        if(distance == Double.MAX_VALUE) {
+            json.writeNullField("distance");
+        } else {
+            json.writeNumberField("distance", distance);
+        }
+        json.writeEndObject();
+    }
+
+    private void reload(HttpExchange exchange) throws IOException {
+        if(!"POST".equals(exchange.getRequestMethod())) {
+            respondError(exchange, 405, "use POST");
+            return;
+        }
+        try {
+            reload();
+        } catch(Exception e) {
+            respondError(exchange, 500, "reload failed: " + e);
+            return;
+        }
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        try(JsonGenerator json = JSON.createGenerator(body)) {
+            json.writeStartObject();
+            json.writeNumberField("cities", snapshot.get().getCityCount());
+            json.writeEndObject();
+        }
+        respond(exchange, 200, body.toByteArray());
+    }
+
+    /**
+     * returns the k best midpoints of the people in the from parameters, or of the
+     * snapshot's people when there are none
+     */
+    private static List<Midpoint> midpoints(MapSnapshot current, Map<String, List<String>> params, int k) {
+        List<String> from = params.get("from");
+        if(from == null) {
+            return current.topMidpoints(k);
+        }
+        // people in the same city are merged so the origins stay distinct
+        Map<Integer, Integer> people = new LinkedHashMap<>();
+        for(String person : from) {
+            int count = 1;
+            int colon = person.lastIndexOf(':');
+            if(colon >= 0) {
+                count = parseInt(person.substring(colon + 1), "from");
+                person = person.substring(0, colon);
+            }
+            if(count < 1) {
+                throw new BadRequest(400, "from counts must be at least 1");
+            }
+            people.merge(vertexOf(current, person), count, Integer::sum);
+        }
+        int[] origins = new int[people.size()];
+        int[] sizes = new int[people.size()];
+        int i = 0;
+        for(Map.Entry<Integer, Integer> entry : people.entrySet()) {
+            origins[i] = entry.getKey();
+            sizes[i] = entry.getValue();
+            i++;
+        }
+        return current.topMidpoints(origins, sizes, k);
+    }
+
+    private static void writeMidpoint(JsonGenerator json, Midpoint midpoint) throws IOException {
+        json.writeStartObject();
+        json.writeStringField("city", midpoint.getName());
+        json.writeNumberField("average", midpoint.getAverage());
+        json.writeEndObject();
+    }
+
+    private static int vertexParam(MapSnapshot current, Map<String, List<String>> params, String name) {
+        List<String> values = params.get(name);
+        if(values == null) {
+            throw new BadRequest(400, "missing " + name);
+        }
+        return vertexOf(current, values.get(0));
+    }
+
+    private static int vertexOf(MapSnapshot current, String city) {
+        int vertex = current.getVertex(city);
+        if(vertex < 0) {
+            throw new BadRequest(404, "unknown city " + city);
+        }
+        return vertex;
+    }
+
+    private static int intParam(Map<String, List<String>> params, String name, int fallback) {
+        List<String> values = params.get(name);
+        return values == null ? fallback : parseInt(values.get(0), name);
+    }
+
+    private static int parseInt(String value, String name) {
+        try {
+            return Integer.parseInt(value.trim());
+        } catch(NumberFormatException e) {
+            throw new BadRequest(400, name + " is not a number: " + value);
+        }
+    }
+
+    /**
+     * splits a raw query string into its decoded parameters, keeping repeated ones in order
+     * @param rawQuery
+     * @return
+     */
+    static Map<String, List<String>> parseQuery(String rawQuery) throws UnsupportedEncodingException {
+        Map<String, List<String>> params = new LinkedHashMap<>();
+        if(rawQuery == null || rawQuery.isEmpty()) {
+            return params;
+        }
+        for(String pair : rawQuery.split("&")) {
+            if(pair.isEmpty()) {
+                continue;
+            }
+            int equals = pair.indexOf('=');
+            String key = URLDecoder.decode(equals < 0 ? pair : pair.substring(0, equals), "UTF-8");
+            String value = equals < 0 ? "" : URLDecoder.decode(pair.substring(equals + 1), "UTF-8");
+            params.computeIfAbsent(key, unused -> new ArrayList<>()).add(value);
+        }
+        return params;
+    }
+
+    private static void respondError(HttpExchange exchange, int responseCode, String message) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        try(JsonGenerator json = JSON.createGenerator(body)) {
+            json.writeStartObject();
+            json.writeStringField("error", message);
+            json.writeEndObject();
+        }
+        respond(exchange, responseCode, body.toByteArray());
+    }
+
+    private static void respond(HttpExchange exchange, int responseCode, byte[] body) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(responseCode, body.length);
+        try(OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    /**
+     * serves the map Driver loads from the bundled resources
+     * @param args the port, 8080 if not given, and the number of threads, one per core if not given
+     * @throws Exception
+     */
+    public static void main(String[] args) throws Exception {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 8080;
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        MidpointServer server = new MidpointServer(new InetSocketAddress("127.0.0.1", port), threads, () -> {
+            GeoMap map = new GeoMap();
+            map.citiesFromStream(new InputStreamReader(MidpointServer.class.getResourceAsStream("Resources/CityNames.txt")));
+            map.neighborsFromStream(new InputStreamReader(MidpointServer.class.getResourceAsStream("Resources/CityDistances.txt")), distance -> distance);
+            map.populateFromStream(new InputStreamReader(MidpointServer.class.getResourceAsStream("Resources/Participants.txt")));
+            map.compact();
+            map.enableDistanceCache(64L * 1024 * 1024);
+            map.precomputeDistances();
+            return map.freeze();
+        });
+        server.start();
+        System.out.println("serving midpoints on http://127.0.0.1:" + server.getPort());
+    }
+}
@@ -0,0 +1,613 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.function.IntFunction;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * finds the meeting point of a group of origins. the graph is undirected so the
+ * distance from a candidate to an origin is the distance from the origin to the
+ * candidate, one shortest path pass per origin gives the cost of every candidate.
+ * a solver only reads the graph and is safe to share between threads
+ */
+class MidpointSolver {
+    // rows added to the totals in one pass over the candidates
+    static final int ROW_BLOCK = 4;
+
+    private final CsrGraph graph;
+    private final ExecutorService executor;
+    private final int parallelism;
+    private final DistanceCache cache;
+    private final ContractionHierarchy hierarchy;
+    private final ThreadLocal<ShortestPathSearch> searches;
+    private final ThreadLocal<DijkstraSearch> boundedSearches;
+
+    /**
+     * creates a solver over graph that runs every search on the calling thread
+     * @param graph
+     */
+    MidpointSolver(CsrGraph graph) {
+        this(graph, null, 1, null);
+    }
+
+    /**
+     * creates a solver over graph that fans the searches out over pool
+     * @param graph
+     * @param pool
+     */
+    MidpointSolver(CsrGraph graph, ForkJoinPool pool) {
+        this(graph, pool, pool.getParallelism(), null);
+    }
+
+    /**
+     * creates a solver over graph that runs up to parallelism searches at once on executor,
+     * a null executor runs everything on the calling thread. rows are taken from cache
+     * when it is not null
+     * @param graph
+     * @param executor
+     * @param parallelism
+     * @param cache
+     */
+    MidpointSolver(CsrGraph graph, ExecutorService executor, int parallelism, DistanceCache cache) {
+        this(graph, executor, parallelism, cache, null);
+    }
+
+    /**
+     * creates a solver like above that computes rows with one to many queries on hierarchy
+     * instead of plain searches when hierarchy is not null
+     * @param graph
+     * @param executor
+     * @param parallelism
+     * @param cache
+     * @param hierarchy must be built from graph
+     */
+    MidpointSolver(CsrGraph graph, ExecutorService executor, int parallelism, DistanceCache cache, ContractionHierarchy hierarchy) {
+        if(parallelism < 1) {
+            throw new IllegalArgumentException("parallelism must be at least 1");
+        }
+        if(cache != null && cache.getGraph() != graph) {
+            throw new IllegalArgumentException("cache belongs to a different graph");
+        }
+        if(hierarchy != null && hierarchy.getVertexCount() != graph.getVertexCount()) {
+            throw new IllegalArgumentException("hierarchy has a different number of vertices than the graph");
+        }
+        this.graph = graph;
+        this.executor = executor;
+        this.parallelism = parallelism;
+        this.cache = cache;
+        this.hierarchy = hierarchy;
+        this.searches = ThreadLocal.withInitial(() -> hierarchy != null ? hierarchy.newQuery() : new DijkstraSearch(graph));
+        this.boundedSearches = ThreadLocal.withInitial(() -> new DijkstraSearch(graph));
+    }
+
+    /**
+     * returns the graph the solver runs on
+     * @return
+     */
+    CsrGraph getGraph() {
+        return graph;
+    }
+
+    /**
+     * returns the distance cache the solver reads rows from, or null
+     * @return
+     */
+    DistanceCache getDistanceCache() {
+        return cache;
+    }
+
+    /**
+     * returns the contraction hierarchy the solver searches, or null
+     * @return
+     */
+    ContractionHierarchy getContractionHierarchy() {
+        return hierarchy;
+    }
+
+    /**
+     * returns the distances from origin to every vertex. the row is either shared
+     * with the cache or the calling thread's scratch array, so it must not be written
+     * to and is only valid until the thread's next search
+     * @param origin
+     * @return
+     */
+    double[] row(int origin) {
+        return cache != null ? cache.get(origin) : searches.get().run(origin);
+    }
+
+    /**
+     * returns the shortest distance between from and to, from the cache or the hierarchy
+     * when there is one and otherwise with a search that stops once to is settled
+     * @param from
+     * @param to
+     * @return the distance, or Double.MAX_VALUE if there is no path
+     */
+    public double distance(int from, int to) {
+        if(cache != null) {
+            return cache.distance(from, to);
+        }
+        if(hierarchy != null) {
+            return hierarchy.distance(from, to);
+        }
+        return boundedSearches.get().runTo(from, to)[0];
+    }
+
+    /**
+     * runs the calling thread's bounded search from origin out to radius, the search
+     * stays valid until the thread's next call
+     * @param origin
+     * @param radius
+     * @return the search, getSettled lists the vertices within radius closest first
+     */
+    DijkstraSearch searchWithin(int origin, double radius) {
+        DijkstraSearch search = boundedSearches.get();
+        search.runWithin(origin, radius);
+        return search;
+    }
+
+    /**
+     * returns the vertices at most radius away from every origin in increasing order.
+     * each origin only searches the vertices within radius of it, and the searches stop
+     * as soon as no vertex is left inside every ball so far
+     * @param origins
+     * @param radius
+     * @return
+     */
+    public int[] withinAll(int[] origins, double radius) {
+        if(origins.length == 0) {
+            return new int[0];
+        }
+        int[] hits = new int[graph.getVertexCount()];
+        int[] found = new int[graph.getVertexCount()];
+        int foundCount = 0;
+        for(int i = 0; i < origins.length; i++) {
+            DijkstraSearch search = searchWithin(origins[i], radius);
+            int[] settled = search.getSettled();
+            int survivors = 0;
+            for(int j = 0; j < search.getSettledCount(); j++) {
+                int v = settled[j];
+                // a vertex only counts while it has been inside every ball so far
+                if(hits[v] == i) {
+                    hits[v]++;
+                    survivors++;
+                    if(i == origins.length - 1) {
+                        found[foundCount++] = v;
+                    }
+                }
+            }
+            if(survivors == 0) {
+                return new int[0];
+            }
+        }
+        int[] result = Arrays.copyOf(found, foundCount);
+        Arrays.sort(result);
+        return result;
+    }
+
+    /**
+     * sums weights[i] * distance(origins[i], v) for every candidate vertex v.
+     * the origins are always added in the order given, so the parallel and the
+     * serial solver return the same totals bit for bit
+     * @param origins distinct origin vertices
+     * @param weights number of people at each origin
+     * @return an array of weighted totals indexed by vertex
+     */
+    public double[] weightedTotals(int[] origins, int[] weights) {
+        if(origins.length != weights.length) {
+            throw new IllegalArgumentException("origins and weights differ in length");
+        }
+        double[] totals = new double[graph.getVertexCount()];
+        addRows(origins, origins.length, (rows, batchStart, count, from, to) ->
+                accumulate(totals, rows, weights, batchStart, count, from, to));
+        return totals;
+    }
+
+    /**
+     * returns the k candidates with the smallest average, best first. a candidate's
+     * weighted sum is built one origin at a time and the candidate is dropped as soon
+     * as the partial sum reaches the k-th best total found so far, ties go to the lower vertex
+     * @param origins distinct origin vertices
+     * @param weights number of people at each origin
+     * @param k
+     * @param names looks up the name of a vertex
+     * @return
+     */
+    public List<Midpoint> topK(int[] origins, int[] weights, int k, IntFunction<String> names) {
+        if(origins.length != weights.length) {
+            throw new IllegalArgumentException("origins and weights differ in length");
+        }
+        if(k < 1) {
+            throw new IllegalArgumentException("k must be at least 1");
+        }
+        int vertexCount = graph.getVertexCount();
+        double[][] rows = new double[origins.length][];
+        int totalSize = 0;
+        for(int i = 0; i < origins.length; i++) {
+            double[] row = row(origins[i]);
+            rows[i] = cache != null ? row : row.clone();
+            totalSize += weights[i];
+        }
+
+        // the head of best is the worst of the best k so far: largest total, then largest vertex
+        double[] totals = new double[vertexCount];
+        PriorityQueue<Integer> best = new PriorityQueue<>(k + 1, (Integer a, Integer b) ->
+                totals[a] != totals[b] ? Double.compare(totals[b], totals[a]) : Integer.compare(b, a));
+        double bound = Double.MAX_VALUE;
+        for(int v = 0; v < vertexCount; v++) {
+            double total = 0;
+            for(int i = 0; i < rows.length && total < bound; i++) {
+                total += weights[i] * rows[i][v];
+            }
+            if(total >= bound) {
+                continue;
+            }
+            totals[v] = total;
+            best.add(v);
+            if(best.size() > k) {
+                best.poll();
+            }
+            if(best.size() == k) {
+                bound = totals[best.peek()];
+            }
+        }
+
+        Midpoint[] ranked = new Midpoint[best.size()];
+        for(int i = ranked.length - 1; i >= 0; i--) {
+            int v = best.poll();
+            ranked[i] = new Midpoint(v, names.apply(v), totals[v] / totalSize);
+        }
+        List<Midpoint> result = new ArrayList<>(ranked.length);
+        for(Midpoint midpoint : ranked) {
+            result.add(midpoint);
+        }
+        return result;
+    }
+
+    /**
+     * returns the candidate with the smallest average like weightedTotals and argmin, but
+     * discards candidates using the landmark lower bounds first. the candidate with the
+     * lowest bound is searched first and its total caps the answer, candidates bounded
+     * above the cap are never searched. the rest run one search each towards the origins,
+     * lowest bound first, until the next bound is above the best total found. when the bounds
+     * rule out too little, or the searches touch more vertices than one row per origin would,
+     * the rows are summed as usual instead. distances are measured from the candidate instead of the origin
+     * and can differ from weightedTotals in the last bits
+     * @param origins distinct origin vertices
+     * @param weights number of people at each origin
+     * @param landmarks must be built on the solver's graph
+     * @param names looks up the name of a vertex
+     * @return the midpoint, or null if no candidate is reachable from every origin
+     */
+    public Midpoint prunedMin(int[] origins, int[] weights, Landmarks landmarks, IntFunction<String> names) {
+        return prunedMin(origins, weights, landmarks, new int[0], names);
+    }
+
+    /**
+     * prunedMin with extra candidates searched before any others, usually the cities a
+     * SpatialIndex finds near the middle of the origins. a good seed lowers the cap so the
+     * bounds rule out more of the graph, a bad one costs one search and changes nothing.
+     * the answer is the same as without seeds, the bounds still have to rule out every
+     * candidate that is not searched
+     * @param origins distinct origin vertices
+     * @param weights number of people at each origin
+     * @param landmarks must be built on the solver's graph
+     * @param seeds candidates to search first, in order
+     * @param names looks up the name of a vertex
+     * @return the midpoint, or null if no candidate is reachable from every origin
+     */
+    public Midpoint prunedMin(int[] origins, int[] weights, Landmarks landmarks, int[] seeds, IntFunction<String> names) {
+        if(origins.length != weights.length) {
+            throw new IllegalArgumentException("origins and weights differ in length");
+        }
+        if(landmarks.getGraph() != graph) {
+            throw new IllegalArgumentException("landmarks belong to a different graph");
+        }
+        int vertexCount = graph.getVertexCount();
+        int totalSize = 0;
+        double[] lower = new double[vertexCount];
+        double[] scratch = new double[vertexCount];
+        for(int i = 0; i < origins.length; i++) {
+            landmarks.accumulateLowerBounds(origins[i], weights[i], lower, scratch);
+            totalSize += weights[i];
+        }
+        int mostPromising = argmin(lower);
+        if(mostPromising < 0) {
+            return null;
+        }
+
+        AltSearch search = new AltSearch(landmarks);
+        double cap = search.weightedTotal(mostPromising, origins, weights, Double.MAX_VALUE);
+        int capVertex = cap < Double.MAX_VALUE ? mostPromising : -1;
+        long seedWork = search.getTouchedCount();
+        boolean[] searched = new boolean[vertexCount];
+        searched[mostPromising] = true;
+        for(int seed : seeds) {
+            if(searched[seed] || lower[seed] > cap) {
+                continue;
+            }
+            searched[seed] = true;
+            double total = search.weightedTotal(seed, origins, weights, cap);
+            seedWork += search.getTouchedCount();
+            if(total < cap || (total == cap && total < Double.MAX_VALUE && seed < capVertex)) {
+                cap = total;
+                capVertex = seed;
+            }
+        }
+        List<Integer> survivors = new ArrayList<>();
+        for(int v = 0; v < vertexCount; v++) {
+            if(lower[v] <= cap && !searched[v]) {
+                survivors.add(v);
+            }
+        }
+        // bounds that rule out less than three quarters of the graph are not worth searching candidates for
+        if(survivors.size() > vertexCount / 4) {
+            return rowMin(origins, weights, totalSize, names);
+        }
+        survivors.sort((Integer a, Integer b) -> lower[a] != lower[b] ? Double.compare(lower[a], lower[b]) : Integer.compare(a, b));
+
+        double best = cap;
+        int bestVertex = capVertex;
+        // searching the survivors is only worth it while it touches fewer vertices than the rows would
+        long budget = (long) origins.length * vertexCount;
+        long work = seedWork;
+        for(int v : survivors) {
+            if(lower[v] > best) {
+                break;
+            }
+            if(work > budget) {
+                return rowMin(origins, weights, totalSize, names);
+            }
+            double total = search.weightedTotal(v, origins, weights, best);
+            work += search.getTouchedCount();
+            if(total < best || (total == best && total < Double.MAX_VALUE && v < bestVertex)) {
+                best = total;
+                bestVertex = v;
+            }
+        }
+        return bestVertex < 0 ? null : new Midpoint(bestVertex, names.apply(bestVertex), best / totalSize);
+    }
+
+    /**
+     * finds the midpoint of many meetings at once. the distinct origins of all meetings
+     * are searched once each, in the order they first appear, and every row is added to
+     * the totals of each meeting that has people there, so origins shared by meetings
+     * cost one search in total. a meeting's totals are the same bit for bit as
+     * weightedTotals when its origins are in the order they first appear in the batch,
+     * which holds for a single meeting. memory is one array of totals per meeting
+     * @param origins the origin vertices of each meeting
+     * @param weights the number of people at each origin of each meeting
+     * @param names looks up the name of a vertex
+     * @return the midpoint of each meeting in order, null for a meeting with no people
+     * or no candidate reachable from all of them
+     */
+    public List<Midpoint> batchMins(int[][] origins, int[][] weights, IntFunction<String> names) {
+        if(origins.length != weights.length) {
+            throw new IllegalArgumentException("origins and weights differ in length");
+        }
+        int vertexCount = graph.getVertexCount();
+        int meetings = origins.length;
+
+        // number the distinct origins in order of first appearance and count who uses each
+        int[] slotOf = new int[vertexCount];
+        Arrays.fill(slotOf, -1);
+        int[] distinct = new int[vertexCount];
+        int distinctCount = 0;
+        int[] uses = new int[vertexCount + 1];
+        for(int m = 0; m < meetings; m++) {
+            if(origins[m].length != weights[m].length) {
+                throw new IllegalArgumentException("origins and weights of meeting " + m + " differ in length");
+            }
+            for(int origin : origins[m]) {
+                if(slotOf[origin] < 0) {
+                    slotOf[origin] = distinctCount;
+                    distinct[distinctCount++] = origin;
+                }
+                uses[slotOf[origin] + 1]++;
+            }
+        }
+        // the meetings using each distinct origin, packed like the edges of a CsrGraph
+        for(int i = 0; i < distinctCount; i++) {
+            uses[i + 1] += uses[i];
+        }
+        int[] useMeeting = new int[uses[distinctCount]];
+        int[] useWeight = new int[uses[distinctCount]];
+        int[] next = Arrays.copyOf(uses, distinctCount);
+        for(int m = 0; m < meetings; m++) {
+            for(int i = 0; i < origins[m].length; i++) {
+                int at = next[slotOf[origins[m][i]]]++;
+                useMeeting[at] = m;
+                useWeight[at] = weights[m][i];
+            }
+        }
+
+        double[][] totals = new double[meetings][];
+        for(int m = 0; m < meetings; m++) {
+            totals[m] = new double[origins[m].length == 0 ? 0 : vertexCount];
+        }
+        addRows(distinct, distinctCount, (rows, batchStart, count, from, to) -> {
+            for(int i = 0; i < count; i++) {
+                for(int u = uses[batchStart + i]; u < uses[batchStart + i + 1]; u++) {
+                    accumulate(totals[useMeeting[u]], rows[i], useWeight[u], from, to);
+                }
+            }
+        });
+
+        List<Midpoint> midpoints = new ArrayList<>(meetings);
+        for(int m = 0; m < meetings; m++) {
+            int totalSize = 0;
+            for(int weight : weights[m]) {
+                totalSize += weight;
+            }
+            double[] averages = totals[m];
+            for(int v = 0; v < averages.length; v++) {
+                averages[v] = averages[v] / totalSize;
+            }
+            int minVertex = argmin(averages);
+            midpoints.add(minVertex < 0 ? null : new Midpoint(minVertex, names.apply(minVertex), averages[minVertex]));
+        }
+        return midpoints;
+    }
+
+    private Midpoint rowMin(int[] origins, int[] weights, int totalSize, IntFunction<String> names) {
+        double[] totals = weightedTotals(origins, weights);
+        int minVertex = argmin(totals);
+        return minVertex < 0 ? null : new Midpoint(minVertex, names.apply(minVertex), totals[minVertex] / totalSize);
+    }
+
+    /**
+     * adds the rows of a batch of consecutive origins onto totals for the candidates in [from, to)
+     */
+    private interface RowAdder {
+        void add(double[][] rows, int batchStart, int count, int from, int to);
+    }
+
+    /**
+     * searches from the first originCount origins and hands the rows to adder a batch at a
+     * time. on the calling thread a batch is one row, or ROW_BLOCK cached rows since those
+     * stay valid. with an executor the searches of a batch run in parallel and then every
+     * chunk of candidates is added in parallel, the chunks never overlap. either way each
+     * candidate sees the rows in origin order, so the totals are the same bit for bit
+     * however the work was split
+     * @param origins
+     * @param originCount
+     * @param adder
+     */
+    private void addRows(int[] origins, int originCount, RowAdder adder) {
+        int vertexCount = graph.getVertexCount();
+        if(executor == null || originCount < 2) {
+            double[][] rows = new double[cache != null ? ROW_BLOCK : 1][];
+            for(int start = 0; start < originCount; start += rows.length) {
+                int count = Math.min(rows.length, originCount - start);
+                for(int i = 0; i < count; i++) {
+                    rows[i] = row(origins[start + i]);
+                }
+                adder.add(rows, start, count, 0, vertexCount);
+            }
+            return;
+        }
+
+        int batchSize = Math.min(parallelism, originCount);
+        double[][] rows = new double[batchSize][];
+        for(int start = 0; start < originCount; start += batchSize) {
+            int count = Math.min(batchSize, originCount - start);
+            List<Callable<Void>> searchTasks = new ArrayList<>(count);
+            for(int i = 0; i < count; i++) {
+                int slot = i;
+                int origin = origins[start + i];
+                searchTasks.add(() -> {
+                    double[] dist = row(origin);
+                    if(cache != null) {
+                        rows[slot] = dist;
+                    } else if(rows[slot] == null) {
+                        rows[slot] = dist.clone();
+                    } else {
+                        System.arraycopy(dist, 0, rows[slot], 0, dist.length);
+                    }
+                    return null;
+                });
+            }
+            invokeAll(searchTasks);
+
+            int batchStart = start;
+            int chunk = (vertexCount + parallelism - 1) / parallelism;
+            List<Callable<Void>> sumTasks = new ArrayList<>(parallelism);
+            for(int lo = 0; lo < vertexCount; lo += chunk) {
+                int from = lo;
+                int to = Math.min(lo + chunk, vertexCount);
+                sumTasks.add(() -> {
+                    adder.add(rows, batchStart, count, from, to);
+                    return null;
+                });
+            }
+            invokeAll(sumTasks);
+        }
+    }
+
+    private void invokeAll(List<Callable<Void>> tasks) {
+        try {
+            for(Future<Void> future : executor.invokeAll(tasks)) {
+                future.get();
+            }
+        } catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("midpoint search interrupted", e);
+        } catch(ExecutionException e) {
+            throw new IllegalStateException("midpoint search failed", e.getCause());
+        }
+    }
+
+    /**
+     * adds weight * row[v] onto totals[v] for every vertex in [from, to)
+     * @param totals
+     * @param row
+     * @param weight
+     * @param from
+     * @param to
+     */
+    static void accumulate(double[] totals, double[] row, int weight, int from, int to) {
+        for(int v = from; v < to; v++) {
+            totals[v] += weight * row[v];
+        }
+    }
+
+    /**
+     * adds weights[weightOffset + i] * rows[i][v] onto totals[v] for the first count rows and
+     * every vertex in [from, to). rows are added ROW_BLOCK at a time so totals is read and
+     * written once per block instead of once per row, the additions still happen in row
+     * order so the result is the same bit for bit as adding the rows one by one
+     * @param totals
+     * @param rows
+     * @param weights
+     * @param weightOffset index in weights of the weight of rows[0]
+     * @param count
+     * @param from
+     * @param to
+     */
+    static void accumulate(double[] totals, double[][] rows, int[] weights, int weightOffset, int count, int from, int to) {
+        int i = 0;
+        for(; i + ROW_BLOCK <= count; i += ROW_BLOCK) {
+            double[] r0 = rows[i];
+            double[] r1 = rows[i + 1];
+            double[] r2 = rows[i + 2];
+            double[] r3 = rows[i + 3];
+            double w0 = weights[weightOffset + i];
+            double w1 = weights[weightOffset + i + 1];
+            double w2 = weights[weightOffset + i + 2];
+            double w3 = weights[weightOffset + i + 3];
+            for(int v = from; v < to; v++) {
+                totals[v] = (((totals[v] + w0 * r0[v]) + w1 * r1[v]) + w2 * r2[v]) + w3 * r3[v];
+            }
+        }
+        for(; i < count; i++) {
+            accumulate(totals, rows[i], weights[weightOffset + i], from, to);
+        }
+    }
+
+    /**
+     * returns the first vertex with the smallest value, or -1 if none is smaller than Double.MAX_VALUE.
+     * the minimum is found first with a branch free reduction and its first position afterwards
+     * @param totals
+     * @return
+     */
+    static int argmin(double[] totals) {
+        double min = Double.MAX_VALUE;
+        for(int v = 0; v < totals.length; v++) {
+            double total = totals[v];
+            min = total < min ? total : min;
+        }
+        if(min >= Double.MAX_VALUE) {
+            return -1;
+        }
+        for(int v = 0; v < totals.length; v++) {
+            if(totals[v] == min) {
+                return v;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,116 @@
+/**
+ * keeps the population weighted total of every candidate up to date as people
+ * join, leave or move, so the best midpoint is known without running the whole
+ * midpoint search again. each change costs one shortest path row and one pass
+ * over the candidates, asking for the midpoint is O(1)
+ */
+class MidpointTracker {
+    private final MidpointSolver solver;
+    private final double[] totals;
+    private final int[] unreachable;
+    private int totalSize;
+    private int minVertex;
+
+    /**
+     * creates a tracker with nobody in it
+     * @param solver
+     */
+    MidpointTracker(MidpointSolver solver) {
+        this.solver = solver;
+        int vertexCount = solver.getGraph().getVertexCount();
+        this.totals = new double[vertexCount];
+        this.unreachable = new int[vertexCount];
+        this.totalSize = 0;
+        this.minVertex = vertexCount > 0 ? 0 : -1;
+    }
+
+    /**
+     * returns the solver the rows come from
+     * @return
+     */
+    MidpointSolver getSolver() {
+        return solver;
+    }
+
+    /**
+     * adds count people at origin, a negative count removes them
+     * @param origin
+     * @param count
+     */
+    public void update(int origin, int count) {
+        if(count == 0) {
+            return;
+        }
+        double[] row = solver.row(origin);
+        double min = Double.MAX_VALUE;
+        minVertex = -1;
+        for(int v = 0; v < totals.length; v++) {
+            if(row[v] == Double.MAX_VALUE) {
+                unreachable[v] += count;
+            } else {
+                totals[v] += count * row[v];
+            }
+            if(unreachable[v] == 0 && totals[v] < min) {
+                min = totals[v];
+                minVertex = v;
+            }
+        }
+        totalSize += count;
+    }
+
+    /**
+     * moves one person from one origin to another in a single pass over the candidates
+     * @param from
+     * @param to
+     */
+    public void move(int from, int to) {
+        if(from == to) {
+            return;
+        }
+        // the rows may be scratch arrays of the same thread, so the old row is copied first
+        double[] fromRow = solver.row(from).clone();
+        double[] toRow = solver.row(to);
+        double min = Double.MAX_VALUE;
+        minVertex = -1;
+        for(int v = 0; v < totals.length; v++) {
+            if(fromRow[v] == Double.MAX_VALUE) {
+                unreachable[v]--;
+            } else {
+                totals[v] -= fromRow[v];
+            }
+            if(toRow[v] == Double.MAX_VALUE) {
+                unreachable[v]++;
+            } else {
+                totals[v] += toRow[v];
+            }
+            if(unreachable[v] == 0 && totals[v] < min) {
+                min = totals[v];
+                minVertex = v;
+            }
+        }
+    }
+
+    /**
+     * returns the vertex with the smallest weighted total, or -1 if no vertex reaches everybody
+     * @return
+     */
+    public int getMinVertex() {
+        return minVertex;
+    }
+
+    /**
+     * returns the average distance travelled to the best midpoint
+     * @return
+     */
+    public double getMinAverage() {
+        return totals[minVertex] / totalSize;
+    }
+
+    /**
+     * returns the number of people being tracked
+     * @return
+     */
+    public int getTotalSize() {
+        return totalSize;
+    }
+}
@@ -0,0 +1,62 @@
+/**
+ * a candidate meeting city with the average travelled to it in every weight channel
+ */
+public class MultiMidpoint {
+    private final int vertex;
+    private final String name;
+    private final double[] averages;
+
+    /**
+     * creates a MultiMidpoint for the city at vertex
+     * @param vertex
+     * @param name
+     * @param averages one average per channel
+     */
+    public MultiMidpoint(int vertex, String name, double[] averages) {
+        this.vertex = vertex;
+        this.name = name;
+        this.averages = averages.clone();
+    }
+
+    /**
+     * returns the vertex of the city
+     * @return
+     */
+    public int getVertex() {
+        return vertex;
+    }
+
+    /**
+     * returns the name of the city
+     * @return
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * returns the average travelled to the city in channel
+     * @param channel
+     * @return
+     */
+    public double getAverage(int channel) {
+        return averages[channel];
+    }
+
+    /**
+     * returns the number of channels
+     * @return
+     */
+    public int getChannelCount() {
+        return averages.length;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder out = new StringBuilder(name).append(" (");
+        for(int c = 0; c < averages.length; c++) {
+            out.append(c == 0 ? "" : ", ").append(averages[c]);
+        }
+        return out.append(')').toString();
+    }
+}
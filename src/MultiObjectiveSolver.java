@@ -0,0 +1,248 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.IntFunction;
+
+/**
+ * midpoint search over a MultiWeightGraph. one pass over the origins fills the
+ * average of every channel for every candidate, the candidates can then be ranked
+ * by a weighted sum of the channels or reduced to their pareto front. each origin
+ * is searched once for all channels together, reading every edge once per visit and
+ * relaxing it in every channel, instead of once per channel
+ */
+class MultiObjectiveSolver {
+    private final MultiWeightGraph graph;
+    private final double[][] labels;
+    private final double[] keys;
+    private final IndexedMinHeap heap;
+    // per channel searches for an origin the fused search gives up on, made on first use
+    private final DijkstraSearch[] searches;
+
+    /**
+     * creates a solver with scratch space for one search over every channel, a solver is not thread safe
+     * @param graph
+     */
+    MultiObjectiveSolver(MultiWeightGraph graph) {
+        this.graph = graph;
+        this.labels = new double[graph.getChannelCount()][graph.getVertexCount()];
+        this.keys = new double[graph.getVertexCount()];
+        this.heap = new IndexedMinHeap(keys);
+        this.searches = new DijkstraSearch[graph.getChannelCount()];
+    }
+
+    /**
+     * returns the population weighted average of every candidate in every channel
+     * @param origins distinct origin vertices
+     * @param weights number of people at each origin
+     * @return averages[channel][vertex], Double.MAX_VALUE where some origin cannot reach the candidate
+     */
+    public double[][] averages(int[] origins, int[] weights) {
+        if(origins.length != weights.length) {
+            throw new IllegalArgumentException("origins and weights differ in length");
+        }
+        int vertexCount = graph.getVertexCount();
+        double[][] totals = new double[labels.length][vertexCount];
+        int totalSize = 0;
+        for(int i = 0; i < origins.length; i++) {
+            double[][] rows = distancesFrom(origins[i]);
+            for(int c = 0; c < labels.length; c++) {
+                MidpointSolver.accumulate(totals[c], rows[c], weights[i], 0, vertexCount);
+            }
+            totalSize += weights[i];
+        }
+        for(double[] channel : totals) {
+            for(int v = 0; v < vertexCount; v++) {
+                // an unreachable total is at least Double.MAX_VALUE and has to stay unreachable
+                channel[v] = channel[v] >= Double.MAX_VALUE ? Double.MAX_VALUE : channel[v] / totalSize;
+            }
+        }
+        return totals;
+    }
+
+    /**
+     * returns the distances from origin in every channel, indexed [channel][vertex]. the
+     * arrays belong to the solver and are overwritten by the next call
+     * @param origin
+     * @return
+     */
+    double[][] distancesFrom(int origin) {
+        if(fusedSearch(origin)) {
+            return labels;
+        }
+        for(int c = 0; c < labels.length; c++) {
+            if(searches[c] == null) {
+                searches[c] = new DijkstraSearch(graph.channel(c));
+            }
+            System.arraycopy(searches[c].run(origin), 0, labels[c], 0, labels[c].length);
+        }
+        return labels;
+    }
+
+    /**
+     * fills labels with the distances from origin in every channel with one label
+     * correcting search. a vertex is queued by the smallest of its labels and queued
+     * again whenever any of them improves after it was scanned, so channels that rank
+     * the vertices alike settle in a single scan each. the order only changes the work,
+     * not the distances. channels that disagree can scan a vertex many times, once the
+     * scans pass one per vertex per channel, the work of searching every channel on its
+     * own, the search gives up so an origin never costs more than about twice that
+     * @param origin
+     * @return false if the search gave up and labels are not complete
+     */
+    private boolean fusedSearch(int origin) {
+        long start = Metrics.ENABLED ? System.nanoTime() : 0;
+        int[] offsets = graph.offsets;
+        int[] targets = graph.targets;
+        double[][] weights = graph.weights;
+        int channels = labels.length;
+        for(double[] channel : labels) {
+            Arrays.fill(channel, Double.MAX_VALUE);
+            channel[origin] = 0;
+        }
+        heap.clear();
+        heap.insert(origin, 0);
+        long budget = (long) channels * graph.getVertexCount();
+        int scans = 0;
+        int relaxed = 0;
+        int heapUpdates = 1;
+        while(!heap.isEmpty()) {
+            if(scans == budget) {
+                heap.clear();
+                return false;
+            }
+            int u = heap.pollMin();
+            scans++;
+            for(int e = offsets[u]; e < offsets[u + 1]; e++) {
+                int v = targets[e];
+                boolean improved = false;
+                double min = Double.MAX_VALUE;
+                for(int c = 0; c < channels; c++) {
+                    double[] label = labels[c];
+                    double newLabel = label[u] + weights[c][e];
+                    if(newLabel < label[v]) {
+                        label[v] = newLabel;
+                        improved = true;
+                    }
+                    min = Math.min(min, label[v]);
+                }
+                relaxed++;
+                if(!improved) {
+                    continue;
+                }
+                if(!heap.contains(v)) {
+                    heap.insert(v, min);
+                    heapUpdates++;
+                } else if(min < keys[v]) {
+                    heap.decreaseKey(v, min);
+                    heapUpdates++;
+                }
+            }
+        }
+        if(Metrics.ENABLED) {
+            Metrics.recordSearch(start, scans, relaxed, heapUpdates);
+        }
+        return true;
+    }
+
+    /**
+     * returns the first candidate with the smallest sum of lambdas[c] * averages[c][v]
+     * @param averages
+     * @param lambdas one weight per channel
+     * @return the vertex, or -1 if no candidate is reachable in every channel
+     */
+    static int scalarizedArgmin(double[][] averages, double[] lambdas) {
+        if(lambdas.length != averages.length) {
+            throw new IllegalArgumentException("need one lambda per channel");
+        }
+        double min = Double.MAX_VALUE;
+        int minVertex = -1;
+        for(int v = 0; v < averages[0].length; v++) {
+            double score = scalarized(averages, lambdas, v);
+            if(score < min) {
+                min = score;
+                minVertex = v;
+            }
+        }
+        return minVertex;
+    }
+
+    /**
+     * returns sum of lambdas[c] * averages[c][v], or Double.MAX_VALUE if v is unreachable in any channel
+     * @param averages
+     * @param lambdas
+     * @param v
+     * @return
+     */
+    static double scalarized(double[][] averages, double[] lambdas, int v) {
+        double score = 0;
+        for(int c = 0; c < averages.length; c++) {
+            if(averages[c][v] >= Double.MAX_VALUE) {
+                return Double.MAX_VALUE;
+            }
+            score += lambdas[c] * averages[c][v];
+        }
+        return score;
+    }
+
+    /**
+     * returns the candidates no other candidate beats in every channel, sorted by the first channel
+     * @param averages
+     * @param names looks up the name of a vertex
+     * @return
+     */
+    static List<MultiMidpoint> paretoFront(double[][] averages, IntFunction<String> names) {
+        int vertexCount = averages[0].length;
+        List<Integer> candidates = new ArrayList<>();
+        for(int v = 0; v < vertexCount; v++) {
+            boolean reachable = true;
+            for(double[] channel : averages) {
+                reachable &= channel[v] < Double.MAX_VALUE;
+            }
+            if(reachable) {
+                candidates.add(v);
+            }
+        }
+        // after a lexicographic sort anything that dominates a candidate comes before it
+        candidates.sort((Integer a, Integer b) -> {
+            for(double[] channel : averages) {
+                int compare = Double.compare(channel[a], channel[b]);
+                if(compare != 0) {
+                    return compare;
+                }
+            }
+            return Integer.compare(a, b);
+        });
+
+        List<Integer> front = new ArrayList<>();
+        for(int v : candidates) {
+            boolean dominated = false;
+            for(int i = 0; i < front.size() && !dominated; i++) {
+                dominated = dominates(averages, front.get(i), v);
+            }
+            if(!dominated) {
+                front.add(v);
+            }
+        }
+
+        List<MultiMidpoint> result = new ArrayList<>(front.size());
+        double[] values = new double[averages.length];
+        for(int v : front) {
+            for(int c = 0; c < averages.length; c++) {
+                values[c] = averages[c][v];
+            }
+            result.add(new MultiMidpoint(v, names.apply(v), values));
+        }
+        return result;
+    }
+
+    private static boolean dominates(double[][] averages, int a, int b) {
+        boolean strictly = false;
+        for(double[] channel : averages) {
+            if(channel[a] > channel[b]) {
+                return false;
+            }
+            strictly |= channel[a] < channel[b];
+        }
+        return strictly;
+    }
+}
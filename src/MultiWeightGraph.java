@@ -0,0 +1,106 @@
+import java.util.Arrays;
+
+/**
+ * csr graph whose edges carry several weights, e.g. distance and cost. the
+ * offsets and targets are stored once and shared by every channel, an edge that
+ * only exists in some channels weighs Double.POSITIVE_INFINITY in the others
+ */
+class MultiWeightGraph {
+    final int[] offsets;
+    final int[] targets;
+    final double[][] weights;
+
+    private MultiWeightGraph(int[] offsets, int[] targets, double[][] weights) {
+        this.offsets = offsets;
+        this.targets = targets;
+        this.weights = weights;
+    }
+
+    /**
+     * merges graphs over the same vertices into one graph with a channel per graph.
+     * parallel edges inside a channel are collapsed to their lowest weight, which
+     * does not change any shortest path
+     * @param channels
+     * @return
+     */
+    static MultiWeightGraph union(CsrGraph... channels) {
+        if(channels.length == 0) {
+            throw new IllegalArgumentException("at least one channel is needed");
+        }
+        int vertexCount = channels[0].getVertexCount();
+        int capacity = 0;
+        for(CsrGraph channel : channels) {
+            if(channel.getVertexCount() != vertexCount) {
+                throw new IllegalArgumentException("channels have different vertex counts");
+            }
+            capacity += channel.getEdgeCount();
+        }
+
+        int[] offsets = new int[vertexCount + 1];
+        int[] targets = new int[capacity];
+        double[][] weights = new double[channels.length][capacity];
+        int[] slot = new int[vertexCount];
+        Arrays.fill(slot, -1);
+        int size = 0;
+        for(int u = 0; u < vertexCount; u++) {
+            int start = size;
+            for(int c = 0; c < channels.length; c++) {
+                CsrGraph channel = channels[c];
+                for(int e = channel.offsets[u]; e < channel.offsets[u + 1]; e++) {
+                    int v = channel.targets[e];
+                    if(slot[v] < 0) {
+                        slot[v] = size;
+                        targets[size] = v;
+                        for(double[] channelWeights : weights) {
+                            channelWeights[size] = Double.POSITIVE_INFINITY;
+                        }
+                        size++;
+                    }
+                    weights[c][slot[v]] = Math.min(weights[c][slot[v]], channel.weights[e]);
+                }
+            }
+            for(int e = start; e < size; e++) {
+                slot[targets[e]] = -1;
+            }
+            offsets[u + 1] = size;
+        }
+
+        for(int c = 0; c < weights.length; c++) {
+            weights[c] = Arrays.copyOf(weights[c], size);
+        }
+        return new MultiWeightGraph(offsets, Arrays.copyOf(targets, size), weights);
+    }
+
+    /**
+     * returns the number of vertices in the graph
+     * @return
+     */
+    public int getVertexCount() {
+        return offsets.length - 1;
+    }
+
+    /**
+     * returns the number of directed edges in the graph
+     * @return
+     */
+    public int getEdgeCount() {
+        return targets.length;
+    }
+
+    /**
+     * returns the number of weight channels
+     * @return
+     */
+    public int getChannelCount() {
+        return weights.length;
+    }
+
+    /**
+     * returns a CsrGraph view of one channel, the arrays are shared and not copied
+     * @param channel
+     * @return
+     */
+    public CsrGraph channel(int channel) {
+        return new CsrGraph(offsets, targets, weights[channel]);
+    }
+}
@@ -0,0 +1,373 @@
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * the people loaded from participant lists, kept in columns instead of a Person each.
+ * the midpoint math only needs how many people live in every city, which is one int
+ * per city. names are optional: when kept, each row is the vertex of its city, the
+ * end of its name in one shared utf-8 byte arena and the next row of the same city,
+ * about 12 bytes plus the name per person against well over 60 for a Person, its
+ * String and its list slot. the rows of a city are linked in a list so looking someone
+ * up only walks the people of that city. removed rows are marked with a vertex of -1
+ * and packed away, names included, once they are half of the rows
+ */
+class ParticipantStore {
+    // removed rows are only packed away when there are at least this many
+    private static final int MIN_COMPACTION = 64;
+    private static final int NOT_FOUND = -2;
+    private final boolean keepNames;
+    private int[] counts = new int[16];
+    private int total;
+    // one entry per row, only used when names are kept
+    private int[] rowVertices;
+    private int[] nameEnds;
+    private int[] nextRows;
+    // the first and last row of every city, -1 for none
+    private int[] firstRows;
+    private int[] lastRows;
+    private byte[] arena;
+    private int rows;
+    private int removedRows;
+    private int arenaSize;
+
+    /**
+     * creates an empty store
+     * @param keepNames false keeps only the count of people in every city
+     */
+    ParticipantStore(boolean keepNames) {
+        this.keepNames = keepNames;
+        if(keepNames) {
+            rowVertices = new int[16];
+            nameEnds = new int[16];
+            nextRows = new int[16];
+            firstRows = new int[counts.length];
+            lastRows = new int[counts.length];
+            Arrays.fill(firstRows, -1);
+            Arrays.fill(lastRows, -1);
+            arena = new byte[256];
+        }
+    }
+
+    /**
+     * copy constructor
+     * @param other
+     */
+    ParticipantStore(ParticipantStore other) {
+        this.keepNames = other.keepNames;
+        this.counts = other.counts.clone();
+        this.total = other.total;
+        this.rows = other.rows;
+        this.removedRows = other.removedRows;
+        this.arenaSize = other.arenaSize;
+        if(keepNames) {
+            this.rowVertices = Arrays.copyOf(other.rowVertices, Math.max(16, rows));
+            this.nameEnds = Arrays.copyOf(other.nameEnds, Math.max(16, rows));
+            this.nextRows = Arrays.copyOf(other.nextRows, Math.max(16, rows));
+            this.firstRows = other.firstRows.clone();
+            this.lastRows = other.lastRows.clone();
+            this.arena = Arrays.copyOf(other.arena, Math.max(256, arenaSize));
+        }
+    }
+
+    /**
+     * returns if names are stored
+     * @return
+     */
+    boolean keepsNames() {
+        return keepNames;
+    }
+
+    /**
+     * adds a person at vertex whose name is the characters [from, to) of line
+     * @param vertex
+     * @param line
+     * @param from
+     * @param to
+     * @return the number of people now at vertex
+     */
+    int add(int vertex, CharSequence line, int from, int to) {
+        if(keepNames) {
+            ensureArena(to - from);
+            for(int i = from; i < to; i++) {
+                char c = line.charAt(i);
+                if(c >= 0x80) {
+                    // rare outside ascii, let the encoder deal with surrogates
+                    arenaSize -= i - from;
+                    byte[] encoded = line.subSequence(from, to).toString().getBytes(StandardCharsets.UTF_8);
+                    ensureArena(encoded.length);
+                    System.arraycopy(encoded, 0, arena, arenaSize, encoded.length);
+                    arenaSize += encoded.length;
+                    return addRow(vertex);
+                }
+                arena[arenaSize++] = (byte) c;
+            }
+        }
+        return addRow(vertex);
+    }
+
+    /**
+     * adds a person at vertex whose utf-8 name is the bytes [from, to) of buffer
+     * @param vertex
+     * @param buffer
+     * @param from absolute index of the first byte
+     * @param to absolute index after the last byte
+     * @return the number of people now at vertex
+     */
+    int add(int vertex, ByteBuffer buffer, int from, int to) {
+        if(keepNames) {
+            ensureArena(to - from);
+            for(int i = from; i < to; i++) {
+                arena[arenaSize++] = buffer.get(i);
+            }
+        }
+        return addRow(vertex);
+    }
+
+    private int addRow(int vertex) {
+        if(vertex < 0) {
+            throw new IndexOutOfBoundsException("vertex " + vertex);
+        }
+        ensureVertex(vertex);
+        if(keepNames) {
+            if(rows == rowVertices.length) {
+                rowVertices = Arrays.copyOf(rowVertices, rows * 2);
+                nameEnds = Arrays.copyOf(nameEnds, rows * 2);
+                nextRows = Arrays.copyOf(nextRows, rows * 2);
+            }
+            rowVertices[rows] = vertex;
+            nameEnds[rows] = arenaSize;
+            append(vertex, rows);
+            rows++;
+        }
+        total++;
+        return ++counts[vertex];
+    }
+
+    private void ensureVertex(int vertex) {
+        if(vertex < counts.length) {
+            return;
+        }
+        int length = counts.length;
+        counts = Arrays.copyOf(counts, Math.max(vertex + 1, length * 2));
+        if(keepNames) {
+            firstRows = Arrays.copyOf(firstRows, counts.length);
+            lastRows = Arrays.copyOf(lastRows, counts.length);
+            Arrays.fill(firstRows, length, counts.length, -1);
+            Arrays.fill(lastRows, length, counts.length, -1);
+        }
+    }
+
+    /**
+     * links row in at the end of the rows of vertex
+     */
+    private void append(int vertex, int row) {
+        nextRows[row] = -1;
+        if(lastRows[vertex] < 0) {
+            firstRows[vertex] = row;
+        } else {
+            nextRows[lastRows[vertex]] = row;
+        }
+        lastRows[vertex] = row;
+    }
+
+    /**
+     * unlinks the row after previous from the rows of vertex, the first row if previous is -1
+     * @return the unlinked row
+     */
+    private int unlink(int vertex, int previous) {
+        int row = previous < 0 ? firstRows[vertex] : nextRows[previous];
+        if(previous < 0) {
+            firstRows[vertex] = nextRows[row];
+        } else {
+            nextRows[previous] = nextRows[row];
+        }
+        if(lastRows[vertex] == row) {
+            lastRows[vertex] = previous;
+        }
+        return row;
+    }
+
+    private void ensureArena(int extra) {
+        if(arenaSize + extra > arena.length) {
+            arena = Arrays.copyOf(arena, Math.max(arenaSize + extra, arena.length * 2));
+        }
+    }
+
+    /**
+     * returns the number of people at vertex
+     * @param vertex
+     * @return
+     */
+    int getCount(int vertex) {
+        return vertex < counts.length ? counts[vertex] : 0;
+    }
+
+    /**
+     * returns the number of people in the store
+     * @return
+     */
+    int size() {
+        return total;
+    }
+
+    /**
+     * returns the names of the people at vertex in the order they were added or moved
+     * there, or a null for each of them when names are not kept
+     * @param vertex
+     * @return
+     */
+    String[] namesAt(int vertex) {
+        String[] names = new String[getCount(vertex)];
+        if(!keepNames || names.length == 0) {
+            return names;
+        }
+        int found = 0;
+        for(int row = firstRows[vertex]; row >= 0; row = nextRows[row]) {
+            names[found++] = nameOf(row);
+        }
+        return names;
+    }
+
+    private String nameOf(int row) {
+        int start = row == 0 ? 0 : nameEnds[row - 1];
+        return new String(arena, start, nameEnds[row] - start, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * returns if there is a person called name at vertex, anyone when names are not kept or name is null
+     * @param name
+     * @param vertex
+     * @return
+     */
+    boolean contains(String name, int vertex) {
+        return findPrevious(name, vertex) != NOT_FOUND;
+    }
+
+    /**
+     * moves the first person called name at vertex from to vertex to, any one of
+     * them when names are not kept or name is null
+     * @param name
+     * @param from
+     * @param to
+     * @return false if there is nobody like that at from
+     */
+    boolean move(String name, int from, int to) {
+        int previous = findPrevious(name, from);
+        if(previous == NOT_FOUND) {
+            return false;
+        }
+        ensureVertex(to);
+        if(keepNames) {
+            int row = unlink(from, previous);
+            rowVertices[row] = to;
+            append(to, row);
+        }
+        counts[from]--;
+        counts[to]++;
+        return true;
+    }
+
+    /**
+     * removes the first person called name at vertex, any one of them when names
+     * are not kept or name is null
+     * @param name
+     * @param vertex
+     * @return false if there is nobody like that at vertex
+     */
+    boolean remove(String name, int vertex) {
+        int previous = findPrevious(name, vertex);
+        if(previous == NOT_FOUND) {
+            return false;
+        }
+        counts[vertex]--;
+        total--;
+        if(keepNames) {
+            rowVertices[unlink(vertex, previous)] = -1;
+            removedRows++;
+            if(removedRows >= MIN_COMPACTION && removedRows * 2 >= rows) {
+                compact();
+            }
+        }
+        return true;
+    }
+
+    /**
+     * returns the row before the first person called name in the rows of vertex, -1 if
+     * that person is the first row or names are not kept, or NOT_FOUND if there is nobody
+     */
+    private int findPrevious(String name, int vertex) {
+        if(getCount(vertex) == 0) {
+            return NOT_FOUND;
+        }
+        if(!keepNames || name == null) {
+            return -1;
+        }
+        byte[] wanted = name.getBytes(StandardCharsets.UTF_8);
+        int previous = -1;
+        for(int row = firstRows[vertex]; row >= 0; row = nextRows[row]) {
+            if(nameEquals(row, wanted)) {
+                return previous;
+            }
+            previous = row;
+        }
+        return NOT_FOUND;
+    }
+
+    private boolean nameEquals(int row, byte[] wanted) {
+        int start = row == 0 ? 0 : nameEnds[row - 1];
+        if(nameEnds[row] - start != wanted.length) {
+            return false;
+        }
+        for(int i = 0; i < wanted.length; i++) {
+            if(arena[start + i] != wanted[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * packs the rows left after removals, and their names, to the front in the same
+     * order and gives back the space when the arrays are mostly empty
+     */
+    private void compact() {
+        int[] newRows = new int[rows];
+        int live = 0;
+        int size = 0;
+        int start = 0;
+        for(int row = 0; row < rows; row++) {
+            int end = nameEnds[row];
+            if(rowVertices[row] >= 0) {
+                System.arraycopy(arena, start, arena, size, end - start);
+                size += end - start;
+                rowVertices[live] = rowVertices[row];
+                nameEnds[live] = size;
+                nextRows[live] = nextRows[row];
+                newRows[row] = live++;
+            }
+            start = end;
+        }
+        for(int row = 0; row < live; row++) {
+            nextRows[row] = nextRows[row] < 0 ? -1 : newRows[nextRows[row]];
+        }
+        for(int vertex = 0; vertex < firstRows.length; vertex++) {
+            if(firstRows[vertex] >= 0) {
+                firstRows[vertex] = newRows[firstRows[vertex]];
+                lastRows[vertex] = newRows[lastRows[vertex]];
+            }
+        }
+        rows = live;
+        removedRows = 0;
+        arenaSize = size;
+        if(rows * 4 < rowVertices.length && rowVertices.length > 16) {
+            int length = Math.max(16, rows * 2);
+            rowVertices = Arrays.copyOf(rowVertices, length);
+            nameEnds = Arrays.copyOf(nameEnds, length);
+            nextRows = Arrays.copyOf(nextRows, length);
+        }
+        if(arenaSize * 4 < arena.length && arena.length > 256) {
+            arena = Arrays.copyOf(arena, Math.max(256, arenaSize * 2));
+        }
+    }
+}
@@ -0,0 +1,198 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * keeps raw browsequotes responses on disk, keyed by the market/currency/locale/
+ * origin/destination/month part of the request. a fresh entry is served as is, a
+ * stale entry is served right away while a background refresh replaces it, and
+ * only a missing entry or one past the max stale age waits for the api. the directory is kept under a byte
+ * limit by deleting the least recently used responses first, a response not used
+ * since the cache was created counts as used when it was written
+ */
+class QuoteCache {
+    /**
+     * fetches the response body for params, returns null if the api refused
+     */
+    interface Loader {
+        byte[] load(String params) throws IOException;
+    }
+
+    private final Path directory;
+    private final long ttlMillis;
+    private final long maxStaleMillis;
+    private final long maxBytes;
+    private final ExecutorService refresher;
+    private final Set<String> refreshing = ConcurrentHashMap.newKeySet();
+    // when each file was last served or stored, by file name
+    private final Map<String, Long> lastUsed = new ConcurrentHashMap<>();
+
+    /**
+     * creates a cache in directory, creating the directory if needed
+     * @param directory
+     * @param ttlMillis how long a response counts as fresh
+     * @param maxStaleMillis how old a response can get and still be served while it is refreshed
+     * @param maxBytes most bytes of responses kept on disk
+     * @throws IOException
+     */
+    QuoteCache(Path directory, long ttlMillis, long maxStaleMillis, long maxBytes) throws IOException {
+        if(maxStaleMillis < ttlMillis) {
+            throw new IllegalArgumentException("max stale age must be at least the ttl");
+        }
+        this.directory = Files.createDirectories(directory);
+        this.ttlMillis = ttlMillis;
+        this.maxStaleMillis = maxStaleMillis;
+        this.maxBytes = maxBytes;
+        this.refresher = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "quote-cache-refresh");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * returns the response for params from disk if there is one, refreshing it in
+     * the background when it is older than the ttl. without a cached response, or with
+     * one older than the max stale age, the loader is called on this thread and its
+     * answer is stored
+     * @param params
+     * @param loader
+     * @return the response body, or null if nothing servable is cached and the loader refused
+     * @throws IOException
+     */
+    public byte[] get(String params, Loader loader) throws IOException {
+        String key = key(params);
+        Path file = directory.resolve(key + ".json");
+        byte[] cached = read(file);
+        // eviction can delete the file between reading it and looking at its time, that is a miss
+        long modified = cached == null ? -1 : lastModified(file);
+        long now = System.currentTimeMillis();
+        if(modified >= 0 && now - modified <= maxStaleMillis) {
+            lastUsed.put(file.getFileName().toString(), now);
+            if(now - modified > ttlMillis) {
+                refreshInBackground(params, key, file, loader);
+            }
+            return cached;
+        }
+        byte[] body = loader.load(params);
+        if(body != null) {
+            store(file, body);
+        }
+        return body;
+    }
+
+    /**
+     * returns the cache key of params: everything before the query string, so the api key is not part of it
+     * @param params
+     * @return
+     */
+    static String key(String params) {
+        int query = params.indexOf('?');
+        String key = query < 0 ? params : params.substring(0, query);
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(key.getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder(digest.length * 2);
+            for(byte b : digest) {
+                hex.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+            }
+            return hex.toString();
+        } catch(NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private void refreshInBackground(String params, String key, Path file, Loader loader) {
+        if(!refreshing.add(key)) {
+            return;
+        }
+        refresher.execute(() -> {
+            try {
+                byte[] body = loader.load(params);
+                if(body != null) {
+                    store(file, body);
+                }
+            } catch(IOException e) {
+                System.err.println("Refreshing cached quotes failed: " + e.getMessage());
+            } finally {
+                refreshing.remove(key);
+            }
+        });
+    }
+
+    private static byte[] read(Path file) throws IOException {
+        try {
+            return Files.readAllBytes(file);
+        } catch(NoSuchFileException e) {
+            return null;
+        }
+    }
+
+    private static long lastModified(Path file) throws IOException {
+        try {
+            return Files.getLastModifiedTime(file).toMillis();
+        } catch(NoSuchFileException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * writes body through a temporary file so readers never see half a response, then trims the directory
+     * @param file
+     * @param body
+     * @throws IOException
+     */
+    private synchronized void store(Path file, byte[] body) throws IOException {
+        Path temp = Files.createTempFile(directory, "quotes", ".tmp");
+        try {
+            Files.write(temp, body);
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            lastUsed.put(file.getFileName().toString(), System.currentTimeMillis());
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        evict();
+    }
+
+    /**
+     * deletes the least recently used responses until the directory fits in maxBytes
+     */
+    private void evict() {
+        File[] files = directory.toFile().listFiles((dir, name) -> name.endsWith(".json"));
+        if(files == null) {
+            return;
+        }
+        long total = 0;
+        for(File file : files) {
+            total += file.length();
+        }
+        long[] used = new long[files.length];
+        Integer[] byUse = new Integer[files.length];
+        for(int i = 0; i < files.length; i++) {
+            Long time = lastUsed.get(files[i].getName());
+            used[i] = time != null ? time : files[i].lastModified();
+            byUse[i] = i;
+        }
+        Arrays.sort(byUse, Comparator.comparingLong(i -> used[i]));
+        for(int i = 0; i < files.length && total > maxBytes; i++) {
+            File file = files[byUse[i]];
+            long length = file.length();
+            if(file.delete()) {
+                lastUsed.remove(file.getName());
+                total -= length;
+            }
+        }
+    }
+}
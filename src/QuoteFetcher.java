@@ -0,0 +1,185 @@
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * fetches quotes for many origin/month combinations at once and merges them into
+ * one edge set, keeping the cheapest fare for each pair of cities. at most
+ * concurrency requests are in flight, every request has a timeout and failed
+ * requests are retried with exponential backoff. HttpURLConnection keeps the
+ * connections alive between requests to the same host
+ */
+class QuoteFetcher implements QuoteSource {
+    private final String url;
+    private final List<String> origins;
+    private final List<String> months;
+    private final int concurrency;
+    private final int timeoutMillis;
+    private final int maxRetries;
+    private final long backoffMillis;
+
+    /**
+     * creates a fetcher with 8 requests in flight, a 10 second timeout and 3 retries starting at 200ms
+     * @param url base url of the api, SkyScannerAPI.DEFAULT_URL or a QuoteStubServer
+     * @param origins origin places, e.g. "US" or "ORD-sky"
+     * @param months months in yyyy-MM format
+     */
+    QuoteFetcher(String url, List<String> origins, List<String> months) {
+        this(url, origins, months, 8, 10000, 3, 200);
+    }
+
+    /**
+     * creates a fetcher
+     * @param url base url of the api
+     * @param origins origin places
+     * @param months months in yyyy-MM format
+     * @param concurrency most requests in flight at once
+     * @param timeoutMillis connect and read timeout of each request
+     * @param maxRetries retries after the first attempt
+     * @param backoffMillis wait before the first retry, doubled for every retry after it
+     */
+    QuoteFetcher(String url, List<String> origins, List<String> months, int concurrency, int timeoutMillis, int maxRetries, long backoffMillis) {
+        if(concurrency < 1) {
+            throw new IllegalArgumentException("concurrency must be at least 1");
+        }
+        this.url = url;
+        this.origins = new ArrayList<>(origins);
+        this.months = new ArrayList<>(months);
+        this.concurrency = concurrency;
+        this.timeoutMillis = timeoutMillis;
+        this.maxRetries = maxRetries;
+        this.backoffMillis = backoffMillis;
+    }
+
+    /**
+     * fetches every origin/month combination and hands the merged edges to sink
+     * in a fixed order, once each
+     * @param cityToVertex
+     * @param sink
+     * @return false if every request failed
+     * @throws IOException
+     */
+    @Override
+    public boolean streamQuotes(HashMap<String, Integer> cityToVertex, QuoteSink sink) throws IOException {
+        List<String> params = new ArrayList<>();
+        for(String origin : origins) {
+            for(String month : months) {
+                params.add(SkyScannerAPI.quoteParams(origin, month));
+            }
+        }
+        if(params.isEmpty()) {
+            return false;
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(Math.min(concurrency, params.size()));
+        TreeMap<Long, Double> edges = new TreeMap<>();
+        boolean anySucceeded = false;
+        try {
+            List<Future<Map<Long, Double>>> results = new ArrayList<>(params.size());
+            for(String param : params) {
+                results.add(pool.submit(() -> fetch(param, cityToVertex)));
+            }
+            for(Future<Map<Long, Double>> result : results) {
+                Map<Long, Double> fetched = result.get();
+                if(fetched == null) {
+                    continue;
+                }
+                anySucceeded = true;
+                for(Map.Entry<Long, Double> edge : fetched.entrySet()) {
+                    edges.merge(edge.getKey(), edge.getValue(), Math::min);
+                }
+            }
+        } catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("quote fetch interrupted", e);
+        } catch(ExecutionException e) {
+            throw new IOException("quote fetch failed", e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+
+        for(Map.Entry<Long, Double> edge : edges.entrySet()) {
+            long key = edge.getKey();
+            sink.accept((int) (key >>> 32), (int) key, edge.getValue());
+        }
+        return anySucceeded;
+    }
+
+    /**
+     * fetches one request, retrying timeouts, connection errors, 429 and 5xx responses
+     * @param params
+     * @param cityToVertex
+     * @return the cheapest fare per (origin, destination) vertex pair, or null if the request failed
+     * @throws InterruptedException
+     */
+    private Map<Long, Double> fetch(String params, HashMap<String, Integer> cityToVertex) throws InterruptedException {
+        SkyScannerAPI api = new SkyScannerAPI(url);
+        String requestUrl = api.quoteUrl(params);
+        for(int attempt = 0; ; attempt++) {
+            String failure;
+            try {
+                long start = Metrics.ENABLED ? System.nanoTime() : 0;
+                HttpURLConnection connection = SkyScannerAPI.openGet(requestUrl, timeoutMillis);
+                int responseCode = connection.getResponseCode();
+                if(Metrics.ENABLED) {
+                    Metrics.HTTP_NANOS.record(System.nanoTime() - start);
+                }
+                if(responseCode == 200) {
+                    Map<Long, Double> fares = new HashMap<>();
+                    try(InputStream in = connection.getInputStream(); SkyScannerAPI.Body body = SkyScannerAPI.spooling(in)) {
+                        api.parseJsonBody(body, cityToVertex, (v1, v2, price) -> fares.merge(edgeKey(v1, v2), price, Math::min));
+                    }
+                    return fares;
+                }
+                drain(connection);
+                failure = "error code " + responseCode;
+                if(responseCode != 429 && responseCode < 500) {
+                    System.err.println("Get request " + params + " failed with " + failure);
+                    return null;
+                }
+            } catch(IOException e) {
+                failure = e.toString();
+            }
+            if(attempt >= maxRetries) {
+                System.err.println("Get request " + params + " failed after " + (attempt + 1) + " attempts: " + failure);
+                return null;
+            }
+            if(Metrics.ENABLED) {
+                Metrics.FETCH_RETRIES.increment();
+            }
+            long backoff = backoffMillis << attempt;
+            Thread.sleep(backoff + ThreadLocalRandom.current().nextLong(backoff / 2 + 1));
+        }
+    }
+
+    /**
+     * reads and closes the error body so the connection can be reused
+     * @param connection
+     */
+    private static void drain(HttpURLConnection connection) {
+        try(InputStream error = connection.getErrorStream()) {
+            if(error != null) {
+                byte[] chunk = new byte[1024];
+                while(error.read(chunk) != -1) {
+                    // discard
+                }
+            }
+        } catch(IOException e) {
+            connection.disconnect();
+        }
+    }
+
+    private static long edgeKey(int v1, int v2) {
+        return ((long) v1 << 32) | (v2 & 0xffffffffL);
+    }
+}
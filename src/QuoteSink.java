@@ -0,0 +1,6 @@
+/**
+ * receives the fares of a quote response one at a time, already mapped to GeoMap vertices
+ */
+interface QuoteSink {
+    void accept(int originVertex, int destinationVertex, double price);
+}
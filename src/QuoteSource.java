@@ -0,0 +1,9 @@
+import java.io.IOException;
+import java.util.HashMap;
+
+/**
+ * anything that can stream fares between the cities of a GeoMap
+ */
+interface QuoteSource {
+    boolean streamQuotes(HashMap<String, Integer> cityToVertex, QuoteSink sink) throws IOException;
+}
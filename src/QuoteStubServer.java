@@ -0,0 +1,166 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * local stand in for the SkyScanner browsequotes endpoint that replays recorded
+ * json, so fetching can be tested and benchmarked offline. responses can be
+ * delayed and the first requests can be made to fail or be cut off to exercise retries
+ */
+class QuoteStubServer {
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final byte[] defaultBody;
+    private final Map<String, byte[]> bodies = new ConcurrentHashMap<>();
+    private final AtomicInteger requests = new AtomicInteger();
+    private volatile int failuresLeft = 0;
+    private volatile int dropsLeft = 0;
+    private volatile int failureCode = 503;
+    private volatile long delayMillis = 0;
+
+    /**
+     * creates a stub on a free local port that answers every request with defaultBody
+     * @param defaultBody
+     * @throws IOException
+     */
+    QuoteStubServer(byte[] defaultBody) throws IOException {
+        this.defaultBody = defaultBody;
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        this.executor = Executors.newCachedThreadPool();
+        server.setExecutor(executor);
+        server.createContext("/", this::handle);
+    }
+
+    /**
+     * creates a stub that replays the recorded Resources/SampleQuotes.json
+     * @return
+     * @throws IOException
+     */
+    static QuoteStubServer withSampleQuotes() throws IOException {
+        try(InputStream in = QuoteStubServer.class.getResourceAsStream("Resources/SampleQuotes.json")) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] chunk = new byte[8192];
+            int read;
+            while((read = in.read(chunk)) != -1) {
+                out.write(chunk, 0, read);
+            }
+            return new QuoteStubServer(out.toByteArray());
+        }
+    }
+
+    /**
+     * answers requests for params (as built by SkyScannerAPI.quoteParams) with body
+     * @param params
+     * @param body
+     */
+    void record(String params, byte[] body) {
+        bodies.put(params.substring(0, params.indexOf('?')), body);
+    }
+
+    /**
+     * makes the next count requests fail with responseCode
+     * @param count
+     * @param responseCode
+     */
+    void failNext(int count, int responseCode) {
+        this.failureCode = responseCode;
+        this.failuresLeft = count;
+    }
+
+    /**
+     * makes the next count requests get the headers and half of the body before the
+     * connection is closed
+     * @param count
+     */
+    void dropNext(int count) {
+        this.dropsLeft = count;
+    }
+
+    /**
+     * waits delayMillis before answering each request
+     * @param delayMillis
+     */
+    void setDelayMillis(long delayMillis) {
+        this.delayMillis = delayMillis;
+    }
+
+    /**
+     * returns the number of requests received so far
+     * @return
+     */
+    int getRequestCount() {
+        return requests.get();
+    }
+
+    /**
+     * returns the base url to hand to SkyScannerAPI or QuoteFetcher
+     * @return
+     */
+    String getUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    void start() {
+        server.start();
+    }
+
+    void stop() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        requests.incrementAndGet();
+        try {
+            if(delayMillis > 0) {
+                Thread.sleep(delayMillis);
+            }
+        } catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        int responseCode = 200;
+        boolean drop = false;
+        byte[] body;
+        synchronized(this) {
+            if(failuresLeft > 0) {
+                failuresLeft--;
+                responseCode = failureCode;
+            } else if(dropsLeft > 0) {
+                dropsLeft--;
+                drop = true;
+            }
+        }
+        if(responseCode == 200) {
+            String path = exchange.getRequestURI().getPath();
+            String params = path.substring(path.indexOf("/v1.0/") + "/v1.0/".length());
+            body = bodies.getOrDefault(params, defaultBody);
+        } else {
+            body = ("{\"ValidationErrors\":[{\"Message\":\"stub failure " + responseCode + "\"}]}").getBytes("UTF-8");
+        }
+
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(responseCode, body.length);
+        if(drop) {
+            OutputStream out = exchange.getResponseBody();
+            out.write(body, 0, body.length / 2);
+            out.flush();
+            // closing the exchange short of the promised length drops the connection
+            exchange.close();
+            return;
+        }
+        try(OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+}
@@ -0,0 +1,227 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * reads whitespace separated numbers and lines straight out of a ByteBuffer
+ * holding ascii/utf-8 text. numbers are parsed from the bytes in place so reading
+ * a row of numbers allocates nothing
+ */
+class RecordParser {
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+    private static final long MAX_EXACT_MANTISSA = 1L << 53;
+
+    private final ByteBuffer buffer;
+    private int position;
+    private final int limit;
+
+    /**
+     * creates a parser over the remaining bytes of buffer, the buffer's position is not moved
+     * @param buffer
+     */
+    RecordParser(ByteBuffer buffer) {
+        this.buffer = buffer;
+        this.position = buffer.position();
+        this.limit = buffer.limit();
+    }
+
+    /**
+     * maps the file at path read only so it can be parsed without copying it onto the heap
+     * @param path
+     * @return
+     * @throws IOException
+     */
+    static ByteBuffer map(Path path) throws IOException {
+        try(FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+    }
+
+    /**
+     * skips whitespace and returns if there is another token
+     * @return
+     */
+    public boolean hasNext() {
+        while(position < limit && isSpace(buffer.get(position))) {
+            position++;
+        }
+        return position < limit;
+    }
+
+    /**
+     * skips the rest of the current line including its line break
+     */
+    public void skipLine() {
+        while(position < limit && buffer.get(position) != '\n') {
+            position++;
+        }
+        if(position < limit) {
+            position++;
+        }
+    }
+
+    /**
+     * returns the rest of the current line without surrounding whitespace and moves past it
+     * @return
+     */
+    public String nextLine() {
+        int start = position;
+        while(position < limit && buffer.get(position) != '\n') {
+            position++;
+        }
+        int end = position;
+        if(position < limit) {
+            position++;
+        }
+        while(start < end && isSpace(buffer.get(start))) {
+            start++;
+        }
+        while(end > start && isSpace(buffer.get(end - 1))) {
+            end--;
+        }
+        return decode(start, end);
+    }
+
+    /**
+     * returns the next whitespace separated token as a String
+     * @return
+     */
+    public String nextToken() {
+        int start = tokenStart();
+        while(position < limit && !isSpace(buffer.get(position))) {
+            position++;
+        }
+        return decode(start, position);
+    }
+
+    /**
+     * moves past the next token without decoding it
+     * @return the absolute index of its first byte, getPosition is just past its last
+     */
+    public int skipToken() {
+        int start = tokenStart();
+        while(position < limit && !isSpace(buffer.get(position))) {
+            position++;
+        }
+        return start;
+    }
+
+    /**
+     * returns the absolute index of the next byte to be read
+     * @return
+     */
+    public int getPosition() {
+        return position;
+    }
+
+    /**
+     * parses the next token as an int
+     * @return
+     */
+    public int nextInt() {
+        int start = tokenStart();
+        boolean negative = false;
+        if(buffer.get(position) == '-' || buffer.get(position) == '+') {
+            negative = buffer.get(position) == '-';
+            position++;
+        }
+        long value = 0;
+        int digits = 0;
+        while(position < limit) {
+            int digit = buffer.get(position) - '0';
+            if(digit < 0 || digit > 9) {
+                break;
+            }
+            value = value * 10 + digit;
+            if(value > (long) Integer.MAX_VALUE + 1) {
+                throw new NumberFormatException("int out of range at byte " + start);
+            }
+            digits++;
+            position++;
+        }
+        requireTokenEnd(start, digits);
+        value = negative ? -value : value;
+        if(value > Integer.MAX_VALUE) {
+            throw new NumberFormatException("int out of range at byte " + start);
+        }
+        return (int) value;
+    }
+
+    /**
+     * parses the next token as a double. plain decimals with up to 15 significant
+     * digits are parsed in place and round the same way Double.parseDouble does,
+     * anything longer falls back to Double.parseDouble
+     * @return
+     */
+    public double nextDouble() {
+        int start = tokenStart();
+        int index = position;
+        boolean negative = false;
+        if(buffer.get(index) == '-' || buffer.get(index) == '+') {
+            negative = buffer.get(index) == '-';
+            index++;
+        }
+        long mantissa = 0;
+        int digits = 0;
+        int scale = 0;
+        boolean exact = true;
+        boolean fraction = false;
+        while(index < limit) {
+            byte b = buffer.get(index);
+            if(b == '.' && !fraction) {
+                fraction = true;
+            } else if(b >= '0' && b <= '9') {
+                if(mantissa >= MAX_EXACT_MANTISSA / 10) {
+                    exact = false;
+                }
+                mantissa = mantissa * 10 + (b - '0');
+                digits++;
+                if(fraction) {
+                    scale++;
+                }
+            } else {
+                break;
+            }
+            index++;
+        }
+        if(exact && digits > 0 && scale < POWERS_OF_TEN.length && (index == limit || isSpace(buffer.get(index)))) {
+            position = index;
+            double value = mantissa / POWERS_OF_TEN[scale];
+            return negative ? -value : value;
+        }
+        position = start;
+        return Double.parseDouble(nextToken());
+    }
+
+    private int tokenStart() {
+        if(!hasNext()) {
+            throw new IllegalStateException("no tokens left");
+        }
+        return position;
+    }
+
+    private void requireTokenEnd(int start, int digits) {
+        if(digits == 0 || (position < limit && !isSpace(buffer.get(position)))) {
+            position = start;
+            throw new NumberFormatException("not a number: " + nextToken());
+        }
+    }
+
+    private String decode(int start, int end) {
+        byte[] bytes = new byte[end - start];
+        for(int i = 0; i < bytes.length; i++) {
+            bytes[i] = buffer.get(start + i);
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static boolean isSpace(byte b) {
+        return b == ' ' || b == '\n' || b == '\r' || b == '\t';
+    }
+}
@@ -0,0 +1,6 @@
+/**
+ * anything that can fill the distances from one origin to every vertex of a graph
+ */
+interface ShortestPathSearch {
+    double[] run(int origin);
+}
@@ -3,51 +3,277 @@ import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.JsonToken;
 
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
 import java.net.HttpURLConnection;
 import java.net.URL;
+import java.net.URLEncoder;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.text.SimpleDateFormat;
-import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashMap;
 
-public class SkyScannerAPI {
-    private final String url = "http://partners.api.skyscanner.net";
+public class SkyScannerAPI implements QuoteSource {
+    static final String DEFAULT_URL = "http://partners.api.skyscanner.net";
+    // connect and read timeout of every request
+    static final int TIMEOUT_MILLIS = 10000;
+    private final String url;
     private final String path = "/apiservices/browsequotes/v1.0/";
-    private ArrayList<Quote> quotes = new ArrayList<>();
     HashMap<Integer, String> apiIdToName = new HashMap<>();
+    private QuoteCache quoteCache;
 
     /**
      * default constructor
      */
-    public SkyScannerAPI() { }
+    public SkyScannerAPI() {
+        this(DEFAULT_URL);
+    }
+
+    /**
+     * creates an api that sends its requests to url instead of the SkyScanner partner api,
+     * e.g. a local QuoteStubServer
+     * @param url
+     */
+    public SkyScannerAPI(String url) {
+        this.url = url;
+    }
+
+    /**
+     * serves responses from cache instead of asking the api every time, null turns caching off
+     * @param quoteCache
+     */
+    public void setQuoteCache(QuoteCache quoteCache) {
+        this.quoteCache = quoteCache;
+    }
+
+    /**
+     * returns the query parameters of the browsequotes request for quotes from
+     * origin in the yyyy-MM month
+     * @param origin
+     * @param month
+     * @return
+     */
+    static String quoteParams(String origin, String month) {
+        try {
+            String apiKey = System.getProperty("skyscanner.apiKey", "<API-KEY-HERE>");
+            return "US/USD/en-US/" + origin + "/US/" + month + "/?apiKey=" + URLEncoder.encode(apiKey, "UTF-8");
+        } catch(UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
 
     /**
-     * Takes a json inputstream and parses it for quotes and places
-     * @param source
+     * returns the current month in the yyyy-MM format the api takes
+     * @return
+     */
+    static String currentMonth() {
+        SimpleDateFormat datelocale = new SimpleDateFormat("yyyy-MM");
+        return datelocale.format(new Date());
+    }
+
+    /**
+     * returns the full url of the browsequotes request for params
+     * @param params
+     * @return
+     */
+    String quoteUrl(String params) {
+        return url + path + params;
+    }
+
+    /**
+     * opens a GET request for json at url
+     * @param url
+     * @param timeoutMillis connect and read timeout, 0 waits forever
+     * @return
      * @throws IOException
      */
-    private void parseJsonBody(InputStream source) throws IOException {
+    static HttpURLConnection openGet(String url, int timeoutMillis) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+        connection.setRequestMethod("GET");
+        connection.setRequestProperty("Content-Type", "application/x-www-form-urlencoded");
+        connection.setRequestProperty("Accept", "application/json");
+        connection.setConnectTimeout(timeoutMillis);
+        connection.setReadTimeout(timeoutMillis);
+        return connection;
+    }
+
+    /**
+     * opens a response body, a body is opened a second time when its Quotes come before its
+     * Places. closing the body releases anything kept for opening it again
+     */
+    interface Body extends Closeable {
+        InputStream open() throws IOException;
+
+        @Override
+        default void close() throws IOException {
+        }
+    }
+
+    /**
+     * returns a body that is first the already opened response, copied to a temporary file
+     * while it is read, and then that file every time it is opened again. the response is
+     * requested once and the file is deleted when the body is closed
+     * @param first
+     * @return
+     * @throws IOException if the file cannot be created
+     */
+    static Body spooling(InputStream first) throws IOException {
+        Path spool = Files.createTempFile("quotes", ".json");
+        OutputStream copy;
+        try {
+            copy = Files.newOutputStream(spool);
+        } catch(IOException e) {
+            Files.deleteIfExists(spool);
+            throw e;
+        }
+        return new Body() {
+            private boolean opened;
+            private boolean copied;
+
+            @Override
+            public InputStream open() throws IOException {
+                if(!opened) {
+                    opened = true;
+                    return new TeeInputStream(first, copy);
+                }
+                if(!copied) {
+                    // the first pass can stop before the end, the rest of the response is copied now
+                    byte[] chunk = new byte[8192];
+                    int read;
+                    while((read = first.read(chunk)) != -1) {
+                        copy.write(chunk, 0, read);
+                    }
+                    copy.close();
+                    copied = true;
+                }
+                return Files.newInputStream(spool);
+            }
+
+            @Override
+            public void close() throws IOException {
+                try {
+                    copy.close();
+                } finally {
+                    Files.deleteIfExists(spool);
+                }
+            }
+        };
+    }
+
+    /**
+     * reads from in and writes every byte read to copy, closing it leaves in open
+     */
+    private static class TeeInputStream extends FilterInputStream {
+        private final OutputStream copy;
+
+        TeeInputStream(InputStream in, OutputStream copy) {
+            super(in);
+            this.copy = copy;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = in.read();
+            if(b != -1) {
+                copy.write(b);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int read = in.read(b, off, len);
+            if(read > 0) {
+                copy.write(b, off, read);
+            }
+            return read;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            // skipped bytes still have to reach the copy
+            byte[] chunk = new byte[(int) Math.min(n, 8192)];
+            long skipped = 0;
+            int read;
+            while(skipped < n && (read = read(chunk, 0, (int) Math.min(chunk.length, n - skipped))) > 0) {
+                skipped += read;
+            }
+            return skipped;
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    /**
+     * parses body for quotes and places and hands every quote whose origin and destination
+     * are in cityToVertex to sink. a quote can only be mapped once the places are known, so
+     * when the Quotes section comes first, which is how the api orders it, the first pass
+     * skips the quotes and reads the places and a second pass over a reopened body streams
+     * the quotes. nothing but the places is held in memory, at the price of reading the
+     * body twice, see spooling
+     * @param body
+     * @param cityToVertex
+     * @param sink
+     * @return the number of quotes handed to sink
+     * @throws IOException
+     */
+    int parseJsonBody(Body body, HashMap<String, Integer> cityToVertex, QuoteSink sink) throws IOException {
+        long start = Metrics.ENABLED ? System.nanoTime() : 0;
         JsonFactory factory = new JsonFactory();
-        JsonParser parser = factory.createParser(source);
+        QuoteStream stream = new QuoteStream(cityToVertex, sink);
 
-        while (!parser.isClosed()) {
+        boolean quotesParsed = false, quotesSkipped = false, placesParsed = false;
+        try(InputStream source = body.open(); JsonParser parser = factory.createParser(source)) {
             JsonToken token = parser.nextToken();
-            boolean quotesParsed = false, placesParsed = false;
-            while (token != null && !(quotesParsed && placesParsed)) {
+            while(token != null && !(placesParsed && (quotesParsed || quotesSkipped))) {
                 token = parser.nextToken();
-                if(JsonToken.FIELD_NAME.equals(token) && "Quotes".equals(parser.getCurrentName())) {
-                    parseQuotes(parser);
-                    quotesParsed = true;
+                if(JsonToken.FIELD_NAME.equals(token) && "Quotes".equals(parser.getCurrentName()) && !quotesParsed && !quotesSkipped) {
+                    if(placesParsed) {
+                        parseQuotes(parser, stream);
+                        quotesParsed = true;
+                    } else {
+                        parser.nextToken();
+                        parser.skipChildren();
+                        quotesSkipped = true;
+                    }
                 }
-                if(JsonToken.FIELD_NAME.equals(token) && "Places".equals(parser.getCurrentName())) {
+                if(JsonToken.FIELD_NAME.equals(token) && "Places".equals(parser.getCurrentName()) && !placesParsed) {
                     parsePlaces(parser);
                     placesParsed = true;
                 }
             }
-            parser.close();
         }
+        if(quotesSkipped) {
+            try(InputStream source = body.open(); JsonParser parser = factory.createParser(source)) {
+                JsonToken token = parser.nextToken();
+                while(token != null) {
+                    token = parser.nextToken();
+                    if(JsonToken.FIELD_NAME.equals(token) && "Quotes".equals(parser.getCurrentName())) {
+                        parseQuotes(parser, stream);
+                        break;
+                    }
+                }
+            }
+        }
+        if(Metrics.ENABLED) {
+            Metrics.PARSE_NANOS.record(System.nanoTime() - start);
+            Metrics.QUOTES_DELIVERED.add(stream.delivered);
+            Metrics.QUOTES_DROPPED.add(stream.dropped);
+        }
+        return stream.delivered;
     }
 
     /**
@@ -82,9 +308,10 @@ public class SkyScannerAPI {
     /**
      * parses the quotes from the response json
      * @param parser
+     * @param stream
      * @throws IOException
      */
-    private void parseQuotes(JsonParser parser) throws IOException {
+    private void parseQuotes(JsonParser parser, QuoteStream stream) throws IOException {
         JsonToken token = parser.nextToken();
         double cost = -1;
         int origin = -1, dest;
@@ -111,8 +338,7 @@ public class SkyScannerAPI {
                 token = parser.nextToken();
                 dest = parser.getIntValue();
                 if (origin > 0 && dest > 0 && cost > 0) {
-                    Quote q = new Quote(origin, dest, cost);
-                    quotes.add(q);
+                    stream.quote(origin, dest, cost);
                     origin = dest = -1;
                     cost = -1;
                 }
@@ -121,81 +347,119 @@ public class SkyScannerAPI {
     }
 
     /**
-     * takes a map of City Names to vertices so the function can return an
-     * InputStream in the valid format for GeoMap.neighborsFromStream
+     * requests this month's quotes and hands every quote between two cities in
+     * cityToVertex straight to sink, no text or quote list is built in between
      * @param cityToVertex
-     * @return
+     * @param sink
+     * @return false if the request failed
      * @throws IOException
      */
-    public InputStream getQuotes(HashMap<String, Integer> cityToVertex) throws IOException {
-        Date today = new Date();
-        SimpleDateFormat datelocale = new SimpleDateFormat("yyyy-MM");
-        String params = "US/USD/en-US/US/US/" + datelocale.format(today) + "/?apiKey=<API-KEY-HERE>";
-        HttpURLConnection connection = (HttpURLConnection) new URL(url + path + params).openConnection();
-
-        connection.setRequestMethod("GET");
-        connection.setRequestProperty("Content-Type", "application/x-www-form-urlencoded");
-        connection.setRequestProperty("Accept", "application/json");
+    @Override
+    public boolean streamQuotes(HashMap<String, Integer> cityToVertex, QuoteSink sink) throws IOException {
+        String params = quoteParams("US", currentMonth());
+        if(quoteCache != null) {
+            byte[] body = quoteCache.get(params, this::download);
+            if(body == null) {
+                return false;
+            }
+            parseJsonBody(() -> new ByteArrayInputStream(body), cityToVertex, sink);
+            return true;
+        }
+        long start = Metrics.ENABLED ? System.nanoTime() : 0;
+        String requestUrl = quoteUrl(params);
+        HttpURLConnection connection = openGet(requestUrl, TIMEOUT_MILLIS);
 
         int responseCode = connection.getResponseCode();
+        if(Metrics.ENABLED) {
+            // streamed bodies are read while parsing, so this only covers the time to the headers
+            Metrics.HTTP_NANOS.record(System.nanoTime() - start);
+        }
         if(responseCode != 200) {
             System.err.println("Get request failed with error code " + responseCode);
-            return null;
+            return false;
         }
 
-        parseJsonBody(connection.getInputStream());
-        String output = "";
-        for(Quote q : quotes) {
-            Integer c1 = cityToVertex.get(apiIdToName.get(q.getOrigin()));
-            Integer c2 = cityToVertex.get(apiIdToName.get(q.getDestination()));
-            if(c1 != null && c2 != null) {
-                output += (c1+1) + " " + (c2+1) + " " + q.getCost() + '\n';
-            }
+        try(InputStream in = connection.getInputStream(); Body body = spooling(in)) {
+            parseJsonBody(body, cityToVertex, sink);
         }
-        return new ByteArrayInputStream(output.getBytes("UTF-8"));
+        return true;
     }
-}
-
-class Quote {
-    private final int origin;
-    private final int destination;
-    private final double cost;
 
     /**
-     * creates a quote with the PlaceIDs from the skyscanner response for both
-     * origin and destination and it holds the cost for the flight
-     * @param origin
-     * @param destination
-     * @param cost
+     * requests params and returns the whole response body
+     * @param params
+     * @return the body, or null if the request failed
+     * @throws IOException
      */
-    Quote(int origin, int destination, double cost) {
-        this.origin = origin;
-        this.destination = destination;
-        this.cost = cost;
+    private byte[] download(String params) throws IOException {
+        long start = Metrics.ENABLED ? System.nanoTime() : 0;
+        HttpURLConnection connection = openGet(quoteUrl(params), TIMEOUT_MILLIS);
+        int responseCode = connection.getResponseCode();
+        if(responseCode != 200) {
+            System.err.println("Get request failed with error code " + responseCode);
+            return null;
+        }
+        try(InputStream body = connection.getInputStream()) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] chunk = new byte[8192];
+            int read;
+            while((read = body.read(chunk)) != -1) {
+                out.write(chunk, 0, read);
+            }
+            if(Metrics.ENABLED) {
+                Metrics.HTTP_NANOS.record(System.nanoTime() - start);
+            }
+            return out.toByteArray();
+        }
     }
 
     /**
-     * returns the origin placeID
+     * takes a map of City Names to vertices so the function can return an
+     * InputStream in the valid format for GeoMap.neighborsFromStream
+     * @param cityToVertex
      * @return
+     * @throws IOException
      */
-    public int getOrigin() {
-        return origin;
+    public InputStream getQuotes(HashMap<String, Integer> cityToVertex) throws IOException {
+        StringBuilder output = new StringBuilder();
+        boolean ok = streamQuotes(cityToVertex, (c1, c2, cost) ->
+                output.append(c1 + 1).append(' ').append(c2 + 1).append(' ').append(cost).append('\n'));
+        if(!ok) {
+            return null;
+        }
+        return new ByteArrayInputStream(output.toString().getBytes("UTF-8"));
     }
 
     /**
-     * returns the destination PlaceID
-     * @return
+     * maps the PlaceIds of each quote to vertices and passes it on to the sink, the places
+     * must be parsed before the first quote
      */
-    public int getDestination() {
-        return destination;
-    }
+    private class QuoteStream {
+        private final HashMap<String, Integer> cityToVertex;
+        private final QuoteSink sink;
+        int delivered = 0;
+        int dropped = 0;
 
-    /**
-     * returns the cost to travel between origin and destination
-     * @return
-     */
-    public double getCost() {
-        return cost;
+        QuoteStream(HashMap<String, Integer> cityToVertex, QuoteSink sink) {
+            this.cityToVertex = cityToVertex;
+            this.sink = sink;
+        }
+
+        /**
+         * takes one quote by PlaceId
+         * @param origin
+         * @param destination
+         * @param cost
+         */
+        void quote(int origin, int destination, double cost) {
+            Integer c1 = cityToVertex.get(apiIdToName.get(origin));
+            Integer c2 = cityToVertex.get(apiIdToName.get(destination));
+            if(c1 != null && c2 != null) {
+                sink.accept(c1, c2, cost);
+                delivered++;
+            } else {
+                dropped++;
+            }
+        }
     }
 }
-
@@ -0,0 +1,224 @@
+import java.util.PriorityQueue;
+
+/**
+ * a k-d tree over the cities that have coordinates, for finding the cities nearest
+ * to a point. latitude and longitude are projected onto a plane with longitudes
+ * shrunk by the cosine of the mean latitude, which keeps the order of distances
+ * right within a country. the tree is stored implicitly in one array: the median
+ * of every range splits it, alternating between x and y with the depth
+ */
+class SpatialIndex {
+    private final int[] vertices;
+    private final double[] xs;
+    private final double[] ys;
+    private final double cosLatitude;
+
+    private SpatialIndex(int[] vertices, double[] xs, double[] ys, double cosLatitude) {
+        this.vertices = vertices;
+        this.xs = xs;
+        this.ys = ys;
+        this.cosLatitude = cosLatitude;
+    }
+
+    /**
+     * indexes every vertex whose latitude and longitude are not NaN
+     * @param latitudes indexed by vertex
+     * @param longitudes indexed by vertex
+     * @return
+     */
+    static SpatialIndex build(double[] latitudes, double[] longitudes) {
+        int count = 0;
+        double latitudeSum = 0;
+        for(int v = 0; v < latitudes.length; v++) {
+            if(!Double.isNaN(latitudes[v]) && !Double.isNaN(longitudes[v])) {
+                count++;
+                latitudeSum += latitudes[v];
+            }
+        }
+        double cosLatitude = count == 0 ? 1 : Math.cos(Math.toRadians(latitudeSum / count));
+        int[] vertices = new int[count];
+        double[] xs = new double[count];
+        double[] ys = new double[count];
+        int i = 0;
+        for(int v = 0; v < latitudes.length; v++) {
+            if(!Double.isNaN(latitudes[v]) && !Double.isNaN(longitudes[v])) {
+                vertices[i] = v;
+                xs[i] = longitudes[v] * cosLatitude;
+                ys[i] = latitudes[v];
+                i++;
+            }
+        }
+        SpatialIndex index = new SpatialIndex(vertices, xs, ys, cosLatitude);
+        index.split(0, count, 0);
+        return index;
+    }
+
+    /**
+     * orders [from, to) so the median on the axis of depth sits in the middle with
+     * smaller points before it and larger ones after, then does the same for each half
+     */
+    private void split(int from, int to, int depth) {
+        if(to - from < 2) {
+            return;
+        }
+        double[] axis = depth % 2 == 0 ? xs : ys;
+        int middle = (from + to) >>> 1;
+        // quickselect the median into middle
+        int lo = from;
+        int hi = to - 1;
+        while(lo < hi) {
+            double pivot = axis[(lo + hi) >>> 1];
+            int i = lo;
+            int j = hi;
+            while(i <= j) {
+                while(axis[i] < pivot) {
+                    i++;
+                }
+                while(axis[j] > pivot) {
+                    j--;
+                }
+                if(i <= j) {
+                    swap(i++, j--);
+                }
+            }
+            if(middle <= j) {
+                hi = j;
+            } else if(middle >= i) {
+                lo = i;
+            } else {
+                break;
+            }
+        }
+        split(from, middle, depth + 1);
+        split(middle + 1, to, depth + 1);
+    }
+
+    private void swap(int i, int j) {
+        int vertex = vertices[i];
+        vertices[i] = vertices[j];
+        vertices[j] = vertex;
+        double x = xs[i];
+        xs[i] = xs[j];
+        xs[j] = x;
+        double y = ys[i];
+        ys[i] = ys[j];
+        ys[j] = y;
+    }
+
+    /**
+     * returns the number of indexed cities
+     * @return
+     */
+    public int size() {
+        return vertices.length;
+    }
+
+    /**
+     * returns up to k indexed vertices nearest to the point, nearest first
+     * @param latitude
+     * @param longitude
+     * @param k
+     * @return
+     */
+    public int[] nearest(double latitude, double longitude, int k) {
+        k = Math.min(k, vertices.length);
+        if(k <= 0) {
+            return new int[0];
+        }
+        double qx = longitude * cosLatitude;
+        double qy = latitude;
+        // the head is the farthest of the k nearest found so far, entries are {squared distance, position}
+        PriorityQueue<double[]> best = new PriorityQueue<>(k + 1, (double[] a, double[] b) -> Double.compare(b[0], a[0]));
+        search(0, vertices.length, 0, qx, qy, k, best);
+        int[] nearest = new int[best.size()];
+        for(int i = nearest.length - 1; i >= 0; i--) {
+            nearest[i] = vertices[(int) best.poll()[1]];
+        }
+        return nearest;
+    }
+
+    private void search(int from, int to, int depth, double qx, double qy, int k, PriorityQueue<double[]> best) {
+        if(from >= to) {
+            return;
+        }
+        int middle = (from + to) >>> 1;
+        double dx = xs[middle] - qx;
+        double dy = ys[middle] - qy;
+        double squared = dx * dx + dy * dy;
+        if(best.size() < k) {
+            best.add(new double[] {squared, middle});
+        } else if(squared < best.peek()[0]) {
+            best.poll();
+            best.add(new double[] {squared, middle});
+        }
+        double offset = depth % 2 == 0 ? qx - xs[middle] : qy - ys[middle];
+        // the side of the split holding the point first, the other side only if it can hold something nearer
+        if(offset < 0) {
+            search(from, middle, depth + 1, qx, qy, k, best);
+            if(best.size() < k || offset * offset < best.peek()[0]) {
+                search(middle + 1, to, depth + 1, qx, qy, k, best);
+            }
+        } else {
+            search(middle + 1, to, depth + 1, qx, qy, k, best);
+            if(best.size() < k || offset * offset < best.peek()[0]) {
+                search(from, middle, depth + 1, qx, qy, k, best);
+            }
+        }
+    }
+
+    /**
+     * returns the weighted geometric median of the points, the point with the smallest
+     * weighted sum of straight line distances to them, with Weiszfeld's iteration
+     * started from the weighted mean. points with a NaN coordinate are skipped
+     * @param latitudes
+     * @param longitudes
+     * @param weights
+     * @return {latitude, longitude}, or null if no point has coordinates
+     */
+    double[] geometricMedian(double[] latitudes, double[] longitudes, int[] weights) {
+        double meanX = 0;
+        double meanY = 0;
+        double totalWeight = 0;
+        for(int i = 0; i < latitudes.length; i++) {
+            if(!Double.isNaN(latitudes[i]) && !Double.isNaN(longitudes[i])) {
+                meanX += weights[i] * longitudes[i] * cosLatitude;
+                meanY += weights[i] * latitudes[i];
+                totalWeight += weights[i];
+            }
+        }
+        if(totalWeight == 0) {
+            return null;
+        }
+        double x = meanX / totalWeight;
+        double y = meanY / totalWeight;
+        for(int iteration = 0; iteration < 100; iteration++) {
+            double sumX = 0;
+            double sumY = 0;
+            double sumWeight = 0;
+            for(int i = 0; i < latitudes.length; i++) {
+                if(Double.isNaN(latitudes[i]) || Double.isNaN(longitudes[i])) {
+                    continue;
+                }
+                double px = longitudes[i] * cosLatitude;
+                double py = latitudes[i];
+                double distance = Math.hypot(px - x, py - y);
+                if(distance < 1e-12) {
+                    // sitting on a point, which is where the iteration would stall anyway
+                    return new double[] {py, px / cosLatitude};
+                }
+                sumX += weights[i] * px / distance;
+                sumY += weights[i] * py / distance;
+                sumWeight += weights[i] / distance;
+            }
+            double nextX = sumX / sumWeight;
+            double nextY = sumY / sumWeight;
+            boolean converged = Math.hypot(nextX - x, nextY - y) < 1e-9;
+            x = nextX;
+            y = nextY;
+            if(converged) {
+                break;
+            }
+        }
+        return new double[] {y, x / cosLatitude};
+    }
+}
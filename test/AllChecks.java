@@ -0,0 +1,28 @@
+/**
+ * runs every check suite and exits non zero if any of them failed
+ */
+class AllChecks {
+    public static void main(String[] args) {
+        int failed = 0;
+        failed += DynamicMidpointChecks.run();
+        failed += MultiObjectiveChecks.run();
+        failed += ContractionHierarchyChecks.run();
+        failed += ParticipantStoreChecks.run();
+        failed += GraphFileChecks.run();
+        failed += MidpointSolverChecks.run();
+        failed += IndexedMinHeapChecks.run();
+        failed += CsrGraphChecks.run();
+        failed += RecordParserChecks.run();
+        failed += AltSearchChecks.run();
+        failed += PopulationChecks.run();
+        failed += QuoteFetcherChecks.run();
+        failed += QuoteCacheChecks.run();
+        failed += EdgeMergePolicyChecks.run();
+        failed += MidpointServerChecks.run();
+        failed += TopKChecks.run();
+        failed += SpatialIndexChecks.run();
+        failed += RunWithinChecks.run();
+        failed += MetricsChecks.run();
+        System.exit(failed == 0 ? 0 : 1);
+    }
+}
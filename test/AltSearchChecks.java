@@ -0,0 +1,114 @@
+import com.sun.tools.javac.util.Pair;
+
+import java.util.Random;
+
+/**
+ * checks the landmark lower bounds against a full search, AltSearch's point to point
+ * distances and bounded weighted totals, and that the landmark pruned midpoint is the
+ * baseline midpoint with or without seeds
+ */
+class AltSearchChecks {
+    public static void main(String[] args) {
+        System.exit(run() == 0 ? 0 : 1);
+    }
+
+    static int run() {
+        Checks checks = new Checks("AltSearch");
+        Random random = new Random(17);
+        for(int round = 0; round < 60; round++) {
+            round(checks, random);
+        }
+        return checks.finish();
+    }
+
+    private static void round(Checks checks, Random random) {
+        int size = 1 + random.nextInt(50);
+        boolean connected = random.nextInt(3) > 0;
+        String distances = Checks.cityDistances(size, 1 + random.nextInt(4), connected, random);
+        String people = Checks.participants(size, 1 + random.nextInt(10), random);
+        GeoMap map = Checks.map(Checks.cityNames(size), distances, people);
+        map.compact();
+        CsrGraph graph = map.getGraph();
+        double[][] weights = Checks.adjacency(size, distances);
+        double[][] reference = new double[size][];
+        for(int v = 0; v < size; v++) {
+            reference[v] = Checks.referenceDistances(weights, v);
+        }
+
+        Landmarks landmarks = Landmarks.select(graph, 1 + random.nextInt(6));
+        for(int u = 0; u < size; u++) {
+            for(int v = 0; v < size; v++) {
+                double bound = landmarks.lowerBound(u, v);
+                if(bound == Double.MAX_VALUE) {
+                    checks.same(Double.MAX_VALUE, reference[u][v], "only unconnected vertices are bounded out: " + u + " " + v);
+                } else {
+                    checks.check(bound <= reference[u][v], "lower bound " + bound + " of " + u + " " + v + " is at most " + reference[u][v]);
+                }
+            }
+        }
+
+        AltSearch search = new AltSearch(landmarks);
+        for(int i = 0; i < 20; i++) {
+            int from = random.nextInt(size);
+            int to = random.nextInt(size);
+            checks.close(reference[from][to], search.distance(from, to), "distance from " + from + " to " + to);
+        }
+
+        int count = 1 + random.nextInt(Math.min(size, 6));
+        int[] origins = new int[count];
+        int[] sizes = new int[count];
+        boolean[] used = new boolean[size];
+        for(int i = 0; i < count; i++) {
+            do {
+                origins[i] = random.nextInt(size);
+            } while(used[origins[i]]);
+            used[origins[i]] = true;
+            sizes[i] = 1 + random.nextInt(4);
+        }
+        for(int i = 0; i < 10; i++) {
+            int from = random.nextInt(size);
+            double exact = 0;
+            for(int o = 0; o < count && exact < Double.MAX_VALUE; o++) {
+                exact = reference[origins[o]][from] == Double.MAX_VALUE ? Double.MAX_VALUE : exact + sizes[o] * reference[origins[o]][from];
+            }
+            checks.close(exact, search.weightedTotal(from, origins, sizes, Double.MAX_VALUE), "unbounded total at " + from);
+            double bound = exact == Double.MAX_VALUE ? random.nextInt(500) : exact * (0.5 + random.nextDouble());
+            double total = search.weightedTotal(from, origins, sizes, bound);
+            if(total == Double.MAX_VALUE) {
+                checks.check(exact >= bound * (1 - 1e-9), "a total of " + exact + " under " + bound + " is not given up at " + from);
+            } else {
+                checks.close(exact, total, "bounded total at " + from);
+            }
+        }
+
+        double[][] rows = new double[count][];
+        for(int i = 0; i < count; i++) {
+            rows[i] = reference[origins[i]];
+        }
+        double best = Checks.referenceMinAverage(rows, sizes);
+        MidpointSolver solver = new MidpointSolver(graph);
+        int[] seeds = {random.nextInt(size), random.nextInt(size)};
+        for(int[] seed : new int[][] {new int[0], seeds}) {
+            Midpoint midpoint = solver.prunedMin(origins, sizes, landmarks, seed, v -> "C" + v);
+            if(best == Double.MAX_VALUE) {
+                checks.check(midpoint == null, "no pruned midpoint when nobody can meet");
+            } else {
+                checks.check(midpoint != null, "a pruned midpoint when everybody can meet");
+                if(midpoint != null) {
+                    checks.close(best, midpoint.getAverage(), "pruned minimum average with " + seed.length + " seeds");
+                }
+            }
+        }
+
+        Pair<String, Double> plain = map.findMinAvgDistance();
+        map.selectLandmarks(1 + random.nextInt(6));
+        Pair<String, Double> pruned = map.findMinAvgDistance();
+        checks.check((plain == null) == (pruned == null), "a midpoint with landmarks only when there is one without");
+        if(plain != null && pruned != null) {
+            checks.close(plain.snd, pruned.snd, "the midpoint average with landmarks");
+        }
+        int from = random.nextInt(size);
+        int to = random.nextInt(size);
+        checks.close(reference[from][to], map.distanceBetween(from, to), "distanceBetween with landmarks");
+    }
+}
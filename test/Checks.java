@@ -0,0 +1,224 @@
+import java.io.ByteArrayInputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * a tiny harness for the differential checks in this directory, there is no test
+ * framework on the classpath. every check class has a main that runs its cases and
+ * exits non zero if any failed. compile the checks together with src and run them with
+ * the javac util export the GeoMap Pair needs:
+ *
+ * javac -cp jackson-core-2.8.2.jar -d out src/*.java test/*.java
+ * cp -r src/Resources out/
+ * java --add-exports jdk.compiler/com.sun.tools.javac.util=ALL-UNNAMED -cp out:jackson-core-2.8.2.jar AllChecks
+ */
+class Checks {
+    private final String suite;
+    private int passed;
+    private int failed;
+
+    Checks(String suite) {
+        this.suite = suite;
+    }
+
+    /**
+     * records a failure with message unless condition holds
+     * @param condition
+     * @param message
+     */
+    void check(boolean condition, String message) {
+        if(condition) {
+            passed++;
+        } else {
+            failed++;
+            if(failed <= 20) {
+                System.out.println(suite + " FAILED: " + message);
+            }
+        }
+    }
+
+    /**
+     * records a failure unless actual is exactly expected, Double.MAX_VALUE included
+     * @param expected
+     * @param actual
+     * @param message
+     */
+    void same(double expected, double actual, String message) {
+        check(Double.compare(expected, actual) == 0, message + ": expected " + expected + " but was " + actual);
+    }
+
+    /**
+     * records a failure unless actual is within a relative tolerance of expected
+     * @param expected
+     * @param actual
+     * @param message
+     */
+    void close(double expected, double actual, String message) {
+        boolean ok = expected == actual || Math.abs(expected - actual) <= 1e-9 * Math.max(Math.abs(expected), Math.abs(actual));
+        check(ok, message + ": expected " + expected + " but was " + actual);
+    }
+
+    /**
+     * prints the totals and returns the number of failures
+     * @return
+     */
+    int finish() {
+        System.out.println(suite + ": " + passed + " passed, " + failed + " failed");
+        return failed;
+    }
+
+    static InputStreamReader reader(String text) {
+        return new InputStreamReader(new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8)), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * returns a CityNames file with size cities called C0, C1, ...
+     * @param size
+     * @return
+     */
+    static String cityNames(int size) {
+        StringBuilder out = new StringBuilder().append(size).append('\n');
+        for(int v = 0; v < size; v++) {
+            out.append('C').append(v).append('\n');
+        }
+        return out.toString();
+    }
+
+    /**
+     * returns a CityDistances file of a random graph, a spanning tree when connected and
+     * about degree edges per city, some of them parallel and some of weight zero
+     * @param size
+     * @param degree
+     * @param connected
+     * @param random
+     * @return
+     */
+    static String cityDistances(int size, int degree, boolean connected, Random random) {
+        StringBuilder out = new StringBuilder("0\n");
+        if(connected) {
+            for(int v = 1; v < size; v++) {
+                out.append(v + 1).append(' ').append(random.nextInt(v) + 1).append(' ').append(weight(random)).append('\n');
+            }
+        }
+        for(int e = 0; e < size * degree / 2; e++) {
+            out.append(random.nextInt(size) + 1).append(' ').append(random.nextInt(size) + 1).append(' ').append(weight(random)).append('\n');
+        }
+        return out.toString();
+    }
+
+    private static double weight(Random random) {
+        return random.nextInt(8) == 0 ? random.nextInt(3) : 1 + random.nextInt(100) + random.nextInt(4) * 0.25;
+    }
+
+    /**
+     * returns a Participants file with count people spread over size cities
+     * @param size
+     * @param count
+     * @param random
+     * @return
+     */
+    static String participants(int size, int count, Random random) {
+        StringBuilder out = new StringBuilder().append(count).append('\n');
+        for(int i = 0; i < count; i++) {
+            out.append('P').append(i).append(' ').append(random.nextInt(size) + 1).append('\n');
+        }
+        return out.toString();
+    }
+
+    /**
+     * returns the lightest edge between every two cities of a CityDistances file as a
+     * matrix, Double.MAX_VALUE where there is none
+     * @param size
+     * @param distances
+     * @return
+     */
+    static double[][] adjacency(int size, String distances) {
+        double[][] weights = new double[size][size];
+        for(double[] row : weights) {
+            Arrays.fill(row, Double.MAX_VALUE);
+        }
+        String[] lines = distances.split("\n");
+        for(int i = 1; i < lines.length; i++) {
+            String[] fields = lines[i].trim().split(" +");
+            if(fields.length < 3) {
+                continue;
+            }
+            int a = Integer.parseInt(fields[0]) - 1;
+            int b = Integer.parseInt(fields[1]) - 1;
+            double w = Double.parseDouble(fields[2]);
+            weights[a][b] = Math.min(weights[a][b], w);
+            weights[b][a] = Math.min(weights[b][a], w);
+        }
+        return weights;
+    }
+
+    /**
+     * returns the shortest distances from origin over an adjacency matrix, Double.MAX_VALUE for no edge
+     * @param weights
+     * @param origin
+     * @return
+     */
+    static double[] referenceDistances(double[][] weights, int origin) {
+        int size = weights.length;
+        double[] dist = new double[size];
+        boolean[] done = new boolean[size];
+        Arrays.fill(dist, Double.MAX_VALUE);
+        dist[origin] = 0;
+        for(int round = 0; round < size; round++) {
+            int u = -1;
+            for(int v = 0; v < size; v++) {
+                if(!done[v] && dist[v] < Double.MAX_VALUE && (u < 0 || dist[v] < dist[u])) {
+                    u = v;
+                }
+            }
+            if(u < 0) {
+                break;
+            }
+            done[u] = true;
+            for(int v = 0; v < size; v++) {
+                if(weights[u][v] < Double.MAX_VALUE && dist[u] + weights[u][v] < dist[v]) {
+                    dist[v] = dist[u] + weights[u][v];
+                }
+            }
+        }
+        return dist;
+    }
+
+    /**
+     * returns the lowest average distance of sizes[i] people at origins[i] over the candidates
+     * reachable by all of them, or Double.MAX_VALUE if there is none
+     * @param rows the reference distances from each origin
+     * @param sizes
+     * @return
+     */
+    static double referenceMinAverage(double[][] rows, int[] sizes) {
+        double best = Double.MAX_VALUE;
+        int total = 0;
+        for(int size : sizes) {
+            total += size;
+        }
+        for(int v = 0; rows.length > 0 && v < rows[0].length; v++) {
+            double sum = 0;
+            for(int i = 0; i < rows.length && sum < Double.MAX_VALUE; i++) {
+                sum = rows[i][v] == Double.MAX_VALUE ? Double.MAX_VALUE : sum + sizes[i] * rows[i][v];
+            }
+            if(sum < Double.MAX_VALUE) {
+                best = Math.min(best, sum / total);
+            }
+        }
+        return best;
+    }
+
+    /**
+     * returns a map of the given files, not compacted
+     */
+    static GeoMap map(String names, String distances, String people) {
+        GeoMap map = new GeoMap();
+        map.citiesFromStream(reader(names));
+        map.neighborsFromStream(reader(distances), distance -> distance);
+        map.populateFromStream(reader(people));
+        return map;
+    }
+}
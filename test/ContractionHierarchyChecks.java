@@ -0,0 +1,104 @@
+import com.sun.tools.javac.util.Pair;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+/**
+ * checks ContractionHierarchy's point to point and one to many distances against a full
+ * search, that the midpoint does not change once a hierarchy is used, that a hierarchy
+ * survives a write and read, and that a file of other edges is refused
+ */
+class ContractionHierarchyChecks {
+    public static void main(String[] args) {
+        System.exit(run() == 0 ? 0 : 1);
+    }
+
+    static int run() {
+        Checks checks = new Checks("ContractionHierarchy");
+        Random random = new Random(16);
+        try {
+            Path file = Files.createTempFile("hierarchy", ".ch");
+            try {
+                for(int round = 0; round < 80; round++) {
+                    round(checks, random, file);
+                }
+                staleFile(checks, random, file);
+            } finally {
+                Files.deleteIfExists(file);
+            }
+        } catch(IOException e) {
+            checks.check(false, "io: " + e);
+        }
+        return checks.finish();
+    }
+
+    private static void round(Checks checks, Random random, Path file) throws IOException {
+        int size = 1 + random.nextInt(60);
+        boolean connected = random.nextBoolean();
+        String distances = Checks.cityDistances(size, 1 + random.nextInt(4), connected, random);
+        GeoMap map = Checks.map(Checks.cityNames(size), distances, Checks.participants(size, 1 + random.nextInt(8), random));
+        map.compact();
+        double[][] weights = Checks.adjacency(size, distances);
+        ContractionHierarchy ch = ContractionHierarchy.build(map.getGraph());
+        checks.check(ch.matches(map.getGraph()), "a hierarchy matches the graph it was built from");
+        for(int i = 0; i < 4; i++) {
+            int origin = random.nextInt(size);
+            double[] expected = Checks.referenceDistances(weights, origin);
+            double[] actual = ch.distancesFrom(origin);
+            for(int v = 0; v < size; v++) {
+                checks.close(expected[v], actual[v], "one to many from " + origin + " to " + v);
+                checks.close(expected[v], ch.distance(origin, v), "point to point from " + origin + " to " + v);
+            }
+        }
+
+        ch.write(file);
+        ContractionHierarchy read = ContractionHierarchy.read(file);
+        checks.check(read.matches(map.getGraph()), "a read hierarchy matches the graph it was built from");
+        checks.check(read.getEdgeCount() == ch.getEdgeCount(), "a read hierarchy has the same edges");
+        int from = random.nextInt(size);
+        int to = random.nextInt(size);
+        checks.same(ch.distance(from, to), read.distance(from, to), "a read hierarchy gives the same distance");
+
+        Pair<String, Double> plain = map.findMinAvgDistance();
+        map.useContractionHierarchy(read);
+        Pair<String, Double> contracted = map.findMinAvgDistance();
+        checks.check((plain == null) == (contracted == null), "a midpoint with a hierarchy only when there is one without");
+        if(plain != null && contracted != null) {
+            checks.close(plain.snd, contracted.snd, "the midpoint average with a hierarchy");
+        }
+    }
+
+    /**
+     * a hierarchy written for one set of edges must not be used for a map with the same
+     * cities and as many edges of different weights
+     */
+    private static void staleFile(Checks checks, Random random, Path file) throws IOException {
+        int size = 30;
+        String distances = Checks.cityDistances(size, 3, true, random);
+        GeoMap map = Checks.map(Checks.cityNames(size), distances, Checks.participants(size, 5, random));
+        map.compact();
+        map.buildContractionHierarchy().write(file);
+        GeoMap changed = Checks.map(Checks.cityNames(size), distances.replaceFirst("\n(\\d+) (\\d+) [^\n]+\n", "\n$1 $2 1000\n"), "0\n");
+        changed.compact();
+        ContractionHierarchy stale = ContractionHierarchy.read(file);
+        checks.check(!stale.matches(changed.getGraph()), "a hierarchy does not match other weights");
+        boolean refused = false;
+        try {
+            changed.useContractionHierarchy(stale);
+        } catch(IllegalArgumentException e) {
+            refused = true;
+        }
+        checks.check(refused, "useContractionHierarchy refuses a hierarchy of other edges");
+
+        Files.write(file, new byte[] {0x43, 0x4F, 0x45, 0x47, 1, 0, 0, 0});
+        boolean rejected = false;
+        try {
+            ContractionHierarchy.read(file);
+        } catch(IOException e) {
+            rejected = true;
+        }
+        checks.check(rejected, "read rejects a short file");
+    }
+}
@@ -0,0 +1,151 @@
+import com.sun.tools.javac.util.Pair;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+/**
+ * checks that CsrGraph.Builder keeps every edge under its source in the order it was
+ * added, and that a compact GeoMap finds the same distances and midpoint as a full
+ * search over the edges it was loaded from, and the same as before compacting, and that
+ * edits to a copied map leave the original alone
+ */
+class CsrGraphChecks {
+    public static void main(String[] args) {
+        System.exit(run() == 0 ? 0 : 1);
+    }
+
+    static int run() {
+        Checks checks = new Checks("CsrGraph");
+        Random random = new Random(1);
+        for(int round = 0; round < 60; round++) {
+            builder(checks, random);
+        }
+        for(int round = 0; round < 60; round++) {
+            compact(checks, random);
+        }
+        for(int round = 0; round < 60; round++) {
+            copy(checks, random);
+        }
+        return checks.finish();
+    }
+
+    private static void builder(Checks checks, Random random) {
+        int size = 1 + random.nextInt(50);
+        int edges = random.nextInt(size * 4);
+        int[] sources = new int[edges];
+        int[] targets = new int[edges];
+        double[] weights = new double[edges];
+        CsrGraph.Builder builder = new CsrGraph.Builder(size);
+        for(int e = 0; e < edges; e++) {
+            sources[e] = random.nextInt(size);
+            targets[e] = random.nextInt(size);
+            weights[e] = random.nextInt(100);
+            builder.addEdge(sources[e], targets[e], weights[e]);
+        }
+        CsrGraph graph = builder.build();
+        checks.check(graph.getVertexCount() == size, "vertex count");
+        checks.check(graph.getEdgeCount() == edges, "edge count");
+        for(int u = 0; u < size; u++) {
+            int e = graph.offsets[u];
+            for(int added = 0; added < edges; added++) {
+                if(sources[added] != u) {
+                    continue;
+                }
+                checks.check(e < graph.offsets[u + 1], "edge " + added + " is under vertex " + u);
+                if(e < graph.offsets[u + 1]) {
+                    checks.check(graph.targets[e] == targets[added], "target of edge " + added);
+                    checks.same(weights[added], graph.weights[e], "weight of edge " + added);
+                }
+                e++;
+            }
+            checks.check(e == graph.offsets[u + 1], "no other edges under vertex " + u);
+            checks.check(graph.degree(u) == graph.offsets[u + 1] - graph.offsets[u], "degree of " + u);
+        }
+        checks.check(new CsrGraph.Builder(graph).build().fingerprint() == graph.fingerprint(), "a builder copies a graph");
+    }
+
+    private static void compact(Checks checks, Random random) {
+        int size = 1 + random.nextInt(50);
+        boolean connected = random.nextBoolean();
+        String distances = Checks.cityDistances(size, 1 + random.nextInt(4), connected, random);
+        String people = Checks.participants(size, 1 + random.nextInt(10), random);
+        GeoMap map = Checks.map(Checks.cityNames(size), distances, people);
+        GeoMap compact = new GeoMap(map);
+        compact.compact();
+        double[][] weights = Checks.adjacency(size, distances);
+
+        int origin = random.nextInt(size);
+        double[] expected = Checks.referenceDistances(weights, origin);
+        for(int v = 0; v < size; v++) {
+            checks.close(expected[v], compact.distanceBetween(origin, v), "compact distance from " + origin + " to " + v);
+            checks.close(expected[v], map.distanceBetween(origin, v), "distance from " + origin + " to " + v);
+        }
+        int[] counts = new int[size];
+        String[] lines = people.split("\n");
+        for(int i = 1; i < lines.length; i++) {
+            counts[Integer.parseInt(lines[i].split(" ")[1]) - 1]++;
+        }
+        int populated = 0;
+        for(int count : counts) {
+            populated += count > 0 ? 1 : 0;
+        }
+        double[][] rows = new double[populated][];
+        int[] sizes = new int[populated];
+        for(int v = 0, i = 0; v < size; v++) {
+            if(counts[v] > 0) {
+                rows[i] = Checks.referenceDistances(weights, v);
+                sizes[i++] = counts[v];
+            }
+        }
+        double best = Checks.referenceMinAverage(rows, sizes);
+        Pair<String, Double> before = map.findMinAvgDistance();
+        Pair<String, Double> after = compact.findMinAvgDistance();
+        if(best == Double.MAX_VALUE) {
+            checks.check(before == null && after == null, "no midpoint when nobody can meet, not " + before + " " + after);
+            return;
+        }
+        checks.check(before != null && after != null, "a midpoint when everybody can meet");
+        if(before != null && after != null) {
+            checks.close(best, before.snd, "minimum average");
+            checks.close(best, after.snd, "compact minimum average");
+            checks.check(before.fst.equals(after.fst), "compact midpoint " + after.fst + " is " + before.fst);
+        }
+    }
+
+    private static void copy(Checks checks, Random random) {
+        int size = 2 + random.nextInt(40);
+        String distances = Checks.cityDistances(size, 1 + random.nextInt(4), random.nextBoolean(), random);
+        GeoMap map = Checks.map(Checks.cityNames(size), distances, Checks.participants(size, 1 + random.nextInt(10), random));
+        double[][] weights = Checks.adjacency(size, distances);
+        int origin = random.nextInt(size);
+        double[] expected = Checks.referenceDistances(weights, origin);
+        if(random.nextBoolean()) {
+            // the original builds its graph before the copy is made, so both could hold it
+            checks.close(expected[0], map.distanceBetween(origin, 0), "distance before copying");
+        }
+        int[] populations = new int[size];
+        for(int v = 0; v < size; v++) {
+            populations[v] = map.getPopulation(v).size();
+        }
+
+        GeoMap copy = new GeoMap(map);
+        for(int i = 0; i < 3; i++) {
+            int v1 = random.nextInt(size);
+            int v2 = random.nextInt(size);
+            copy.setEdgeWeight(v1, v2, random.nextInt(3));
+        }
+        copy.neighborsFromStream(Checks.reader("0\n1 " + size + " 0\n"), distance -> distance);
+        copy.addPerson(new Person("copied", random.nextInt(size)));
+        for(Person person : new ArrayList<>(copy.getPopulation(origin))) {
+            copy.movePerson(person, (origin + 1) % size);
+        }
+        if(random.nextBoolean()) {
+            copy.compact();
+        }
+        for(int v = 0; v < size; v++) {
+            checks.close(expected[v], map.distanceBetween(origin, v), "original distance from " + origin + " to " + v + " after editing the copy");
+            checks.check(map.getPopulation(v).size() == populations[v], "original population of " + v + " after editing the copy");
+        }
+        checks.close(0, copy.distanceBetween(0, size - 1), "the copy has its new edge");
+    }
+}
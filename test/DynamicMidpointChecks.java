@@ -0,0 +1,125 @@
+import com.sun.tools.javac.util.Pair;
+
+import java.util.Random;
+
+/**
+ * checks DynamicMidpoint's repaired distances and midpoint against a full search over
+ * the same edges after every edge increase, decrease, insert and removal, and that a
+ * GeoMap copied after live edge edits answers from the edited edges
+ */
+class DynamicMidpointChecks {
+    public static void main(String[] args) {
+        System.exit(run() == 0 ? 0 : 1);
+    }
+
+    static int run() {
+        Checks checks = new Checks("DynamicMidpoint");
+        Random random = new Random(22);
+        for(int round = 0; round < 60; round++) {
+            repairs(checks, random);
+        }
+        for(int round = 0; round < 20; round++) {
+            copyAfterLiveEdits(checks, random);
+        }
+        return checks.finish();
+    }
+
+    private static void repairs(Checks checks, Random random) {
+        int size = 2 + random.nextInt(40);
+        String distances = Checks.cityDistances(size, 3, random.nextBoolean(), random);
+        GeoMap map = Checks.map(Checks.cityNames(size), distances, "0\n");
+        map.compact();
+        double[][] weights = Checks.adjacency(size, distances);
+        DynamicMidpoint live = new DynamicMidpoint(map.getGraph());
+        int[] counts = new int[size];
+        for(int i = 0; i < 3; i++) {
+            int origin = random.nextInt(size);
+            int count = 1 + random.nextInt(3);
+            live.update(origin, count);
+            counts[origin] += count;
+        }
+        for(int step = 0; step < 40; step++) {
+            int v1 = random.nextInt(size);
+            int v2 = random.nextInt(size);
+            int op = random.nextInt(4);
+            if(op == 0 && weights[v1][v2] < Double.MAX_VALUE) {
+                // an increase
+                double weight = weights[v1][v2] + 1 + random.nextInt(50);
+                live.setEdge(v1, v2, weight);
+                set(weights, v1, v2, weight);
+            } else if(op == 1) {
+                // a decrease or a new edge
+                double weight = random.nextInt(4) == 0 ? 0 : random.nextInt(30);
+                live.setEdge(v1, v2, weight);
+                set(weights, v1, v2, weight);
+            } else if(op == 2) {
+                boolean existed = live.getWeight(v1, v2) < Double.MAX_VALUE;
+                checks.check(live.removeEdge(v1, v2) == existed, "removeEdge reports whether there was an edge");
+                checks.same(Double.MAX_VALUE, live.getWeight(v1, v2), "removeEdge leaves no edge");
+                set(weights, v1, v2, Double.MAX_VALUE);
+            } else {
+                int origin = random.nextInt(size);
+                int count = counts[origin] > 0 && random.nextBoolean() ? -counts[origin] : 1;
+                live.update(origin, count);
+                counts[origin] += count;
+            }
+            compare(checks, live, weights, counts);
+        }
+    }
+
+    private static void compare(Checks checks, DynamicMidpoint live, double[][] weights, int[] counts) {
+        int populated = 0;
+        for(int count : counts) {
+            if(count > 0) {
+                populated++;
+            }
+        }
+        double[][] rows = new double[populated][];
+        int[] sizes = new int[populated];
+        int i = 0;
+        for(int origin = 0; origin < counts.length; origin++) {
+            if(counts[origin] > 0) {
+                rows[i] = Checks.referenceDistances(weights, origin);
+                sizes[i] = counts[origin];
+                for(int v = 0; v < counts.length; v++) {
+                    checks.close(rows[i][v], live.distance(origin, v), "distance from " + origin + " to " + v);
+                }
+                i++;
+            }
+        }
+        if(populated == 0) {
+            return;
+        }
+        double expected = Checks.referenceMinAverage(rows, sizes);
+        if(expected == Double.MAX_VALUE) {
+            checks.check(live.getMinVertex() < 0, "no midpoint when nobody can meet");
+        } else {
+            checks.check(live.getMinVertex() >= 0, "a midpoint when everybody can meet");
+            if(live.getMinVertex() >= 0) {
+                checks.close(expected, live.getMinAverage(), "minimum average");
+            }
+        }
+    }
+
+    private static void copyAfterLiveEdits(Checks checks, Random random) {
+        int size = 3 + random.nextInt(30);
+        String distances = Checks.cityDistances(size, 3, true, random);
+        GeoMap map = Checks.map(Checks.cityNames(size), distances, Checks.participants(size, 1 + random.nextInt(10), random));
+        map.compact();
+        map.getLiveMidpoint();
+        for(int i = 0; i < 5; i++) {
+            map.setEdgeWeight(random.nextInt(size), random.nextInt(size), random.nextInt(40));
+        }
+        Midpoint expected = map.getLiveMidpoint();
+        GeoMap copy = new GeoMap(map);
+        Pair<String, Double> copied = copy.findMinAvgDistance();
+        checks.check(expected.getName().equals(copied.fst), "copy finds the same midpoint: " + expected + " " + copied);
+        checks.close(expected.getAverage(), copied.snd, "copy finds the same average");
+        checks.same(map.distanceBetween(0, size - 1), copy.distanceBetween(0, size - 1), "copy has the edited edges");
+    }
+
+    private static void set(double[][] weights, int v1, int v2, double weight) {
+        weights[v1][v2] = weight;
+        weights[v2][v1] = weight;
+    }
+}
@@ -0,0 +1,120 @@
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * checks that KeepMinimum and KeepLatest leave one edge per pair of cities with the
+ * weight folded from the parallel and reversed edges in the order they were loaded,
+ * whether the merge happens while loading, afterwards or in CsrGraph.Builder, with and
+ * without compact mode
+ */
+class EdgeMergePolicyChecks {
+    public static void main(String[] args) {
+        System.exit(run() == 0 ? 0 : 1);
+    }
+
+    static int run() {
+        Checks checks = new Checks("EdgeMergePolicy");
+        Random random = new Random(21);
+        for(EdgeMergePolicy policy : new EdgeMergePolicy[] {new KeepMinimum(), new KeepLatest()}) {
+            for(int round = 0; round < 60; round++) {
+                round(checks, random, policy);
+            }
+        }
+        return checks.finish();
+    }
+
+    private static void round(Checks checks, Random random, EdgeMergePolicy policy) {
+        String name = policy.getClass().getSimpleName();
+        int size = 1 + random.nextInt(20);
+        // two sources over the same cities, few cities so pairs repeat in both directions
+        String first = Checks.cityDistances(size, 2 + random.nextInt(6), random.nextBoolean(), random);
+        String second = Checks.cityDistances(size, 2 + random.nextInt(6), false, random);
+        double[][] expected = fold(size, policy, first, second);
+
+        GeoMap loading = new GeoMap();
+        loading.citiesFromStream(Checks.reader(Checks.cityNames(size)));
+        if(random.nextBoolean()) {
+            loading.compact();
+        }
+        loading.setEdgeMergePolicy(policy);
+        loading.neighborsFromStream(Checks.reader(first), distance -> distance);
+        loading.neighborsFromStream(Checks.reader(second), distance -> distance);
+        compare(checks, loading.getGraph(), expected, name + " while loading" + (loading.isCompact() ? " compact" : ""));
+
+        GeoMap after = new GeoMap();
+        after.citiesFromStream(Checks.reader(Checks.cityNames(size)));
+        after.neighborsFromStream(Checks.reader(first), distance -> distance);
+        if(random.nextBoolean()) {
+            after.compact();
+        }
+        after.neighborsFromStream(Checks.reader(second), distance -> distance);
+        after.mergeParallelEdges(policy);
+        compare(checks, after.getGraph(), expected, name + " afterwards" + (after.isCompact() ? " compact" : ""));
+
+        CsrGraph.Builder builder = new CsrGraph.Builder(size);
+        for(String file : new String[] {first, second}) {
+            for(double[] edge : edges(file)) {
+                builder.addUndirectedEdge((int) edge[0], (int) edge[1], edge[2]);
+            }
+        }
+        compare(checks, builder.build(policy), expected, name + " in the builder");
+
+        if(policy instanceof KeepMinimum) {
+            // keeping the cheapest edge changes no distance
+            double[][] weights = Checks.adjacency(size, first + second.substring(2));
+            int origin = random.nextInt(size);
+            double[] distances = Checks.referenceDistances(weights, origin);
+            for(int v = 0; v < size; v++) {
+                checks.close(distances[v], loading.distanceBetween(origin, v), name + " distance from " + origin + " to " + v);
+            }
+        }
+    }
+
+    /**
+     * returns the edges of a CityDistances file as {v1, v2, weight}, vertices from 0
+     */
+    private static double[][] edges(String file) {
+        String[] lines = file.split("\n");
+        double[][] edges = new double[lines.length - 1][];
+        for(int i = 1; i < lines.length; i++) {
+            String[] fields = lines[i].split(" ");
+            edges[i - 1] = new double[] {Integer.parseInt(fields[0]) - 1, Integer.parseInt(fields[1]) - 1, Double.parseDouble(fields[2])};
+        }
+        return edges;
+    }
+
+    /**
+     * returns the weight policy keeps between every two cities, NaN where there is no edge
+     */
+    private static double[][] fold(int size, EdgeMergePolicy policy, String... files) {
+        double[][] kept = new double[size][size];
+        for(double[] row : kept) {
+            Arrays.fill(row, Double.NaN);
+        }
+        for(String file : files) {
+            for(double[] edge : edges(file)) {
+                int a = (int) edge[0];
+                int b = (int) edge[1];
+                kept[a][b] = Double.isNaN(kept[a][b]) ? edge[2] : policy.merge(kept[a][b], edge[2]);
+                kept[b][a] = kept[a][b];
+            }
+        }
+        return kept;
+    }
+
+    private static void compare(Checks checks, CsrGraph graph, double[][] expected, String message) {
+        int size = expected.length;
+        for(int u = 0; u < size; u++) {
+            boolean[] seen = new boolean[size];
+            for(int e = graph.offsets[u]; e < graph.offsets[u + 1]; e++) {
+                int t = graph.targets[e];
+                checks.check(!seen[t], message + ": one edge from " + u + " to " + t);
+                seen[t] = true;
+                checks.same(expected[u][t], graph.weights[e], message + ": weight from " + u + " to " + t);
+            }
+            for(int t = 0; t < size; t++) {
+                checks.check(seen[t] == !Double.isNaN(expected[u][t]), message + ": an edge from " + u + " to " + t + " is kept");
+            }
+        }
+    }
+}
@@ -0,0 +1,103 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+/**
+ * checks that GraphFile gives back the graphs it wrote, that a map loaded from a
+ * snapshot finds the same distances as a full search, and that getGraph refuses
+ * offsets, targets and weights that are not a graph
+ */
+class GraphFileChecks {
+    public static void main(String[] args) {
+        System.exit(run() == 0 ? 0 : 1);
+    }
+
+    static int run() {
+        Checks checks = new Checks("GraphFile");
+        Random random = new Random(6);
+        try {
+            Path file = Files.createTempFile("graphs", ".geo");
+            try {
+                for(int round = 0; round < 40; round++) {
+                    round(checks, random, file);
+                }
+                corrupt(checks, random, file);
+            } finally {
+                Files.deleteIfExists(file);
+            }
+        } catch(IOException e) {
+            checks.check(false, "io: " + e);
+        }
+        return checks.finish();
+    }
+
+    private static void round(Checks checks, Random random, Path file) throws IOException {
+        int size = 1 + random.nextInt(50);
+        String distances = Checks.cityDistances(size, 1 + random.nextInt(4), random.nextBoolean(), random);
+        GeoMap map = Checks.map(Checks.cityNames(size), distances, "0\n");
+        GeoMap other = Checks.map(Checks.cityNames(size), Checks.cityDistances(size, 2, false, random), "0\n");
+        map.compact();
+        other.compact();
+        map.writeSnapshot(file, other);
+
+        GraphFile read = GraphFile.open(file);
+        checks.check(read.getCityCount() == size && read.getGraphCount() == 2, "city and graph counts");
+        checks.check(read.getCityName(size - 1).equals("C" + (size - 1)), "the last city name");
+        checks.check(read.getGraph(0).fingerprint() == map.getGraph().fingerprint(), "graph 0 is the map");
+        checks.check(read.getGraph(1).fingerprint() == other.getGraph().fingerprint(), "graph 1 is the other map");
+
+        GeoMap loaded = GeoMap.fromSnapshot(read, 0);
+        double[][] weights = Checks.adjacency(size, distances);
+        int origin = random.nextInt(size);
+        double[] expected = Checks.referenceDistances(weights, origin);
+        for(int v = 0; v < size; v++) {
+            checks.close(expected[v], loaded.distanceBetween(origin, v), "distance from " + origin + " to " + v);
+        }
+    }
+
+    /**
+     * writes one good graph and breaks one field of it at a time
+     */
+    private static void corrupt(Checks checks, Random random, Path file) throws IOException {
+        int size = 10;
+        GeoMap map = Checks.map(Checks.cityNames(size), Checks.cityDistances(size, 3, true, random), "0\n");
+        map.compact();
+        map.writeSnapshot(file);
+        byte[] good = Files.readAllBytes(file);
+        ByteBuffer buffer = ByteBuffer.wrap(good).order(ByteOrder.LITTLE_ENDIAN);
+        int start = align(16 + 4 * (size + 1) + buffer.getInt(16 + 4 * size));
+        int edgeCount = buffer.getInt(start);
+        int offsets = start + 8;
+        int targets = offsets + 4 * (size + 1);
+        int weights = align(targets + 4 * edgeCount);
+
+        rejects(checks, file, good, targets, ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN).putInt(size).array(), "a target past the last city");
+        rejects(checks, file, good, targets, ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN).putInt(-1).array(), "a negative target");
+        rejects(checks, file, good, weights, ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN).putDouble(-1).array(), "a negative weight");
+        rejects(checks, file, good, weights, ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN).putDouble(Double.NaN).array(), "a NaN weight");
+        rejects(checks, file, good, weights, ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN).putDouble(Double.POSITIVE_INFINITY).array(), "an infinite weight");
+        rejects(checks, file, good, offsets + 4 * 5, ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN).putInt(edgeCount + 1).array(), "offsets that go down");
+        rejects(checks, file, good, offsets + 4 * size, ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN).putInt(edgeCount - 1).array(), "offsets that do not end at the edge count");
+        rejects(checks, file, good, offsets, ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN).putInt(1).array(), "offsets that do not start at 0");
+    }
+
+    private static void rejects(Checks checks, Path file, byte[] good, int position, byte[] bytes, String message) throws IOException {
+        byte[] bad = good.clone();
+        System.arraycopy(bytes, 0, bad, position, bytes.length);
+        Files.write(file, bad);
+        boolean rejected = false;
+        try {
+            GraphFile.open(file).getGraph(0);
+        } catch(IOException e) {
+            rejected = true;
+        }
+        checks.check(rejected, "getGraph rejects " + message);
+    }
+
+    private static int align(int position) {
+        return (position + 7) & ~7;
+    }
+}
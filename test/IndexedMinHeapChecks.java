@@ -0,0 +1,123 @@
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * checks IndexedMinHeap of several arities against a linear scan for the minimum through
+ * random inserts, key changes, removals and clears, and the DijkstraSearch built on it
+ * against a full search
+ */
+class IndexedMinHeapChecks {
+    public static void main(String[] args) {
+        System.exit(run() == 0 ? 0 : 1);
+    }
+
+    static int run() {
+        Checks checks = new Checks("IndexedMinHeap");
+        Random random = new Random(2);
+        for(int arity : new int[] {2, 3, 4, 8}) {
+            for(int round = 0; round < 20; round++) {
+                heap(checks, random, arity);
+            }
+        }
+        for(int round = 0; round < 60; round++) {
+            search(checks, random);
+        }
+        return checks.finish();
+    }
+
+    private static void heap(Checks checks, Random random, int arity) {
+        int size = 1 + random.nextInt(100);
+        double[] keys = new double[size];
+        IndexedMinHeap heap = new IndexedMinHeap(keys, arity);
+        // the keys the heap should hold, NaN for a vertex that is not in it
+        double[] expected = new double[size];
+        Arrays.fill(expected, Double.NaN);
+        int count = 0;
+        for(int step = 0; step < 3000; step++) {
+            int vertex = random.nextInt(size);
+            // few distinct keys so there are many ties
+            double key = random.nextInt(4) == 0 ? random.nextInt(5) : random.nextDouble() * 100;
+            boolean in = !Double.isNaN(expected[vertex]);
+            int op = random.nextInt(12);
+            if(op < 4) {
+                if(!in) {
+                    heap.insert(vertex, key);
+                    expected[vertex] = key;
+                    count++;
+                }
+            } else if(op < 6) {
+                if(in && key <= expected[vertex]) {
+                    heap.decreaseKey(vertex, key);
+                    expected[vertex] = key;
+                } else if(!in) {
+                    heap.insertOrDecrease(vertex, key);
+                    expected[vertex] = key;
+                    count++;
+                }
+            } else if(op < 8) {
+                if(in) {
+                    heap.changeKey(vertex, key);
+                    expected[vertex] = key;
+                }
+            } else if(op < 9) {
+                heap.remove(vertex);
+                if(in) {
+                    expected[vertex] = Double.NaN;
+                    count--;
+                }
+            } else if(op < 11) {
+                if(count > 0) {
+                    double min = Double.MAX_VALUE;
+                    for(double k : expected) {
+                        if(!Double.isNaN(k)) {
+                            min = Math.min(min, k);
+                        }
+                    }
+                    checks.same(min, expected[heap.peekMin()], "peekMin has the smallest key");
+                    int polled = heap.pollMin();
+                    checks.same(min, expected[polled], "pollMin has the smallest key");
+                    expected[polled] = Double.NaN;
+                    count--;
+                }
+            } else if(random.nextInt(20) == 0) {
+                heap.clear();
+                Arrays.fill(expected, Double.NaN);
+                count = 0;
+            }
+            checks.check(heap.size() == count, "size " + count + " but was " + heap.size());
+            checks.check(heap.contains(vertex) == !Double.isNaN(expected[vertex]), "contains " + vertex);
+        }
+        // draining gives the keys in order
+        double last = -1;
+        while(!heap.isEmpty()) {
+            double key = expected[heap.pollMin()];
+            checks.check(key >= last, "keys come out in order");
+            last = key;
+        }
+    }
+
+    private static void search(Checks checks, Random random) {
+        int size = 1 + random.nextInt(60);
+        String distances = Checks.cityDistances(size, 1 + random.nextInt(5), random.nextBoolean(), random);
+        GeoMap map = Checks.map(Checks.cityNames(size), distances, "0\n");
+        map.compact();
+        double[][] weights = Checks.adjacency(size, distances);
+        DijkstraSearch search = new DijkstraSearch(map.getGraph());
+        // the same search object is reused, as the solvers do
+        for(int i = 0; i < 5; i++) {
+            int origin = random.nextInt(size);
+            double[] expected = Checks.referenceDistances(weights, origin);
+            double[] actual = search.run(origin);
+            for(int v = 0; v < size; v++) {
+                checks.close(expected[v], actual[v], "distance from " + origin + " to " + v);
+            }
+            int target = random.nextInt(size);
+            checks.close(expected[target], search.runTo(origin, target)[0], "runTo from " + origin + " to " + target);
+            double radius = random.nextInt(150);
+            actual = search.runWithin(origin, radius);
+            for(int v = 0; v < size; v++) {
+                checks.close(expected[v] <= radius ? expected[v] : Double.MAX_VALUE, actual[v], "within " + radius + " of " + origin + " to " + v);
+            }
+        }
+    }
+}
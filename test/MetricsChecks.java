@@ -0,0 +1,158 @@
+import javax.management.JMX;
+import javax.management.ObjectName;
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * checks LatencyHistogram's buckets at every power of two and its percentiles against
+ * the sorted values, and that the counters read over JMX go up after findMinAvgDistance.
+ * Metrics.ENABLED is fixed when the class loads, so without geomap.metrics the JMX part
+ * runs again in a second JVM with it set
+ */
+class MetricsChecks {
+    public static void main(String[] args) {
+        System.exit(run() == 0 ? 0 : 1);
+    }
+
+    static int run() {
+        Checks checks = new Checks("Metrics" + (Metrics.ENABLED ? " enabled" : ""));
+        Random random = new Random(18);
+        boundaries(checks);
+        for(int round = 0; round < 100; round++) {
+            percentiles(checks, random);
+        }
+        concurrent(checks);
+        try {
+            counters(checks, random);
+            if(!Metrics.ENABLED) {
+                checks.check(enabledRun() == 0, "the checks with geomap.metrics set pass");
+            }
+        } catch(Exception e) {
+            checks.check(false, "unexpected " + e);
+        }
+        return checks.finish();
+    }
+
+    private static void boundaries(Checks checks) {
+        List<Long> values = new ArrayList<>();
+        for(long v = 0; v < 70; v++) {
+            values.add(v);
+        }
+        for(int bit = 5; bit < 63; bit++) {
+            for(long offset = -2; offset <= 2; offset++) {
+                values.add((1L << bit) + offset);
+            }
+            values.add((1L << bit) + (1L << (bit - 5)) - 1);
+            values.add((1L << bit) + (1L << (bit - 5)));
+        }
+        values.add(Long.MAX_VALUE);
+        for(long value : values) {
+            LatencyHistogram histogram = new LatencyHistogram();
+            histogram.record(value);
+            checks.check(histogram.getValueAtPercentile(100) == value, "a lone " + value + " is its own top percentile");
+            // with a larger value recorded too the top of value's bucket shows
+            histogram.record(Long.MAX_VALUE);
+            long top = histogram.getValueAtPercentile(50);
+            checks.check(top >= value, "the bucket of " + value + " holds it, its top is " + top);
+            checks.check(top - value <= value / 32, "the bucket of " + value + " is at most 1/32 of it wide, its top is " + top);
+        }
+        LatencyHistogram negative = new LatencyHistogram();
+        negative.record(-5);
+        checks.check(negative.getMax() == 0 && negative.getValueAtPercentile(100) == 0, "a negative value counts as 0");
+        checks.check(new LatencyHistogram().getValueAtPercentile(50) == 0, "an empty histogram has percentiles of 0");
+    }
+
+    private static void percentiles(Checks checks, Random random) {
+        LatencyHistogram histogram = new LatencyHistogram();
+        int count = 1 + random.nextInt(500);
+        long[] values = new long[count];
+        long sum = 0;
+        for(int i = 0; i < count; i++) {
+            values[i] = random.nextBoolean() ? random.nextInt(100) : (long) Math.exp(random.nextDouble() * 30);
+            histogram.record(values[i]);
+            sum += values[i];
+        }
+        Arrays.sort(values);
+        checks.check(histogram.getCount() == count, "count");
+        checks.check(histogram.getMax() == values[count - 1], "max");
+        checks.close((double) sum / count, histogram.getMean(), "mean");
+        for(double percentile : new double[] {0, 1, 25, 50, 90, 99, 99.9, 100, random.nextDouble() * 100}) {
+            long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+            long exact = values[(int) rank - 1];
+            long reported = histogram.getValueAtPercentile(percentile);
+            checks.check(reported >= exact && reported - exact <= exact / 32 && reported <= values[count - 1],
+                    "p" + percentile + " of " + count + " values is " + exact + " rounded up to its bucket, but was " + reported);
+        }
+        histogram.reset();
+        checks.check(histogram.getCount() == 0 && histogram.getMax() == 0 && histogram.getMean() == 0, "reset forgets every value");
+    }
+
+    private static void concurrent(Checks checks) {
+        LatencyHistogram histogram = new LatencyHistogram();
+        Thread[] threads = new Thread[4];
+        for(int t = 0; t < threads.length; t++) {
+            int offset = t;
+            threads[t] = new Thread(() -> {
+                for(int i = 0; i < 10000; i++) {
+                    histogram.record(i * 4 + offset);
+                }
+            });
+            threads[t].start();
+        }
+        for(Thread thread : threads) {
+            try {
+                thread.join();
+            } catch(InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        checks.check(histogram.getCount() == 40000, "every value recorded from four threads is counted");
+        checks.check(histogram.getMax() == 39999, "the largest value recorded from four threads is kept");
+        checks.close(19999.5, histogram.getMean(), "mean of the values recorded from four threads");
+    }
+
+    private static void counters(Checks checks, Random random) throws Exception {
+        Metrics.register();
+        Metrics.register();
+        GeoMapMetricsMXBean bean = JMX.newMXBeanProxy(ManagementFactory.getPlatformMBeanServer(),
+                new ObjectName(Metrics.OBJECT_NAME), GeoMapMetricsMXBean.class);
+        checks.check(bean.isEnabled() == Metrics.ENABLED, "the bean reports whether metrics are on");
+        int size = 2 + random.nextInt(30);
+        GeoMap map = Checks.map(Checks.cityNames(size), Checks.cityDistances(size, 2, true, random), Checks.participants(size, 5, random));
+        map.compact();
+        Map<String, Long> before = bean.getCounters();
+        map.findMinAvgDistance();
+        Map<String, Long> after = bean.getCounters();
+        for(String counter : new String[] {"search.count", "search.settled", "search.relaxed", "search.heapUpdates", "midpoint.count"}) {
+            if(Metrics.ENABLED) {
+                checks.check(after.get(counter) > before.get(counter), counter + " goes up, " + before.get(counter) + " then " + after.get(counter));
+            } else {
+                checks.check(after.get(counter).equals(before.get(counter)), counter + " stays put with metrics off");
+            }
+        }
+        if(Metrics.ENABLED) {
+            checks.check(bean.getLatencyMicros().get("midpoint.max") >= 0, "the midpoint timer is published");
+            bean.reset();
+            checks.check(bean.getCounters().get("midpoint.count") == 0, "reset over JMX zeroes the counters");
+        }
+    }
+
+    /**
+     * runs this class in a new JVM with geomap.metrics set and returns its exit code
+     */
+    private static int enabledRun() throws Exception {
+        List<String> command = new ArrayList<>();
+        command.add(System.getProperty("java.home") + File.separator + "bin" + File.separator + "java");
+        command.addAll(ManagementFactory.getRuntimeMXBean().getInputArguments());
+        command.add("-Dgeomap.metrics=true");
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add("MetricsChecks");
+        return new ProcessBuilder(command).inheritIO().start().waitFor();
+    }
+}
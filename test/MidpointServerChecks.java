@@ -0,0 +1,118 @@
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * checks that a frozen MapSnapshot answers the same after the map it came from has its
+ * edges and people edited, and that MidpointServer answers bad queries with the right 4xx
+ */
+class MidpointServerChecks {
+    public static void main(String[] args) {
+        System.exit(run() == 0 ? 0 : 1);
+    }
+
+    static int run() {
+        Checks checks = new Checks("MidpointServer");
+        Random random = new Random(19);
+        for(int round = 0; round < 40; round++) {
+            frozen(checks, random);
+        }
+        try {
+            responses(checks);
+        } catch(Exception e) {
+            checks.check(false, "unexpected " + e);
+        }
+        return checks.finish();
+    }
+
+    private static void frozen(Checks checks, Random random) {
+        int size = 2 + random.nextInt(30);
+        String distances = Checks.cityDistances(size, 1 + random.nextInt(4), true, random);
+        GeoMap map = Checks.map(Checks.cityNames(size), distances, Checks.participants(size, 1 + random.nextInt(10), random));
+        if(random.nextBoolean()) {
+            map.compact();
+        }
+        if(random.nextBoolean()) {
+            map.enableDistanceCache(1 << 20);
+            map.precomputeDistances();
+        }
+        MapSnapshot snapshot = map.freeze();
+        String top = snapshot.topMidpoints(size).toString();
+        int[] origins = {0, size - 1};
+        int[] sizes = {1, 2};
+        String given = snapshot.topMidpoints(origins, sizes, 3).toString();
+        double[][] before = new double[size][size];
+        for(int u = 0; u < size; u++) {
+            for(int v = 0; v < size; v++) {
+                before[u][v] = snapshot.distance(u, v);
+            }
+        }
+
+        for(int i = 0; i < 5; i++) {
+            map.setEdgeWeight(random.nextInt(size), random.nextInt(size), random.nextInt(5));
+            map.removeEdge(random.nextInt(size), random.nextInt(size));
+        }
+        map.neighborsFromStream(Checks.reader(Checks.cityDistances(size, 2, false, random)), distance -> distance / 2);
+        map.addPerson(new Person("late", random.nextInt(size)));
+        List<Person> people = map.getPopulation(0);
+        if(!people.isEmpty()) {
+            map.movePerson(people.get(0), size - 1);
+        }
+        map.distanceBetween(0, size - 1);
+
+        checks.check(top.equals(snapshot.topMidpoints(size).toString()), "the snapshot's midpoints do not change");
+        checks.check(given.equals(snapshot.topMidpoints(origins, sizes, 3).toString()), "the snapshot's midpoints for given people do not change");
+        for(int u = 0; u < size; u++) {
+            for(int v = 0; v < size; v++) {
+                checks.same(before[u][v], snapshot.distance(u, v), "snapshot distance from " + u + " to " + v);
+            }
+        }
+        MapSnapshot later = map.freeze();
+        int u = random.nextInt(size);
+        int v = random.nextInt(size);
+        checks.close(map.distanceBetween(u, v), later.distance(u, v), "a new snapshot has the edits");
+    }
+
+    private static void responses(Checks checks) throws Exception {
+        GeoMap map = Checks.map(Checks.cityNames(3), "0\n1 2 10\n2 3 5\n", "1\nP0 1\n");
+        GeoMap empty = Checks.map(Checks.cityNames(3), "0\n1 2 10\n", "0\n");
+        MapSnapshot[] next = {map.freeze()};
+        MidpointServer server = new MidpointServer(new InetSocketAddress("127.0.0.1", 0), 2, () -> next[0]);
+        server.start();
+        try {
+            String base = "http://127.0.0.1:" + server.getPort();
+            checks.check(status(base + "/midpoint", "GET") == 200, "midpoint");
+            checks.check(status(base + "/distance?from=C0&to=C2", "GET") == 200, "distance");
+            checks.check(status(base + "/distance?from=C0&to=C1&to=C9", "GET") == 200, "only the first to counts");
+            checks.check(status(base + "/top?k=2&from=C0:2&from=C2", "GET") == 200, "top of given people");
+            checks.check(status(base + "/distance?from=C0&to=Nowhere", "GET") == 404, "an unknown city is not found");
+            checks.check(status(base + "/midpoint?from=Nowhere", "GET") == 404, "an unknown origin is not found");
+            checks.check(status(base + "/distance?from=C0", "GET") == 400, "a missing city is a bad request");
+            checks.check(status(base + "/top?k=five", "GET") == 400, "a k that is not a number is a bad request");
+            checks.check(status(base + "/top?k=0", "GET") == 400, "k of 0 is a bad request");
+            checks.check(status(base + "/midpoint?from=C0:0", "GET") == 400, "a count of 0 is a bad request");
+            checks.check(status(base + "/midpoint", "POST") == 405, "midpoint takes GET");
+            checks.check(status(base + "/reload", "GET") == 405, "reload takes POST");
+            next[0] = empty.freeze();
+            checks.check(status(base + "/reload", "POST") == 200, "reload");
+            checks.check(status(base + "/midpoint", "GET") == 400, "nobody to meet is a bad request");
+            next[0] = null;
+            checks.check(status(base + "/reload", "POST") == 500, "a failed reload");
+            checks.check(status(base + "/top?k=1&from=C1", "GET") == 200, "a failed reload keeps the old snapshot");
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    private static int status(String url, String method) throws Exception {
+        HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+        connection.setRequestMethod(method);
+        connection.setConnectTimeout(5000);
+        connection.setReadTimeout(5000);
+        int responseCode = connection.getResponseCode();
+        connection.disconnect();
+        return responseCode;
+    }
+}
@@ -0,0 +1,97 @@
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * checks MidpointSolver's weighted totals against a full search per origin, and that
+ * the serial, parallel and cached solvers and batchMins agree on them bit for bit
+ */
+class MidpointSolverChecks {
+    public static void main(String[] args) {
+        System.exit(run() == 0 ? 0 : 1);
+    }
+
+    static int run() {
+        Checks checks = new Checks("MidpointSolver");
+        Random random = new Random(5);
+        ForkJoinPool pool = new ForkJoinPool(3);
+        try {
+            for(int round = 0; round < 60; round++) {
+                round(checks, random, pool);
+            }
+        } finally {
+            pool.shutdown();
+        }
+        return checks.finish();
+    }
+
+    private static void round(Checks checks, Random random, ForkJoinPool pool) {
+        int size = 2 + random.nextInt(80);
+        String distances = Checks.cityDistances(size, 1 + random.nextInt(4), random.nextBoolean(), random);
+        GeoMap map = Checks.map(Checks.cityNames(size), distances, "0\n");
+        map.compact();
+        CsrGraph graph = map.getGraph();
+        double[][] weights = Checks.adjacency(size, distances);
+
+        int count = 1 + random.nextInt(Math.min(size, 11));
+        int[] origins = new int[count];
+        int[] sizes = new int[count];
+        boolean[] used = new boolean[size];
+        for(int i = 0; i < count; i++) {
+            do {
+                origins[i] = random.nextInt(size);
+            } while(used[origins[i]]);
+            used[origins[i]] = true;
+            sizes[i] = 1 + random.nextInt(4);
+        }
+
+        MidpointSolver serial = new MidpointSolver(graph);
+        double[] totals = serial.weightedTotals(origins, sizes);
+        double[] expected = new double[size];
+        for(int i = 0; i < count; i++) {
+            double[] row = Checks.referenceDistances(weights, origins[i]);
+            for(int v = 0; v < size; v++) {
+                expected[v] += sizes[i] * row[v];
+            }
+        }
+        for(int v = 0; v < size; v++) {
+            checks.close(expected[v], totals[v], "total of " + v);
+        }
+
+        MidpointSolver[] others = {
+            new MidpointSolver(graph, pool),
+            new MidpointSolver(graph, null, 1, new DistanceCache(graph, 1 << 20)),
+            new MidpointSolver(graph, pool, pool.getParallelism(), new DistanceCache(graph, 1 << 20))
+        };
+        for(int s = 0; s < others.length; s++) {
+            checks.check(Arrays.equals(totals, others[s].weightedTotals(origins, sizes)), "solver " + s + " has the serial totals bit for bit");
+        }
+
+        // a meeting alone in a batch, and one of its prefixes next to it
+        int half = 1 + count / 2;
+        int[][] meetings = {origins, Arrays.copyOf(origins, half)};
+        int[][] meetingSizes = {sizes, Arrays.copyOf(sizes, half)};
+        for(MidpointSolver solver : new MidpointSolver[] {serial, others[0]}) {
+            List<Midpoint> midpoints = solver.batchMins(meetings, meetingSizes, v -> "C" + v);
+            for(int m = 0; m < meetings.length; m++) {
+                double[] meetingTotals = serial.weightedTotals(meetings[m], meetingSizes[m]);
+                int total = 0;
+                for(int people : meetingSizes[m]) {
+                    total += people;
+                }
+                for(int v = 0; v < size; v++) {
+                    meetingTotals[v] /= total;
+                }
+                int best = MidpointSolver.argmin(meetingTotals);
+                Midpoint midpoint = midpoints.get(m);
+                if(best < 0) {
+                    checks.check(midpoint == null, "no batch midpoint when nobody can meet");
+                } else {
+                    checks.check(midpoint != null && midpoint.getVertex() == best, "batch midpoint of meeting " + m);
+                    checks.same(meetingTotals[best], midpoint == null ? Double.NaN : midpoint.getAverage(), "batch average of meeting " + m);
+                }
+            }
+        }
+    }
+}
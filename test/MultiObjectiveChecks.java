@@ -0,0 +1,176 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * checks MultiObjectiveSolver's averages, scalarized argmin and pareto front against
+ * a separate search per channel, on graphs where some edges exist in one channel only,
+ * channels disagree, and some candidates cannot be reached by a single person
+ */
+class MultiObjectiveChecks {
+    public static void main(String[] args) {
+        System.exit(run() == 0 ? 0 : 1);
+    }
+
+    static int run() {
+        Checks checks = new Checks("MultiObjective");
+        Random random = new Random(14);
+        for(int round = 0; round < 150; round++) {
+            round(checks, random);
+        }
+        oneUnreachablePerson(checks);
+        return checks.finish();
+    }
+
+    private static void round(Checks checks, Random random) {
+        int size = 1 + random.nextInt(40);
+        int channelCount = 1 + random.nextInt(3);
+        double[][][] matrices = new double[channelCount][size][size];
+        CsrGraph[] channels = new CsrGraph[channelCount];
+        boolean correlated = random.nextBoolean();
+        for(int c = 0; c < channelCount; c++) {
+            for(double[] row : matrices[c]) {
+                Arrays.fill(row, Double.MAX_VALUE);
+            }
+        }
+        CsrGraph.Builder[] builders = new CsrGraph.Builder[channelCount];
+        for(int c = 0; c < channelCount; c++) {
+            builders[c] = new CsrGraph.Builder(size);
+        }
+        int edges = size * (1 + random.nextInt(3)) / (random.nextInt(3) == 0 ? 2 : 1);
+        for(int e = 0; e < edges; e++) {
+            int a = random.nextInt(size);
+            int b = random.nextInt(size);
+            double base = random.nextInt(50);
+            for(int c = 0; c < channelCount; c++) {
+                if(random.nextInt(5) == 0) {
+                    continue;
+                }
+                double w = correlated ? base * (c + 1) + random.nextInt(3) : random.nextInt(60);
+                builders[c].addUndirectedEdge(a, b, w);
+                matrices[c][a][b] = Math.min(matrices[c][a][b], w);
+                matrices[c][b][a] = Math.min(matrices[c][b][a], w);
+            }
+        }
+        for(int c = 0; c < channelCount; c++) {
+            channels[c] = builders[c].build();
+        }
+        MultiObjectiveSolver solver = new MultiObjectiveSolver(MultiWeightGraph.union(channels));
+
+        int originCount = 1 + random.nextInt(Math.min(size, 5));
+        int[] origins = new int[originCount];
+        int[] weights = new int[originCount];
+        boolean[] used = new boolean[size];
+        for(int i = 0; i < originCount; i++) {
+            do {
+                origins[i] = random.nextInt(size);
+            } while(used[origins[i]]);
+            used[origins[i]] = true;
+            weights[i] = 1 + random.nextInt(3);
+        }
+        double[][] averages = solver.averages(origins, weights);
+        double[][] expected = referenceAverages(matrices, origins, weights);
+        for(int c = 0; c < channelCount; c++) {
+            for(int v = 0; v < size; v++) {
+                checks.close(expected[c][v], averages[c][v], "channel " + c + " average of " + v);
+            }
+        }
+
+        double[] lambdas = new double[channelCount];
+        for(int c = 0; c < channelCount; c++) {
+            lambdas[c] = random.nextDouble();
+        }
+        int vertex = MultiObjectiveSolver.scalarizedArgmin(averages, lambdas);
+        double best = Double.MAX_VALUE;
+        for(int v = 0; v < size; v++) {
+            best = Math.min(best, MultiObjectiveSolver.scalarized(expected, lambdas, v));
+        }
+        if(best == Double.MAX_VALUE) {
+            checks.check(vertex < 0, "no scalarized midpoint when nobody can meet");
+        } else {
+            checks.check(vertex >= 0, "a scalarized midpoint when everybody can meet");
+            if(vertex >= 0) {
+                checks.close(best, MultiObjectiveSolver.scalarized(averages, lambdas, vertex), "scalarized minimum");
+            }
+        }
+
+        List<MultiMidpoint> front = MultiObjectiveSolver.paretoFront(averages, v -> "C" + v);
+        List<Integer> expectedFront = referenceFront(expected);
+        checks.check(front.size() == expectedFront.size(), "pareto front size " + expectedFront.size() + " but was " + front.size());
+        for(MultiMidpoint midpoint : front) {
+            checks.check(expectedFront.contains(midpoint.getVertex()), "vertex " + midpoint.getVertex() + " is on the front");
+        }
+    }
+
+    /**
+     * one person at a city only part of the map can reach, the cities they cannot reach
+     * must not count as reachable on the front or in the weighted sum
+     */
+    private static void oneUnreachablePerson(Checks checks) {
+        CsrGraph.Builder distance = new CsrGraph.Builder(4);
+        CsrGraph.Builder fare = new CsrGraph.Builder(4);
+        distance.addUndirectedEdge(0, 1, 5);
+        fare.addUndirectedEdge(0, 1, 5);
+        distance.addUndirectedEdge(2, 3, 1);
+        fare.addUndirectedEdge(2, 3, 1);
+        MultiObjectiveSolver solver = new MultiObjectiveSolver(MultiWeightGraph.union(distance.build(), fare.build()));
+        double[][] averages = solver.averages(new int[] {0, 2}, new int[] {3, 1});
+        for(double[] channel : averages) {
+            for(int v = 0; v < 4; v++) {
+                checks.same(Double.MAX_VALUE, channel[v], "candidate " + v + " is unreachable");
+            }
+        }
+        checks.check(MultiObjectiveSolver.scalarizedArgmin(averages, new double[] {1, 1}) == -1, "no scalarized midpoint");
+        checks.check(MultiObjectiveSolver.paretoFront(averages, v -> "C" + v).isEmpty(), "an empty pareto front");
+    }
+
+    private static double[][] referenceAverages(double[][][] matrices, int[] origins, int[] weights) {
+        int size = matrices[0].length;
+        double[][] averages = new double[matrices.length][size];
+        int totalSize = 0;
+        for(int weight : weights) {
+            totalSize += weight;
+        }
+        for(int c = 0; c < matrices.length; c++) {
+            for(int i = 0; i < origins.length; i++) {
+                double[] row = Checks.referenceDistances(matrices[c], origins[i]);
+                for(int v = 0; v < size; v++) {
+                    averages[c][v] = averages[c][v] == Double.MAX_VALUE || row[v] == Double.MAX_VALUE
+                            ? Double.MAX_VALUE : averages[c][v] + weights[i] * row[v];
+                }
+            }
+            for(int v = 0; v < size; v++) {
+                if(averages[c][v] != Double.MAX_VALUE) {
+                    averages[c][v] /= totalSize;
+                }
+            }
+        }
+        return averages;
+    }
+
+    private static List<Integer> referenceFront(double[][] averages) {
+        List<Integer> front = new ArrayList<>();
+        int size = averages[0].length;
+        for(int v = 0; v < size; v++) {
+            boolean reachable = true;
+            for(double[] channel : averages) {
+                reachable &= channel[v] < Double.MAX_VALUE;
+            }
+            boolean dominated = false;
+            for(int u = 0; u < size && reachable && !dominated; u++) {
+                boolean atMost = true;
+                boolean less = false;
+                for(double[] channel : averages) {
+                    atMost &= channel[u] <= channel[v] && channel[u] < Double.MAX_VALUE;
+                    less |= channel[u] < channel[v];
+                }
+                dominated = atMost && less;
+            }
+            if(reachable && !dominated) {
+                front.add(v);
+            }
+        }
+        return front;
+    }
+}
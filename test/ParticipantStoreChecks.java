@@ -0,0 +1,96 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * checks ParticipantStore against a list of names per city through random adds, moves
+ * and removals, enough of them that removed rows are packed away many times, and that
+ * a copy taken in between keeps its own people
+ */
+class ParticipantStoreChecks {
+    public static void main(String[] args) {
+        System.exit(run() == 0 ? 0 : 1);
+    }
+
+    static int run() {
+        Checks checks = new Checks("ParticipantStore");
+        Random random = new Random(25);
+        for(int round = 0; round < 40; round++) {
+            round(checks, random, true);
+            round(checks, random, false);
+        }
+        return checks.finish();
+    }
+
+    private static void round(Checks checks, Random random, boolean keepNames) {
+        int size = 1 + random.nextInt(20);
+        String[] pool = {"Ann", "Bob", "Zo\u00eb", "", "Ann Lee", "Bo"};
+        ParticipantStore store = new ParticipantStore(keepNames);
+        List<List<String>> expected = new ArrayList<>();
+        for(int v = 0; v < size; v++) {
+            expected.add(new ArrayList<>());
+        }
+        ParticipantStore copy = null;
+        List<List<String>> copied = null;
+        for(int step = 0; step < 2000; step++) {
+            int op = random.nextInt(10);
+            int vertex = random.nextInt(size);
+            String name = pool[random.nextInt(pool.length)];
+            List<String> people = expected.get(vertex);
+            if(op < 4) {
+                String line = "x " + name + " y";
+                store.add(vertex, line, 2, 2 + name.length());
+                people.add(name);
+            } else if(op < 7) {
+                String wanted = random.nextInt(4) == 0 ? null : name;
+                int index = indexOf(people, wanted, keepNames);
+                checks.check(store.remove(wanted, vertex) == index >= 0, "remove " + wanted + " at " + vertex);
+                if(index >= 0) {
+                    people.remove(index);
+                }
+            } else {
+                int to = random.nextInt(size);
+                String wanted = random.nextInt(4) == 0 ? null : name;
+                int index = indexOf(people, wanted, keepNames);
+                checks.check(store.move(wanted, vertex, to) == index >= 0, "move " + wanted + " from " + vertex + " to " + to);
+                if(index >= 0) {
+                    expected.get(to).add(people.remove(index));
+                }
+            }
+            if(step == 1000) {
+                copy = new ParticipantStore(store);
+                copied = new ArrayList<>();
+                for(List<String> names : expected) {
+                    copied.add(new ArrayList<>(names));
+                }
+            }
+            if(step % 50 == 0) {
+                compare(checks, store, expected, keepNames);
+            }
+        }
+        compare(checks, store, expected, keepNames);
+        compare(checks, copy, copied, keepNames);
+    }
+
+    private static int indexOf(List<String> people, String name, boolean keepNames) {
+        if(people.isEmpty()) {
+            return -1;
+        }
+        return !keepNames || name == null ? 0 : people.indexOf(name);
+    }
+
+    private static void compare(Checks checks, ParticipantStore store, List<List<String>> expected, boolean keepNames) {
+        int total = 0;
+        for(int v = 0; v < expected.size(); v++) {
+            List<String> people = expected.get(v);
+            total += people.size();
+            checks.check(store.getCount(v) == people.size(), "count at " + v + " " + people.size() + " but was " + store.getCount(v));
+            if(keepNames) {
+                List<String> names = Arrays.asList(store.namesAt(v));
+                checks.check(names.equals(people), "names at " + v + " " + people + " but were " + names);
+            }
+        }
+        checks.check(store.size() == total, "size " + total + " but was " + store.size());
+    }
+}
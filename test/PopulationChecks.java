@@ -0,0 +1,139 @@
+import com.sun.tools.javac.util.Pair;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * checks addPerson, removePerson and movePerson through random sequences, moves to the
+ * city a person is already in included, against a count per city, and that the tracked
+ * midpoint stays the one findMinAvgDistance and a full search find, none of them
+ * finding one when nobody is on the map or the people cannot meet
+ */
+class PopulationChecks {
+    public static void main(String[] args) {
+        System.exit(run() == 0 ? 0 : 1);
+    }
+
+    static int run() {
+        Checks checks = new Checks("Population");
+        Random random = new Random(8);
+        for(int round = 0; round < 60; round++) {
+            round(checks, random);
+        }
+        apart(checks);
+        return checks.finish();
+    }
+
+    /**
+     * people in two cities with no road between them have no midpoint, whichever way it is asked for
+     */
+    private static void apart(Checks checks) {
+        GeoMap map = Checks.map(Checks.cityNames(3), "0\n1 3 5\n", "3\nP0 1\nP1 2\nP2 2\n");
+        checks.check(map.findMinAvgDistance() == null, "no midpoint for people who cannot meet, not " + map.findMinAvgDistance());
+        checks.check(map.getTrackedMidpoint() == null, "no tracked midpoint for people who cannot meet");
+        map.setEdgeWeight(1, 2, 4);
+        checks.check(map.findMinAvgDistance() != null, "a midpoint once they can meet");
+        checks.check(map.getTrackedMidpoint() != null, "a tracked midpoint once they can meet");
+    }
+
+    private static void round(Checks checks, Random random) {
+        int size = 1 + random.nextInt(30);
+        String distances = Checks.cityDistances(size, 1 + random.nextInt(4), true, random);
+        int count = random.nextInt(6);
+        String people = Checks.participants(Math.min(size, 3), count, random);
+        GeoMap map = Checks.map(Checks.cityNames(size), distances, people);
+        if(random.nextBoolean()) {
+            map.compact();
+        }
+        double[][] weights = Checks.adjacency(size, distances);
+        double[][] reference = new double[size][];
+        for(int v = 0; v < size; v++) {
+            reference[v] = Checks.referenceDistances(weights, v);
+        }
+
+        // the people on the map by name, and where each of them is
+        List<String> names = new ArrayList<>();
+        List<Integer> origins = new ArrayList<>();
+        String[] lines = people.split("\n");
+        for(int i = 1; i < lines.length; i++) {
+            String[] fields = lines[i].split(" ");
+            names.add(fields[0]);
+            origins.add(Integer.parseInt(fields[1]) - 1);
+        }
+        compare(checks, map, reference, origins);
+        for(int step = 0; step < 80; step++) {
+            int op = random.nextInt(4);
+            if(op == 0 || names.isEmpty()) {
+                String name = "N" + step;
+                // few cities so people often share one
+                int origin = random.nextInt(Math.min(size, 3));
+                map.addPerson(new Person(name, origin));
+                names.add(name);
+                origins.add(origin);
+            } else if(op == 1) {
+                int i = random.nextInt(names.size());
+                Person person = find(map, names.get(i), origins.get(i));
+                checks.check(map.removePerson(person), "remove " + names.get(i));
+                checks.check(!map.movePerson(person, random.nextInt(size)), "a removed person does not move");
+                names.remove(i);
+                origins.remove(i);
+            } else {
+                int i = random.nextInt(names.size());
+                // every other move is to the city the person is already in
+                int to = op == 2 ? origins.get(i) : random.nextInt(size);
+                Person person = find(map, names.get(i), origins.get(i));
+                checks.check(map.movePerson(person, to), "move " + names.get(i) + " to " + to);
+                origins.set(i, to);
+            }
+            compare(checks, map, reference, origins);
+        }
+        Person stranger = new Person("stranger", 0);
+        checks.check(!map.movePerson(stranger, 0), "someone who is not on the map does not move in place");
+        compare(checks, map, reference, origins);
+    }
+
+    private static Person find(GeoMap map, String name, int origin) {
+        for(Person person : map.getPopulation(origin)) {
+            if(name.equals(person.getName())) {
+                return person;
+            }
+        }
+        throw new IllegalStateException(name + " is not at " + origin);
+    }
+
+    private static void compare(Checks checks, GeoMap map, double[][] reference, List<Integer> origins) {
+        int size = reference.length;
+        int[] counts = new int[size];
+        for(int origin : origins) {
+            counts[origin]++;
+        }
+        int populated = 0;
+        for(int v = 0; v < size; v++) {
+            checks.check(map.getPopulation(v).size() == counts[v], "population of " + v + " is " + counts[v]);
+            populated += counts[v] > 0 ? 1 : 0;
+        }
+        Midpoint tracked = map.getTrackedMidpoint();
+        if(populated == 0) {
+            checks.check(tracked == null, "no tracked midpoint without people");
+            checks.check(map.findMinAvgDistance() == null, "no midpoint without people");
+            return;
+        }
+        double[][] rows = new double[populated][];
+        int[] sizes = new int[populated];
+        for(int v = 0, i = 0; v < size; v++) {
+            if(counts[v] > 0) {
+                rows[i] = reference[v];
+                sizes[i++] = counts[v];
+            }
+        }
+        double best = Checks.referenceMinAverage(rows, sizes);
+        Pair<String, Double> full = map.findMinAvgDistance();
+        checks.close(best, full.snd, "minimum average");
+        checks.check(tracked != null, "a tracked midpoint");
+        if(tracked != null) {
+            checks.close(best, tracked.getAverage(), "tracked minimum average");
+            checks.check(tracked.getName().equals(full.fst), "tracked midpoint " + tracked.getName() + " is " + full.fst);
+        }
+    }
+}
@@ -0,0 +1,144 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * checks QuoteCache with a loader that counts its calls: a miss loads and a fresh entry
+ * does not, a stale entry is served while it is refreshed, an entry past the max stale
+ * age is loaded again before it is served, and the least recently used responses are
+ * evicted to stay under the byte budget
+ */
+class QuoteCacheChecks {
+    private static final long TTL = 60000;
+    private static final long MAX_STALE = 600000;
+
+    public static void main(String[] args) {
+        System.exit(run() == 0 ? 0 : 1);
+    }
+
+    static int run() {
+        Checks checks = new Checks("QuoteCache");
+        Path directory = null;
+        try {
+            directory = Files.createTempDirectory("quote-cache-checks");
+            ages(checks, directory.resolve("ages"));
+            eviction(checks, directory.resolve("eviction"));
+        } catch(Exception e) {
+            checks.check(false, "unexpected " + e);
+        } finally {
+            delete(directory);
+        }
+        return checks.finish();
+    }
+
+    /**
+     * answers every params with a body naming params and how many loads came before it
+     */
+    private static class CountingLoader implements QuoteCache.Loader {
+        final List<String> loads = new ArrayList<>();
+        volatile boolean refuse;
+
+        @Override
+        public synchronized byte[] load(String params) {
+            loads.add(params);
+            return refuse ? null : body(params, loads.size());
+        }
+    }
+
+    private static byte[] body(String params, int version) {
+        return ("{\"" + params + "\": " + version + "}").getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String text(byte[] body) {
+        return body == null ? null : new String(body, StandardCharsets.UTF_8);
+    }
+
+    private static void age(Path directory, String params, long millis) throws IOException {
+        Path file = directory.resolve(QuoteCache.key(params) + ".json");
+        Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis() - millis));
+    }
+
+    private static void ages(Checks checks, Path directory) throws Exception {
+        QuoteCache cache = new QuoteCache(directory, TTL, MAX_STALE, 1 << 20);
+        CountingLoader loader = new CountingLoader();
+        String params = "US/USD/en-US/US/US/2016-10/?apiKey=one";
+
+        checks.check(text(body(params, 1)).equals(text(cache.get(params, loader))), "a miss is loaded");
+        checks.check(loader.loads.size() == 1, "a miss loads once");
+        checks.check(text(body(params, 1)).equals(text(cache.get(params.replace("one", "two"), loader))), "the api key is not part of the key");
+        checks.check(loader.loads.size() == 1, "a fresh entry is not loaded");
+
+        age(directory, params, TTL + 1000);
+        checks.check(text(body(params, 1)).equals(text(cache.get(params, loader))), "a stale entry is served as it is");
+        long deadline = System.currentTimeMillis() + 5000;
+        while(System.currentTimeMillis() < deadline && !text(body(params, 2)).equals(text(cache.get(params, loader)))) {
+            Thread.sleep(5);
+        }
+        checks.check(loader.loads.size() == 2, "a stale entry is refreshed once, loads " + loader.loads.size());
+        checks.check(text(body(params, 2)).equals(text(cache.get(params, loader))), "the refreshed entry is served");
+
+        age(directory, params, MAX_STALE + 1000);
+        checks.check(text(body(params, 3)).equals(text(cache.get(params, loader))), "an entry past the max stale age is loaded first");
+        checks.check(loader.loads.size() == 3, "an entry past the max stale age loads once");
+
+        age(directory, params, MAX_STALE + 1000);
+        loader.refuse = true;
+        checks.check(cache.get(params, loader) == null, "an entry past the max stale age is not served when the loader refuses");
+        loader.refuse = false;
+
+        try {
+            new QuoteCache(directory, TTL, TTL - 1, 1 << 20);
+            checks.check(false, "a max stale age under the ttl is refused");
+        } catch(IllegalArgumentException e) {
+            checks.check(true, "a max stale age under the ttl is refused");
+        }
+    }
+
+    private static void eviction(Checks checks, Path directory) throws Exception {
+        int size = body("A", 1).length;
+        // room for three responses
+        QuoteCache cache = new QuoteCache(directory, TTL, MAX_STALE, size * 3 + size / 2);
+        CountingLoader loader = new CountingLoader();
+        for(String params : new String[] {"A", "B", "C"}) {
+            cache.get(params, loader);
+            Thread.sleep(20);
+        }
+        // A is used after B, so B is the least recently used when D comes in
+        cache.get("A", loader);
+        Thread.sleep(20);
+        cache.get("D", loader);
+        checks.check(loader.loads.size() == 4, "four loads before eviction");
+        long total = 0;
+        for(File file : directory.toFile().listFiles((dir, name) -> name.endsWith(".json"))) {
+            total += file.length();
+        }
+        checks.check(total <= size * 3 + size / 2, "the directory fits the budget, " + total + " bytes");
+        for(String params : new String[] {"A", "C", "D"}) {
+            int before = loader.loads.size();
+            cache.get(params, loader);
+            checks.check(loader.loads.size() == before, params + " is kept");
+        }
+        int before = loader.loads.size();
+        cache.get("B", loader);
+        checks.check(loader.loads.size() == before + 1, "B is evicted and loaded again");
+    }
+
+    /**
+     * deletes path and everything under it
+     */
+    private static void delete(Path directory) {
+        if(directory == null) {
+            return;
+        }
+        File[] files = directory.toFile().listFiles();
+        for(File file : files == null ? new File[0] : files) {
+            delete(file.toPath());
+        }
+        directory.toFile().delete();
+    }
+}
@@ -0,0 +1,118 @@
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * checks QuoteFetcher against a QuoteStubServer: one request per origin and month, the
+ * cheapest fare kept for a route quoted more than once, and 429, 5xx and dropped
+ * connections retried a bounded number of times with a bounded backoff
+ */
+class QuoteFetcherChecks {
+    private static final String MONTH = "2016-10";
+    private static final long BACKOFF = 20;
+
+    public static void main(String[] args) {
+        System.exit(run() == 0 ? 0 : 1);
+    }
+
+    static int run() {
+        Checks checks = new Checks("QuoteFetcher");
+        try {
+            merge(checks, 1);
+            merge(checks, 4);
+            retried(checks, "429", stub -> stub.failNext(2, 429), true, 3);
+            retried(checks, "503", stub -> stub.failNext(1, 503), true, 2);
+            retried(checks, "dropped connections", stub -> stub.dropNext(2), true, 3);
+            retried(checks, "too many 500", stub -> stub.failNext(10, 500), false, 4);
+            retried(checks, "404", stub -> stub.failNext(1, 404), false, 1);
+        } catch(Exception e) {
+            checks.check(false, "unexpected " + e);
+        }
+        return checks.finish();
+    }
+
+    private static HashMap<String, Integer> cities() {
+        HashMap<String, Integer> cityToVertex = new HashMap<>();
+        cityToVertex.put("Chicago", 0);
+        cityToVertex.put("Los Angeles", 1);
+        cityToVertex.put("New York", 2);
+        return cityToVertex;
+    }
+
+    /**
+     * returns a browsequotes body with the quotes, each {origin id, destination id, price},
+     * before or after the places 1 Chicago, 2 Los Angeles, 3 New York and 4 Denver
+     */
+    private static byte[] body(boolean quotesFirst, double[]... quotes) {
+        StringBuilder q = new StringBuilder("\"Quotes\": [");
+        for(int i = 0; i < quotes.length; i++) {
+            q.append(i > 0 ? ", " : "").append("{\"QuoteId\": ").append(i + 1).append(", \"MinPrice\": ").append(quotes[i][2])
+                .append(", \"Direct\": true, \"OutboundLeg\": {\"CarrierIds\": [851], \"OriginId\": ").append((int) quotes[i][0])
+                .append(", \"DestinationId\": ").append((int) quotes[i][1]).append("}}");
+        }
+        q.append(']');
+        String places = "\"Places\": [{\"PlaceId\": 1, \"CityName\": \"Chicago\"}, {\"PlaceId\": 2, \"CityName\": \"Los Angeles\"},"
+            + " {\"PlaceId\": 3, \"CityName\": \"New York\"}, {\"PlaceId\": 4, \"CityName\": \"Denver\"}]";
+        String json = "{" + (quotesFirst ? q + ", " + places : places + ", " + q) + ", \"Currencies\": []}";
+        return json.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static List<String> fetch(QuoteStubServer stub, List<String> origins, int concurrency, int maxRetries, boolean[] ok) throws Exception {
+        List<String> edges = new ArrayList<>();
+        QuoteFetcher fetcher = new QuoteFetcher(stub.getUrl(), origins, Arrays.asList(MONTH), concurrency, 2000, maxRetries, BACKOFF);
+        ok[0] = fetcher.streamQuotes(cities(), (v1, v2, price) -> edges.add(v1 + " " + v2 + " " + price));
+        return edges;
+    }
+
+    private static void merge(Checks checks, int concurrency) throws Exception {
+        QuoteStubServer stub = new QuoteStubServer(body(true));
+        stub.record(SkyScannerAPI.quoteParams("US", MONTH), body(true,
+            new double[] {1, 2, 150}, new double[] {1, 2, 120}, new double[] {3, 1, 90}));
+        stub.record(SkyScannerAPI.quoteParams("ORD-sky", MONTH), body(false,
+            new double[] {1, 2, 110}, new double[] {2, 3, 200}, new double[] {4, 1, 50}, new double[] {2, 1, 130}));
+        stub.record(SkyScannerAPI.quoteParams("LAX-sky", MONTH), body(true, new double[] {3, 1, 95}));
+        stub.start();
+        try {
+            boolean[] ok = new boolean[1];
+            List<String> edges = fetch(stub, Arrays.asList("US", "ORD-sky", "LAX-sky"), concurrency, 0, ok);
+            checks.check(ok[0], "fetch succeeds");
+            List<String> expected = Arrays.asList("0 1 110.0", "1 0 130.0", "1 2 200.0", "2 0 90.0");
+            checks.check(edges.equals(expected), "edges with " + concurrency + " in flight are " + expected + " but were " + edges);
+            checks.check(stub.getRequestCount() == 3, "one request per fetch, but there were " + stub.getRequestCount());
+        } finally {
+            stub.stop();
+        }
+    }
+
+    interface Setup {
+        void apply(QuoteStubServer stub);
+    }
+
+    private static void retried(Checks checks, String what, Setup failures, boolean succeeds, int requests) throws Exception {
+        QuoteStubServer stub = new QuoteStubServer(body(true, new double[] {1, 2, 150}, new double[] {2, 3, 80}));
+        stub.start();
+        try {
+            failures.apply(stub);
+            boolean[] ok = new boolean[1];
+            long start = System.nanoTime();
+            List<String> edges = fetch(stub, Arrays.asList("US"), 1, 3, ok);
+            long elapsed = (System.nanoTime() - start) / 1000000;
+            checks.check(ok[0] == succeeds, what + (succeeds ? " recovers" : " fails"));
+            checks.check(edges.equals(succeeds ? Arrays.asList("0 1 150.0", "1 2 80.0") : new ArrayList<String>()), what + " edges " + edges);
+            checks.check(stub.getRequestCount() == requests, what + " takes " + requests + " requests, but took " + stub.getRequestCount());
+            // every retry waits its backoff, doubled each time, plus at most half of it again
+            long least = 0;
+            long most = 0;
+            for(int retry = 0; retry < requests - 1; retry++) {
+                least += BACKOFF << retry;
+                most += (BACKOFF << retry) * 3 / 2;
+            }
+            checks.check(elapsed >= least, what + " waits at least " + least + "ms, waited " + elapsed + "ms");
+            checks.check(elapsed <= most + 1500, what + " waits at most about " + most + "ms, waited " + elapsed + "ms");
+        } finally {
+            stub.stop();
+        }
+    }
+}
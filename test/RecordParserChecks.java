@@ -0,0 +1,130 @@
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * checks RecordParser.nextDouble and nextInt against Double.parseDouble and
+ * Integer.parseInt bit for bit, on tokens read one after another from one buffer, and
+ * that the tokens the baseline parsers refuse are refused too
+ */
+class RecordParserChecks {
+    public static void main(String[] args) {
+        System.exit(run() == 0 ? 0 : 1);
+    }
+
+    static int run() {
+        Checks checks = new Checks("RecordParser");
+        Random random = new Random(7);
+        for(int round = 0; round < 200; round++) {
+            doubles(checks, random);
+            ints(checks, random);
+        }
+        String[] edges = {"0", "-0", "+0", "-0.0", "1.", "00012.50", "9007199254740993", "9007199254740992.5",
+            "0.1", "0.30000000000000004", "123456789012345.6", "1e3", "1E-5", "4.9e-324", "1.7976931348623157E308",
+            "99999999999999999999999", "0.00000000000000000000000001", "NaN", "Infinity", "-Infinity", "1d", "0x1p3"};
+        for(String token : edges) {
+            compareDouble(checks, token);
+        }
+        for(String token : new String[] {".", "-", "+", "1.2.3", "--1", "1-", "abc"}) {
+            compareDouble(checks, token);
+        }
+        for(String token : new String[] {"2147483647", "-2147483648", "2147483648", "-2147483649", "+5", "-", "12a", "99999999999"}) {
+            compareInt(checks, token);
+        }
+        return checks.finish();
+    }
+
+    private static void doubles(Checks checks, Random random) {
+        List<String> tokens = new ArrayList<>();
+        StringBuilder text = new StringBuilder();
+        int count = 1 + random.nextInt(40);
+        for(int i = 0; i < count; i++) {
+            String token = randomDouble(random);
+            tokens.add(token);
+            text.append(token).append(random.nextBoolean() ? " " : random.nextBoolean() ? "\n" : "\t\r\n");
+        }
+        RecordParser parser = new RecordParser(ByteBuffer.wrap(text.toString().getBytes(StandardCharsets.UTF_8)));
+        for(String token : tokens) {
+            checks.check(parser.hasNext(), "a token is left for " + token);
+            checks.same(Double.parseDouble(token), parser.nextDouble(), "nextDouble of " + token);
+        }
+        checks.check(!parser.hasNext(), "no tokens left");
+    }
+
+    private static String randomDouble(Random random) {
+        switch(random.nextInt(6)) {
+            case 0:
+                return Integer.toString(random.nextInt(1000));
+            case 1:
+                // up to two decimals, the shape of the distance files
+                return random.nextInt(100000) + "." + random.nextInt(100);
+            case 2:
+                return Double.toString(random.nextDouble() * Math.pow(10, random.nextInt(30) - 10));
+            case 3: {
+                // many digits, some past what fits in the exact path
+                StringBuilder digits = new StringBuilder(random.nextBoolean() ? "-" : "");
+                int length = 1 + random.nextInt(25);
+                int point = random.nextInt(length + 1);
+                for(int i = 0; i < length; i++) {
+                    if(i == point) {
+                        digits.append('.');
+                    }
+                    digits.append((char) ('0' + random.nextInt(10)));
+                }
+                return digits.toString();
+            }
+            case 4:
+                return Double.toString(Double.longBitsToDouble(random.nextLong() & 0x7FEFFFFFFFFFFFFFL));
+            default:
+                return "-" + random.nextInt(50) + "." + random.nextInt(10);
+        }
+    }
+
+    private static void ints(Checks checks, Random random) {
+        int value = random.nextBoolean() ? random.nextInt() : random.nextInt(200) - 100;
+        String token = random.nextInt(5) == 0 && value >= 0 ? "+" + value : Integer.toString(value);
+        compareInt(checks, token);
+    }
+
+    private static void compareDouble(Checks checks, String token) {
+        RecordParser parser = new RecordParser(ByteBuffer.wrap((token + " 42").getBytes(StandardCharsets.UTF_8)));
+        String expected;
+        try {
+            expected = Long.toHexString(Double.doubleToRawLongBits(Double.parseDouble(token)));
+        } catch(NumberFormatException e) {
+            expected = "refused";
+        }
+        String actual;
+        try {
+            actual = Long.toHexString(Double.doubleToRawLongBits(parser.nextDouble()));
+        } catch(NumberFormatException e) {
+            actual = "refused";
+        }
+        checks.check(expected.equals(actual), "nextDouble of " + token + ": expected " + expected + " but was " + actual);
+        if(!actual.equals("refused")) {
+            checks.same(42, parser.nextDouble(), "the token after " + token);
+        }
+    }
+
+    private static void compareInt(Checks checks, String token) {
+        RecordParser parser = new RecordParser(ByteBuffer.wrap((token + "\n7").getBytes(StandardCharsets.UTF_8)));
+        String expected;
+        try {
+            expected = Integer.toString(Integer.parseInt(token));
+        } catch(NumberFormatException e) {
+            expected = "refused";
+        }
+        String actual;
+        try {
+            actual = Integer.toString(parser.nextInt());
+        } catch(NumberFormatException e) {
+            actual = "refused";
+        }
+        checks.check(expected.equals(actual), "nextInt of " + token + ": expected " + expected + " but was " + actual);
+        if(!actual.equals("refused")) {
+            checks.check(parser.nextInt() == 7, "the token after " + token);
+        }
+    }
+}
@@ -0,0 +1,138 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * checks back to back runWithin, run and runTo calls with mixed radii on one
+ * DijkstraSearch against a fresh full search each time, so nothing a bounded run leaves
+ * behind leaks into the next one, and MidpointSolver.withinAll and
+ * GeoMap.citiesWithinReachOfAll against the full distances
+ */
+class RunWithinChecks {
+    public static void main(String[] args) {
+        System.exit(run() == 0 ? 0 : 1);
+    }
+
+    static int run() {
+        Checks checks = new Checks("RunWithin");
+        Random random = new Random(23);
+        for(int round = 0; round < 60; round++) {
+            round(checks, random);
+        }
+        return checks.finish();
+    }
+
+    private static void round(Checks checks, Random random) {
+        int size = 1 + random.nextInt(60);
+        String distances = Checks.cityDistances(size, 1 + random.nextInt(4), random.nextBoolean(), random);
+        String people = Checks.participants(size, 1 + random.nextInt(8), random);
+        GeoMap map = Checks.map(Checks.cityNames(size), distances, people);
+        if(random.nextBoolean()) {
+            map.compact();
+        }
+        CsrGraph graph = map.getGraph();
+        double[][] weights = Checks.adjacency(size, distances);
+        double[][] reference = new double[size][];
+        for(int v = 0; v < size; v++) {
+            reference[v] = Checks.referenceDistances(weights, v);
+        }
+
+        DijkstraSearch reused = new DijkstraSearch(graph);
+        for(int step = 0; step < 30; step++) {
+            int origin = random.nextInt(size);
+            double[] full = new DijkstraSearch(graph).run(origin).clone();
+            int op = random.nextInt(5);
+            if(op < 3) {
+                double radius = radius(random);
+                double[] within = reused.runWithin(origin, radius);
+                int inside = 0;
+                for(int v = 0; v < size; v++) {
+                    double expected = inside(full[v], radius) ? full[v] : Double.MAX_VALUE;
+                    checks.same(expected, within[v], "within " + radius + " of " + origin + " to " + v + " after step " + step);
+                    checks.same(expected, reused.getDistance(v), "getDistance within " + radius + " of " + origin + " to " + v);
+                    checks.close(reference[origin][v], full[v], "full distance from " + origin + " to " + v);
+                    inside += inside(full[v], radius) ? 1 : 0;
+                }
+                checks.check(reused.getSettledCount() == inside, inside + " settled within " + radius + ", not " + reused.getSettledCount());
+                double last = -1;
+                boolean[] seen = new boolean[size];
+                for(int i = 0; i < Math.min(inside, reused.getSettledCount()); i++) {
+                    int v = reused.getSettled()[i];
+                    checks.check(!seen[v] && inside(full[v], radius), "settled " + v + " once and inside " + radius);
+                    checks.check(full[v] >= last, "settled closest first");
+                    seen[v] = true;
+                    last = full[v];
+                }
+            } else if(op < 4) {
+                double[] all = reused.run(origin);
+                for(int v = 0; v < size; v++) {
+                    checks.same(full[v], all[v], "run from " + origin + " to " + v + " after step " + step);
+                }
+            } else {
+                int target = random.nextInt(size);
+                checks.same(full[target], reused.runTo(origin, target)[0], "runTo from " + origin + " to " + target + " after step " + step);
+            }
+        }
+
+        List<Integer> origins = new ArrayList<>();
+        String[] lines = people.split("\n");
+        for(int i = 1; i < lines.length; i++) {
+            int v = Integer.parseInt(lines[i].split(" ")[1]) - 1;
+            if(!origins.contains(v)) {
+                origins.add(v);
+            }
+        }
+        int[] originArray = new int[origins.size()];
+        for(int i = 0; i < originArray.length; i++) {
+            originArray[i] = origins.get(i);
+        }
+        MidpointSolver solver = new MidpointSolver(graph);
+        for(int i = 0; i < 4; i++) {
+            double radius = radius(random);
+            List<String> expected = new ArrayList<>();
+            List<Integer> vertices = new ArrayList<>();
+            for(int v = 0; v < size; v++) {
+                boolean all = true;
+                for(int origin : originArray) {
+                    all &= inside(reference[origin][v], radius);
+                }
+                if(all) {
+                    expected.add("C" + v);
+                    vertices.add(v);
+                }
+            }
+            int[] found = solver.withinAll(originArray, radius);
+            List<Integer> foundList = new ArrayList<>();
+            for(int v : found) {
+                foundList.add(v);
+            }
+            checks.check(vertices.equals(foundList), "withinAll " + radius + " is " + vertices + " but was " + foundList);
+            List<String> names = map.citiesWithinReachOfAll(radius);
+            checks.check(expected.equals(names), "citiesWithinReachOfAll " + radius + " is " + expected + " but was " + names);
+        }
+        checks.check(solver.withinAll(new int[0], 100).length == 0, "withinAll of nobody is empty");
+    }
+
+    /**
+     * returns if a vertex at distance is within radius, an unreachable one never is
+     */
+    private static boolean inside(double distance, double radius) {
+        return distance != Double.MAX_VALUE && distance <= radius;
+    }
+
+    /**
+     * returns a radius, sometimes 0, exactly an edge weight or unbounded
+     */
+    private static double radius(Random random) {
+        switch(random.nextInt(6)) {
+            case 0:
+                return 0;
+            case 1:
+                return Double.MAX_VALUE;
+            case 2:
+                return 1 + random.nextInt(100);
+            default:
+                return random.nextDouble() * 250;
+        }
+    }
+}
@@ -0,0 +1,168 @@
+import com.sun.tools.javac.util.Pair;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * checks SpatialIndex.nearest and the geometric median against a linear scan over the
+ * coordinates read by coordinatesFromStream, GeoMap.citiesWithin against a full search,
+ * and that the midpoint found with landmarks seeded by the spatial index is the one
+ * found without either
+ */
+class SpatialIndexChecks {
+    public static void main(String[] args) {
+        System.exit(run() == 0 ? 0 : 1);
+    }
+
+    static int run() {
+        Checks checks = new Checks("SpatialIndex");
+        Random random = new Random(24);
+        for(int round = 0; round < 60; round++) {
+            round(checks, random);
+        }
+        return checks.finish();
+    }
+
+    /**
+     * returns a coordinates file for size cities in a box around the US, some cities left
+     * out and some on top of each other
+     */
+    private static String coordinates(int size, double[] latitudes, double[] longitudes, Random random) {
+        Arrays.fill(latitudes, Double.NaN);
+        Arrays.fill(longitudes, Double.NaN);
+        StringBuilder out = new StringBuilder().append(size).append('\n');
+        for(int v = 0; v < size; v++) {
+            if(random.nextInt(6) == 0) {
+                continue;
+            }
+            if(v > 0 && random.nextInt(8) == 0 && !Double.isNaN(latitudes[v - 1])) {
+                latitudes[v] = latitudes[v - 1];
+                longitudes[v] = longitudes[v - 1];
+            } else {
+                latitudes[v] = 25 + random.nextInt(2400) / 100.0;
+                longitudes[v] = -124 + random.nextInt(5700) / 100.0;
+            }
+            out.append(v + 1).append(' ').append(latitudes[v]).append(' ').append(longitudes[v]).append('\n');
+        }
+        return out.toString();
+    }
+
+    private static void round(Checks checks, Random random) {
+        int size = 1 + random.nextInt(60);
+        String distances = Checks.cityDistances(size, 1 + random.nextInt(4), true, random);
+        GeoMap map = Checks.map(Checks.cityNames(size), distances, Checks.participants(size, 1 + random.nextInt(10), random));
+        double[] latitudes = new double[size];
+        double[] longitudes = new double[size];
+        map.coordinatesFromStream(Checks.reader(coordinates(size, latitudes, longitudes, random)));
+        SpatialIndex index = map.getSpatialIndex();
+
+        int indexed = 0;
+        double latitudeSum = 0;
+        for(int v = 0; v < size; v++) {
+            if(!Double.isNaN(latitudes[v])) {
+                indexed++;
+                latitudeSum += latitudes[v];
+            }
+        }
+        checks.check(index.size() == indexed, "the index holds the " + indexed + " cities with coordinates");
+        double cos = indexed == 0 ? 1 : Math.cos(Math.toRadians(latitudeSum / indexed));
+
+        for(int query = 0; query < 10; query++) {
+            double latitude = 20 + random.nextDouble() * 35;
+            double longitude = -130 + random.nextDouble() * 70;
+            if(indexed > 0 && random.nextInt(3) == 0) {
+                // right on a city
+                int v = random.nextInt(size);
+                latitude = Double.isNaN(latitudes[v]) ? latitude : latitudes[v];
+                longitude = Double.isNaN(longitudes[v]) ? longitude : longitudes[v];
+            }
+            List<Double> scan = new ArrayList<>();
+            for(int v = 0; v < size; v++) {
+                if(!Double.isNaN(latitudes[v])) {
+                    scan.add(squared(latitudes[v], longitudes[v], latitude, longitude, cos));
+                }
+            }
+            scan.sort(null);
+            int k = random.nextInt(size + 3);
+            int[] nearest = index.nearest(latitude, longitude, k);
+            checks.check(nearest.length == Math.min(k, indexed), "nearest " + k + " gives " + Math.min(k, indexed) + " cities, not " + nearest.length);
+            boolean[] seen = new boolean[size];
+            for(int i = 0; i < nearest.length; i++) {
+                int v = nearest[i];
+                checks.check(!Double.isNaN(latitudes[v]), "nearest city " + v + " has coordinates");
+                checks.check(!seen[v], "nearest city " + v + " is given once");
+                seen[v] = true;
+                if(!Double.isNaN(latitudes[v]) && i < scan.size()) {
+                    // equally near cities can come in any order, the distances cannot
+                    checks.close(scan.get(i), squared(latitudes[v], longitudes[v], latitude, longitude, cos), "distance of nearest " + i + " of " + k);
+                }
+            }
+        }
+
+        int[] people = weights(size, random);
+        double[] median = index.geometricMedian(latitudes, longitudes, people);
+        checks.check((median == null) == (indexed == 0), "a median only when there are coordinates");
+        if(median != null) {
+            // no city is a better meeting point as the crow flies than the median
+            double atMedian = spread(latitudes, longitudes, people, median[0], median[1], cos);
+            for(int v = 0; v < size; v++) {
+                if(!Double.isNaN(latitudes[v])) {
+                    double atCity = spread(latitudes, longitudes, people, latitudes[v], longitudes[v], cos);
+                    checks.check(atMedian <= atCity * (1 + 1e-6), "the median " + atMedian + " is no farther than city " + v + " " + atCity);
+                }
+            }
+        }
+
+        double[][] weights = Checks.adjacency(size, distances);
+        int origin = random.nextInt(size);
+        double[] reference = Checks.referenceDistances(weights, origin);
+        double radius = random.nextInt(200);
+        List<Midpoint> within = map.citiesWithin(origin, radius);
+        int inside = 0;
+        for(double distance : reference) {
+            inside += distance <= radius ? 1 : 0;
+        }
+        checks.check(within.size() == inside, inside + " cities within " + radius + " of " + origin + ", not " + within.size());
+        double last = 0;
+        for(Midpoint city : within) {
+            checks.close(reference[city.getVertex()], city.getAverage(), "distance to " + city.getName() + " within " + radius);
+            checks.check(city.getAverage() <= radius, city.getName() + " is inside the radius");
+            checks.check(city.getAverage() >= last, "cities within the radius come closest first");
+            last = city.getAverage();
+        }
+
+        Pair<String, Double> plain = map.findMinAvgDistance();
+        map.selectLandmarks(1 + random.nextInt(5));
+        Pair<String, Double> seeded = map.findMinAvgDistance();
+        checks.close(plain.snd, seeded.snd, "the seeded midpoint average is the unpruned one");
+    }
+
+    private static int[] weights(int size, Random random) {
+        int[] weights = new int[size];
+        for(int v = 0; v < size; v++) {
+            weights[v] = 1 + random.nextInt(3);
+        }
+        return weights;
+    }
+
+    /**
+     * returns the sum of people[v] times the straight line distance from every city with coordinates to the point
+     */
+    private static double spread(double[] latitudes, double[] longitudes, int[] people, double latitude, double longitude, double cos) {
+        double sum = 0;
+        for(int v = 0; v < latitudes.length; v++) {
+            if(!Double.isNaN(latitudes[v])) {
+                sum += people[v] * Math.sqrt(squared(latitudes[v], longitudes[v], latitude, longitude, cos));
+            }
+        }
+        return sum;
+    }
+
+    private static double squared(double latitude, double longitude, double queryLatitude, double queryLongitude, double cos) {
+        double dx = longitude * cos - queryLongitude * cos;
+        double dy = latitude - queryLatitude;
+        return dx * dx + dy * dy;
+    }
+}
@@ -0,0 +1,121 @@
+import com.sun.tools.javac.util.Pair;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * checks MidpointSolver.topK and GeoMap.findTopMidpoints against a full sort of the
+ * weighted totals by total and then vertex, on graphs with many equal totals and for k
+ * up to past the number of cities
+ */
+class TopKChecks {
+    public static void main(String[] args) {
+        System.exit(run() == 0 ? 0 : 1);
+    }
+
+    static int run() {
+        Checks checks = new Checks("TopK");
+        Random random = new Random(9);
+        for(int round = 0; round < 80; round++) {
+            round(checks, random);
+        }
+        return checks.finish();
+    }
+
+    /**
+     * returns a CityDistances file like Checks.cityDistances but with every weight 1 or 2, so many totals tie
+     */
+    private static String unitDistances(int size, int degree, boolean connected, Random random) {
+        StringBuilder out = new StringBuilder("0\n");
+        for(int v = 1; connected && v < size; v++) {
+            out.append(v + 1).append(' ').append(random.nextInt(v) + 1).append(' ').append(1 + random.nextInt(2)).append('\n');
+        }
+        for(int e = 0; e < size * degree / 2; e++) {
+            out.append(random.nextInt(size) + 1).append(' ').append(random.nextInt(size) + 1).append(' ').append(1 + random.nextInt(2)).append('\n');
+        }
+        return out.toString();
+    }
+
+    private static void round(Checks checks, Random random) {
+        int size = 1 + random.nextInt(40);
+        boolean connected = random.nextInt(4) > 0;
+        int degree = 1 + random.nextInt(4);
+        String distances = random.nextBoolean() ? unitDistances(size, degree, connected, random)
+                : Checks.cityDistances(size, degree, connected, random);
+        String people = Checks.participants(size, 1 + random.nextInt(12), random);
+        GeoMap map = Checks.map(Checks.cityNames(size), distances, people);
+        map.compact();
+        double[][] weights = Checks.adjacency(size, distances);
+
+        // the people per city
+        int[] counts = new int[size];
+        String[] lines = people.split("\n");
+        for(int i = 1; i < lines.length; i++) {
+            counts[Integer.parseInt(lines[i].split(" ")[1]) - 1]++;
+        }
+        List<Integer> originList = new ArrayList<>();
+        for(int v = 0; v < size; v++) {
+            if(counts[v] > 0) {
+                originList.add(v);
+            }
+        }
+        int[] origins = new int[originList.size()];
+        int[] sizes = new int[origins.length];
+        int totalSize = 0;
+        for(int i = 0; i < origins.length; i++) {
+            origins[i] = originList.get(i);
+            sizes[i] = counts[origins[i]];
+            totalSize += sizes[i];
+        }
+
+        MidpointSolver solver = new MidpointSolver(map.getGraph());
+        double[] totals = solver.weightedTotals(origins, sizes);
+        double[] reference = new double[size];
+        for(int i = 0; i < origins.length; i++) {
+            double[] row = Checks.referenceDistances(weights, origins[i]);
+            for(int v = 0; v < size; v++) {
+                reference[v] = reference[v] == Double.MAX_VALUE || row[v] == Double.MAX_VALUE ? Double.MAX_VALUE : reference[v] + sizes[i] * row[v];
+            }
+        }
+        // every candidate everybody can reach, by total and then vertex
+        List<Integer> sorted = new ArrayList<>();
+        for(int v = 0; v < size; v++) {
+            if(reference[v] < Double.MAX_VALUE) {
+                checks.close(reference[v], totals[v], "total of " + v);
+                sorted.add(v);
+            }
+        }
+        sorted.sort((a, b) -> totals[a] != totals[b] ? Double.compare(totals[a], totals[b]) : Integer.compare(a, b));
+
+        for(int k : new int[] {1, 2, 1 + random.nextInt(size), size, size + 1 + random.nextInt(5)}) {
+            List<Midpoint> top = solver.topK(origins, sizes, k, v -> "C" + v);
+            List<Midpoint> mapped = map.findTopMidpoints(k);
+            int expected = Math.min(k, sorted.size());
+            checks.check(top.size() == expected, "top " + k + " has " + expected + " entries, not " + top.size());
+            checks.check(mapped.size() == top.size(), "findTopMidpoints " + k + " has as many entries as topK");
+            for(int i = 0; i < Math.min(expected, top.size()); i++) {
+                int v = sorted.get(i);
+                checks.check(top.get(i).getVertex() == v, "entry " + i + " of top " + k + " is " + v + " but was " + top.get(i).getVertex());
+                checks.same(totals[v] / totalSize, top.get(i).getAverage(), "average of entry " + i + " of top " + k);
+                if(i < mapped.size()) {
+                    checks.check(mapped.get(i).getVertex() == v, "entry " + i + " of findTopMidpoints " + k);
+                    checks.check(mapped.get(i).getName().equals("C" + v), "name of entry " + i + " of findTopMidpoints " + k);
+                }
+            }
+        }
+        try {
+            solver.topK(origins, sizes, 0, v -> "C" + v);
+            checks.check(false, "k of 0 is refused");
+        } catch(IllegalArgumentException e) {
+            checks.check(true, "k of 0 is refused");
+        }
+
+        Pair<String, Double> min = map.findMinAvgDistance();
+        checks.check((min == null) == sorted.isEmpty(), "findMinAvgDistance has no midpoint only when the top list is empty");
+        if(min != null && !sorted.isEmpty()) {
+            checks.check(min.fst.equals("C" + sorted.get(0)), "findMinAvgDistance " + min.fst + " is the first of the top list C" + sorted.get(0));
+            checks.close(totals[sorted.get(0)] / totalSize, min.snd, "findMinAvgDistance average is the first of the top list");
+        }
+    }
+}